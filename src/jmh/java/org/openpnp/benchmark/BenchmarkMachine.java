@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openpnp.machine.reference.ReferenceMachine;
+import org.openpnp.machine.reference.axis.ReferenceControllerAxis;
+import org.openpnp.machine.reference.driver.AbstractReferenceDriver.CommunicationsType;
+import org.openpnp.machine.reference.driver.GcodeAsyncDriver;
+import org.openpnp.machine.reference.driver.GcodeDriver;
+import org.openpnp.machine.reference.driver.ReferenceAdvancedMotionPlanner;
+import org.openpnp.machine.reference.driver.TcpCommunications;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Length;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.spi.Axis;
+import org.openpnp.spi.Driver;
+import org.openpnp.spi.Driver.MotionControlType;
+import org.pmw.tinylog.Configurator;
+import org.pmw.tinylog.Level;
+
+import com.google.common.io.Files;
+
+/**
+ * Sets up the default machine configuration for the motion benchmarks, with the
+ * ReferenceAdvancedMotionPlanner in continuous motion mode and realistic axis limits.
+ *
+ * The GcodeDriver variants talk to the built-in GcodeServer simulation over TCP (IP address
+ * "GcodeServer"), so the command generation, communications and confirmation round-trips are part
+ * of the measurement.
+ */
+public class BenchmarkMachine {
+    public enum DriverType {
+        NullDriver,
+        GcodeDriver,
+        GcodeAsyncDriver
+    }
+
+    /**
+     * Create the benchmark machine. As the Configuration is a singleton, this must only be called once
+     * per JVM, i.e. from a Level.Trial setup in a forked benchmark.
+     *
+     * @param driverType
+     * @param motionControlType
+     * @return The enabled and homed machine.
+     * @throws Exception
+     */
+    public static ReferenceMachine create(DriverType driverType, MotionControlType motionControlType)
+            throws Exception {
+        Configurator.currentConfig()
+            .level(Level.WARNING)
+            .activate();
+
+        File workingDirectory = new File(Files.createTempDir(), ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+        ReferenceMachine machine = (ReferenceMachine) Configuration.get().getMachine();
+
+        ReferenceAdvancedMotionPlanner motionPlanner = new ReferenceAdvancedMotionPlanner();
+        motionPlanner.setAllowContinuousMotion(true);
+        machine.setMotionPlanner(motionPlanner);
+
+        Driver driver = machine.getDefaultDriver();
+        if (driverType != DriverType.NullDriver) {
+            GcodeDriver gcodeDriver = (driverType == DriverType.GcodeAsyncDriver ?
+                    new GcodeAsyncDriver() : new GcodeDriver());
+            gcodeDriver.createDefaults();
+            gcodeDriver.setConnectionKeepAlive(false);
+            gcodeDriver.setCommunicationsType(CommunicationsType.tcp);
+            ((TcpCommunications) gcodeDriver.getCommunications()).setIpAddress("GcodeServer");
+            gcodeDriver.setConnectWaitTimeMilliseconds(0);
+            if (gcodeDriver instanceof GcodeAsyncDriver) {
+                GcodeAsyncDriver asyncDriver = (GcodeAsyncDriver) gcodeDriver;
+                asyncDriver.setInterpolationMaxSteps(32);
+                asyncDriver.setInterpolationJerkSteps(4);
+                asyncDriver.setInterpolationTimeStep(0.001);
+                asyncDriver.setInterpolationMinStep(16);
+                // The default configuration has no GET_POSITION_COMMAND.
+                asyncDriver.setReportedLocationConfirmation(false);
+            }
+            List<Driver> drivers = new ArrayList<>(machine.getDrivers());
+            for (Driver oldDriver : drivers) {
+                machine.removeDriver(oldDriver);
+            }
+            machine.addDriver(gcodeDriver);
+            driver = gcodeDriver;
+        }
+        if (driver instanceof GcodeDriver) {
+            ((GcodeDriver) driver).setMotionControlType(motionControlType);
+        }
+
+        for (Axis axis : machine.getAxes()) {
+            if (axis instanceof ReferenceControllerAxis) {
+                ReferenceControllerAxis controllerAxis = (ReferenceControllerAxis) axis;
+                controllerAxis.setDriver(driver);
+                if (controllerAxis.getLetter() == null || controllerAxis.getLetter().isEmpty()) {
+                    controllerAxis.setLetter(axis.getType() == Axis.Type.Rotation ?
+                            "A" : axis.getType().toString());
+                }
+                if (axis.getType() == Axis.Type.Rotation) {
+                    controllerAxis.setFeedratePerSecond(new Length(2000, LengthUnit.Millimeters));
+                    controllerAxis.setAccelerationPerSecond2(new Length(20000, LengthUnit.Millimeters));
+                    controllerAxis.setJerkPerSecond3(new Length(500000, LengthUnit.Millimeters));
+                }
+                else {
+                    controllerAxis.setFeedratePerSecond(new Length(500, LengthUnit.Millimeters));
+                    controllerAxis.setAccelerationPerSecond2(new Length(5000, LengthUnit.Millimeters));
+                    controllerAxis.setJerkPerSecond3(new Length(100000, LengthUnit.Millimeters));
+                }
+            }
+        }
+
+        machine.setEnabled(true);
+        machine.home();
+        return machine;
+    }
+
+    /**
+     * @return Typical pick and place locations: a row of feeders and a grid of placements on a board.
+     */
+    public static List<Location> createPickAndPlaceLocations() {
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            // Pick.
+            locations.add(new Location(LengthUnit.Millimeters, 20 + 12*i, 20, -20, 0));
+            // Place.
+            locations.add(new Location(LengthUnit.Millimeters,
+                    150 + 15*(i % 4), 100 + 15*(i / 4), -18, 90*(i % 4)));
+        }
+        return locations;
+    }
+}
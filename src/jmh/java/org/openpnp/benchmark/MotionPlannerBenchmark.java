@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openpnp.benchmark.BenchmarkMachine.DriverType;
+import org.openpnp.machine.reference.ReferenceMachine;
+import org.openpnp.model.Location;
+import org.openpnp.spi.Driver.MotionControlType;
+import org.openpnp.spi.MotionPlanner.CompletionType;
+import org.openpnp.spi.Nozzle;
+import org.openpnp.util.MovableUtils;
+
+/**
+ * Measures the whole motion stack for a pick and place cycle: HeadMountable.moveTo() through the
+ * planner, path solving, interpolation and the driver moveTo() command generation and sending.
+ *
+ * The plan is executed with CompletionType.CommandJog, i.e. the commands are sent, but the benchmark
+ * does not wait for the (simulated) machine to actually move.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MotionPlannerBenchmark {
+    @Param({"NullDriver", "GcodeDriver", "GcodeAsyncDriver"})
+    public DriverType driverType;
+
+    @Param({"ModeratedConstantAcceleration", "Simulated3rdOrderControl"})
+    public MotionControlType motionControlType;
+
+    private ReferenceMachine machine;
+    private Nozzle nozzle;
+    private List<Location> locations;
+
+    @Setup(Level.Trial)
+    public void setupMachine() throws Exception {
+        machine = BenchmarkMachine.create(driverType, motionControlType);
+        nozzle = machine.getDefaultHead().getDefaultNozzle();
+        locations = BenchmarkMachine.createPickAndPlaceLocations();
+    }
+
+    @Setup(Level.Iteration)
+    public void clearMotionPlan() throws Exception {
+        // As we never wait for the machine, the plan reaches far into the future. Forget it and reconnect
+        // (i.e. restart the GcodeServer simulation), so it does not grow over the iterations.
+        machine.setEnabled(false);
+        machine.getMotionPlanner().clearMotionPlanOlderThan(Double.POSITIVE_INFINITY);
+        machine.setEnabled(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownMachine() throws Exception {
+        machine.setEnabled(false);
+    }
+
+    /**
+     * One pick and place cycle of moveToLocationAtSafeZ() moves, executed as one continuous plan.
+     */
+    @Benchmark
+    public void pickAndPlaceCycle() throws Exception {
+        for (Location location : locations) {
+            MovableUtils.moveToLocationAtSafeZ(nozzle, location);
+        }
+        machine.getMotionPlanner().waitForCompletion(null, CompletionType.CommandJog);
+    }
+
+    /**
+     * Single moves, each one executed on its own, as without continuous motion.
+     */
+    @Benchmark
+    public void singleMoves() throws Exception {
+        for (Location location : locations) {
+            nozzle.moveTo(location);
+            machine.getMotionPlanner().waitForCompletion(nozzle, CompletionType.CommandJog);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openpnp.model.MotionProfile;
+
+/**
+ * Measures the MotionProfile solver alone, without planner or driver. 
+ * 
+ * solveRepeated() solves the same typical moves over and over, like the repeated moves of a pick 
+ * and place job, solveUnique() perturbs the displacement, so every solution must be computed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MotionProfileBenchmark {
+    // s1, v0, v1, vMax
+    private static final double[][] moves = new double[][] {
+        { 600, 0, 0, 700 },
+        { 200, 0, 0, 700 },
+        { 10, 0, 0, 700 },
+        { 200, 0, 0, 100 },
+        { 300, 200, 0, 700 },
+        { 300, 0, 200, 700 },
+        { 150, 300, 300, 700 },
+        { 40, 0, 0, 500 },
+    };
+
+    private long counter;
+
+    @Setup(Level.Iteration)
+    public void clearSolverCache() {
+        MotionProfile.clearSolverCache();
+    }
+
+    private static MotionProfile createProfile(double[] move, double perturbation) {
+        return new MotionProfile(
+                0, move[0] + perturbation, move[1], move[2], 0, 0,
+                -1000, 1000, move[3], 2000, 2000, 15000, 0, Double.POSITIVE_INFINITY, 0);
+    }
+
+    @Benchmark
+    public double solveRepeated() {
+        double time = 0;
+        for (double[] move : moves) {
+            MotionProfile profile = createProfile(move, 0);
+            profile.solve();
+            time += profile.getTime();
+        }
+        return time;
+    }
+
+    @Benchmark
+    public double solveUnique() {
+        double time = 0;
+        for (double[] move : moves) {
+            MotionProfile profile = createProfile(move, 1e-6*((counter++) % 1000000));
+            profile.solve();
+            time += profile.getTime();
+        }
+        return time;
+    }
+}
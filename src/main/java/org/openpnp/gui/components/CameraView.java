@@ -19,12 +19,14 @@
 
 package org.openpnp.gui.components;
 
+import java.awt.AlphaComposite;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Insets;
 import java.awt.Point;
 import java.awt.Rectangle;
@@ -54,10 +56,14 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.prefs.Preferences;
 
 import javax.imageio.ImageIO;
@@ -123,6 +129,35 @@ public class CameraView extends JComponent implements CameraListener {
      */
     private BufferedImage lastFrame;
 
+    /**
+     * The newest frame waiting to be rendered. Frames arriving faster than they can be rendered
+     * replace the pending one, i.e. they are dropped.
+     */
+    private final AtomicReference<BufferedImage> pendingFrame = new AtomicReference<>();
+
+    private final AtomicBoolean rendering = new AtomicBoolean();
+
+    private ExecutorService renderExecutor;
+
+    /**
+     * A frame pre-scaled to the visible part of the view by the render thread, so it can be painted 
+     * unscaled. The renderedBuffer is the previously rendered frame, reused as the next target. 
+     */
+    private BufferedImage renderedFrame;
+    private BufferedImage renderedBuffer;
+    private Rectangle renderedImageBounds;
+    private Rectangle renderedArea;
+    private RenderingQuality renderedQuality;
+    private double renderedDeviceScale;
+
+    /**
+     * The cached overlay layer, redrawn only when the overlayKey changes. Reticles may be modified and 
+     * set again, so this is counted.
+     */
+    private BufferedImage overlay;
+    private List<Object> overlayKey;
+    private final AtomicInteger overlayModificationCount = new AtomicInteger();
+
     private LinkedHashMap<Object, Reticle> reticles = new LinkedHashMap<>();
 
     private JPopupMenu popupMenu;
@@ -241,6 +276,12 @@ public class CameraView extends JComponent implements CameraListener {
 
         scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
 
+        renderExecutor = Executors.newSingleThreadExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "CameraView render");
+            thread.setDaemon(true);
+            return thread;
+        });
+
         // TODO: Cancel this when it's not being used instead of spinning,
         // or maybe create a real thread and wait().
         scheduledExecutor.scheduleAtFixedRate(new Runnable() {
@@ -353,6 +394,7 @@ public class CameraView extends JComponent implements CameraListener {
         }
         else {
             reticles.put(key, reticle);
+            overlayModificationCount.incrementAndGet();
         }
     }
 
@@ -361,6 +403,7 @@ public class CameraView extends JComponent implements CameraListener {
     }
 
     public Reticle removeReticle(Object key) {
+        overlayModificationCount.incrementAndGet();
         return reticles.remove(key);
     }
 
@@ -552,9 +595,111 @@ public class CameraView extends JComponent implements CameraListener {
         }
         fps = 1000.0 / fpsAverage.next(System.currentTimeMillis() - lastFrameReceivedTime);
         lastFrameReceivedTime = System.currentTimeMillis();
+        // Scale it off the EDT, it is repainted when ready.
+        pendingFrame.set(img);
+        scheduleRendering();
+    }
+
+    private void scheduleRendering() {
+        if (rendering.compareAndSet(false, true)) {
+            renderExecutor.execute(() -> renderFrames());
+        }
+    }
+
+    private void renderFrames() {
+        try {
+            BufferedImage frame;
+            while ((frame = pendingFrame.getAndSet(null)) != null) {
+                renderFrame(frame);
+            }
+        }
+        catch (Exception e) {
+            Logger.warn(e);
+        }
+        finally {
+            rendering.set(false);
+        }
+        if (pendingFrame.get() != null) {
+            // Arrived just as we were finishing.
+            scheduleRendering();
+        }
+    }
+
+    /**
+     * Scales the frame to the visible part of the view, into a reused buffer.
+     * 
+     * @param frame
+     */
+    private void renderFrame(BufferedImage frame) {
+        Rectangle imageBounds;
+        Rectangle area;
+        RenderingQuality quality;
+        double deviceScale;
+        BufferedImage buffer;
+        synchronized (this) {
+            if (frame.getWidth() != lastSourceWidth || frame.getHeight() != lastSourceHeight) {
+                // Scaling data not (yet) valid for this frame.
+                return;
+            }
+            imageBounds = new Rectangle(imageX, imageY, scaledWidth, scaledHeight);
+            area = imageBounds.intersection(new Rectangle(0, 0, getWidth(), getHeight()));
+            quality = renderingQuality;
+            deviceScale = getDeviceScale();
+            buffer = renderedBuffer;
+            renderedBuffer = null;
+        }
+        if (area.isEmpty()) {
+            return;
+        }
+        int bufferWidth = (int) Math.ceil(area.width*deviceScale);
+        int bufferHeight = (int) Math.ceil(area.height*deviceScale);
+        if (buffer == null || buffer.getWidth() != bufferWidth || buffer.getHeight() != bufferHeight) {
+            buffer = new BufferedImage(bufferWidth, bufferHeight, BufferedImage.TYPE_INT_RGB);
+        }
+        Graphics2D g2d = buffer.createGraphics();
+        if (quality == RenderingQuality.Low) {
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        }
+        else {
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        }
+        AffineTransform t = new AffineTransform();
+        // Rendered in device pixels, so it stays sharp on HiDPI screens.
+        t.scale(deviceScale, deviceScale);
+        t.translate(imageBounds.x - area.x, imageBounds.y - area.y);
+        t.scale(((double) imageBounds.width)/frame.getWidth(), ((double) imageBounds.height)/frame.getHeight());
+        g2d.drawImage(frame, t, null);
+        g2d.dispose();
+        synchronized (this) {
+            renderedBuffer = renderedFrame;
+            renderedFrame = buffer;
+            renderedImageBounds = imageBounds;
+            renderedArea = area;
+            renderedQuality = quality;
+            renderedDeviceScale = deviceScale;
+        }
         repaint();
     }
 
+    /**
+     * Paints the frame last rendered by the render thread, if it still fits the view. 
+     * 
+     * @param g2d
+     * @return True if painted.
+     */
+    private boolean paintRenderedFrame(Graphics2D g2d) {
+        if (renderedFrame == null
+                || renderedQuality != renderingQuality
+                || renderedDeviceScale != getDeviceScale()
+                || !renderedImageBounds.equals(new Rectangle(imageX, imageY, scaledWidth, scaledHeight))
+                || !renderedArea.equals(renderedImageBounds.intersection(new Rectangle(0, 0, getWidth(), getHeight())))) {
+            return false;
+        }
+        g2d.drawImage(renderedFrame, renderedArea.x, renderedArea.y, renderedArea.width, renderedArea.height, null);
+        return true;
+    }
+
     /**
      * Calculates a bunch of scaling data that we cache to speed up painting. This is recalculated
      * when the size of the component or the size of the source changes. This method is
@@ -636,39 +781,54 @@ public class CameraView extends JComponent implements CameraListener {
         g2d.fillRect(ins.left, ins.top, width, height);
         if (image != null) {
             // Only render if there is a valid image.
-            if (renderingQuality == RenderingQuality.Low) {
-                g2d.drawImage(lastFrame, imageX, imageY, scaledWidth, scaledHeight, null);
-            }
-            else {
+            if (renderingQuality != RenderingQuality.Low) {
                 g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
                 g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
                 g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                AffineTransform t = new AffineTransform();
-                double scaleW = ((double)scaledWidth)/image.getWidth();
-                double scaleH = ((double)scaledHeight)/image.getHeight();
-                // Scaled
-                t.translate(imageX, imageY);
-                t.scale(scaleW, scaleH);
-                g2d.drawImage(lastFrame, t, null);
+            }
+            if (!paintRenderedFrame(g2d)) {
+                // The view changed since the frame was pre-scaled. Scale it here this once.
+                if (renderingQuality == RenderingQuality.Low) {
+                    g2d.drawImage(lastFrame, imageX, imageY, scaledWidth, scaledHeight, null);
+                }
+                else {
+                    AffineTransform t = new AffineTransform();
+                    double scaleW = ((double)scaledWidth)/image.getWidth();
+                    double scaleH = ((double)scaledHeight)/image.getHeight();
+                    // Scaled
+                    t.translate(imageX, imageY);
+                    t.scale(scaleW, scaleH);
+                    g2d.drawImage(lastFrame, t, null);
+                }
+                pendingFrame.compareAndSet(null, image);
+                scheduleRendering();
             }
 
             double c = MainFrame.get().getMachineControls().getSelectedTool().getLocation()
                     .getRotation();
+            LengthUnit units = camera.getUnitsPerPixelAtZ().getUnits();
 
+            // Reticles that can't be cached are drawn each time, below the cached overlay.
             for (Reticle reticle : reticles.values()) {
-                reticle.draw(g2d, camera.getUnitsPerPixelAtZ().getUnits(), scaledUnitsPerPixelX,
-                        scaledUnitsPerPixelY, ins.left + (width / 2), ins.top + (height / 2),
-                        scaledWidth, scaledHeight, c);
-            }
-
-            if (text != null) {
-                drawTextOverlay(g2d, 10, 10, text);
+                if (!reticle.isCacheable()) {
+                    reticle.draw(g2d, units, scaledUnitsPerPixelX,
+                            scaledUnitsPerPixelY, ins.left + (width / 2), ins.top + (height / 2),
+                            scaledWidth, scaledHeight, c);
+                }
             }
 
-            if (showName) {
-                Dimension dim = measureTextOverlay(g2d, camera.getName());
-                drawTextOverlay(g2d, 10, height - dim.height - 10, camera.getName());
+            String zText = null;
+            if (camera.isUnitsPerPixelAtZCalibrated()) {
+                // Display the height of the reticle in the lower left corner if it is lower than
+                // safe Z.
+                if (camera.getLocation().getLengthZ().compareTo(camera.getSafeZ()) < 0) {   
+                    LengthConverter lengthConverter = new LengthConverter();
+                    zText = "Z: " + lengthConverter.convertForward(camera.getLocation().getLengthZ());
+                }
             }
+            // The handles only need to be drawn each time while they are being dragged or clicked. 
+            boolean handlesCacheable = !selectionEnabled && !isDragJogging() && !isTogglingLight();
+            paintOverlay(g2d, c, units, zText, handlesCacheable);
 
             if (showImageInfo && text == null) {
                 drawImageInfo(g2d, 10, 10, image);
@@ -678,21 +838,10 @@ public class CameraView extends JComponent implements CameraListener {
                 paintSelection(g2d);
             }
 
-            if (!selectionEnabled) {
+            if (!selectionEnabled && !handlesCacheable) {
                 paintDragJogging(g2d);
                 paintLightToggle(g2d);
             }
-
-            if (camera.isUnitsPerPixelAtZCalibrated()) {
-                // Display the height of the reticle in the lower left corner if it is lower than
-                // safe Z.
-                if (camera.getLocation().getLengthZ().compareTo(camera.getSafeZ()) < 0) {   
-                    LengthConverter lengthConverter = new LengthConverter();
-                    String text = "Z: " + lengthConverter.convertForward(camera.getLocation().getLengthZ());
-                    Dimension dim = measureTextOverlay(g2d, text);
-                    drawTextOverlay(g2d, width - dim.width - 10, height - dim.height - 10, text);
-                }
-            }
         }
         else {
             g.setColor(Color.red);
@@ -710,6 +859,82 @@ public class CameraView extends JComponent implements CameraListener {
         }
     }
     
+    /**
+     * Paints the cacheable reticles, the text overlays and, if cacheable, the handles. These are drawn 
+     * into a translucent layer that is only redrawn when any of the drawing parameters change, then
+     * composited over the frame.
+     */
+    private void paintOverlay(Graphics2D g2d, double rotation, LengthUnit units, String zText,
+            boolean handlesCacheable) {
+        Insets ins = getInsets();
+        int width = getWidth() - ins.left - ins.right;
+        int height = getHeight() - ins.top - ins.bottom;
+        double deviceScale = getDeviceScale();
+        HeadMountable selectedTool = MainFrame.get().getMachineControls().getSelectedTool();
+        Actuator lightActuator = camera.getLightActuator();
+        List<Object> key = Arrays.asList(getWidth(), getHeight(), ins.left, ins.top, deviceScale, 
+                overlayModificationCount.get(), units, scaledUnitsPerPixelX, scaledUnitsPerPixelY, 
+                scaledWidth, scaledHeight, rotation, renderingQuality, text, 
+                showName ? camera.getName() : null, zText, handlesCacheable, 
+                handlesCacheable && selectedTool.getAxisRotation() != null, 
+                handlesCacheable && lightActuator != null ? lightActuator.isActuated() : null);
+        if (!key.equals(overlayKey)) {
+            int layerWidth = (int) Math.ceil(getWidth()*deviceScale);
+            int layerHeight = (int) Math.ceil(getHeight()*deviceScale);
+            if (overlay == null || overlay.getWidth() != layerWidth || overlay.getHeight() != layerHeight) {
+                overlay = new BufferedImage(layerWidth, layerHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+            }
+            Graphics2D og = overlay.createGraphics();
+            og.setComposite(AlphaComposite.Clear);
+            og.fillRect(0, 0, layerWidth, layerHeight);
+            og.setComposite(AlphaComposite.SrcOver);
+            og.setRenderingHints(g2d.getRenderingHints());
+            og.setFont(g2d.getFont());
+            og.scale(deviceScale, deviceScale);
+
+            for (Reticle reticle : reticles.values()) {
+                if (reticle.isCacheable()) {
+                    reticle.draw(og, units, scaledUnitsPerPixelX,
+                            scaledUnitsPerPixelY, ins.left + (width / 2), ins.top + (height / 2),
+                            scaledWidth, scaledHeight, rotation);
+                }
+            }
+
+            if (text != null) {
+                drawTextOverlay(og, 10, 10, text);
+            }
+
+            if (showName) {
+                Dimension dim = measureTextOverlay(og, camera.getName());
+                drawTextOverlay(og, 10, height - dim.height - 10, camera.getName());
+            }
+
+            if (handlesCacheable) {
+                paintDragJogging(og);
+                paintLightToggle(og);
+            }
+
+            if (zText != null) {
+                Dimension dim = measureTextOverlay(og, zText);
+                drawTextOverlay(og, width - dim.width - 10, height - dim.height - 10, zText);
+            }
+            og.dispose();
+            overlayKey = key;
+        }
+        g2d.drawImage(overlay, 0, 0, getWidth(), getHeight(), null);
+    }
+
+    /**
+     * @return The scale from component to device pixels, e.g. 2.0 on a HiDPI screen.
+     */
+    private double getDeviceScale() {
+        GraphicsConfiguration graphicsConfiguration = getGraphicsConfiguration();
+        if (graphicsConfiguration == null) {
+            return 1.0;
+        }
+        return graphicsConfiguration.getDefaultTransform().getScaleX();
+    }
+
     private boolean isPointInsideRectangle(int pointX, int pointY, int rectX1, int rectY1, int rectX2, int rectY2) {
         return pointX >= rectX1 && pointX <= rectX2 && pointY >= rectY1 && pointY <= rectY2;
     }
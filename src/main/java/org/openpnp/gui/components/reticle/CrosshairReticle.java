@@ -45,6 +45,11 @@ public class CrosshairReticle implements Reticle {
         complimentaryColor = new HslColor(color).getComplementary();
     }
 
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+
     @Override
     public void draw(Graphics2D g2d, LengthUnit cameraUnitsPerPixelUnits,
             double cameraUnitsPerPixelX, double cameraUnitsPerPixelY, double viewPortCenterX,
@@ -28,4 +28,13 @@ public interface Reticle {
     public void draw(Graphics2D g2d, LengthUnit cameraUnitsPerPixelUnits,
             double cameraUnitsPerPixelX, double cameraUnitsPerPixelY, double viewPortCenterX,
             double viewPortCenterY, int viewPortWidth, int viewPortHeight, double rotation);
+
+    /**
+     * @return True if the reticle draws the same as long as the arguments of draw() are the same, and
+     * it is set to the CameraView again after changing its properties. The CameraView can then cache the
+     * drawing. 
+     */
+    public default boolean isCacheable() {
+        return false;
+    }
 }
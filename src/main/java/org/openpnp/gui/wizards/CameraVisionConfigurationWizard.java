@@ -48,8 +48,10 @@ import org.openpnp.gui.support.DoubleConverter;
 import org.openpnp.gui.support.Icons;
 import org.openpnp.gui.support.IntegerConverter;
 import org.openpnp.gui.support.LongConverter;
+import org.openpnp.machine.reference.camera.AbstractBroadcastingCamera;
 import org.openpnp.machine.reference.camera.AbstractSettlingCamera;
 import org.openpnp.machine.reference.camera.AbstractSettlingCamera.SettleMethod;
+import org.openpnp.machine.reference.camera.CameraMetrics;
 import org.openpnp.model.Configuration;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
@@ -139,6 +141,16 @@ public class CameraVisionConfigurationWizard extends AbstractConfigurationWizard
         panelVision.add(settleTimeoutMs, "10, 4, fill, default");
         settleTimeoutMs.setColumns(10);
 
+        lblFrameBufferSize = new JLabel(Translations.getString(
+                "CameraVisionConfigurationWizard.VisionPanel.FrameBufferSizeLabel.text")); //$NON-NLS-1$
+        lblFrameBufferSize.setToolTipText(Translations.getString(
+                "CameraVisionConfigurationWizard.VisionPanel.FrameBufferSizeLabel.toolTipText")); //$NON-NLS-1$
+        panelVision.add(lblFrameBufferSize, "8, 4, right, default");
+
+        frameBufferSize = new JTextField();
+        panelVision.add(frameBufferSize, "10, 4, fill, default");
+        frameBufferSize.setColumns(10);
+
         lblSettleThreshold = new JLabel(Translations.getString(
                 "CameraVisionConfigurationWizard.VisionPanel.SettleThresholdLabel.text")); //$NON-NLS-1$
         panelVision.add(lblSettleThreshold, "2, 6, right, default");
@@ -270,6 +282,87 @@ public class CameraVisionConfigurationWizard extends AbstractConfigurationWizard
         });
         settleGraph.setFont(new Font("Dialog", Font.PLAIN, 11));
         panelVision.add(settleGraph, "4, 14, 11, 1, default, fill");
+
+        if (camera instanceof AbstractBroadcastingCamera) {
+            createMetricsPanel();
+        }
+    }
+
+    private void createMetricsPanel() {
+        panelMetrics = new JPanel();
+        panelMetrics.setBorder(new TitledBorder(null, Translations.getString(
+                "CameraVisionConfigurationWizard.MetricsPanel.Border.title"), //$NON-NLS-1$
+                TitledBorder.LEADING, TitledBorder.TOP, null, null));
+        contentPanel.add(panelMetrics);
+        panelMetrics.setLayout(new FormLayout(new ColumnSpec[] {
+                FormSpecs.RELATED_GAP_COLSPEC,
+                ColumnSpec.decode("max(70dlu;default)"),
+                FormSpecs.RELATED_GAP_COLSPEC,
+                ColumnSpec.decode("default:grow"),
+                FormSpecs.RELATED_GAP_COLSPEC,
+                FormSpecs.DEFAULT_COLSPEC,},
+            new RowSpec[] {
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,}));
+
+        JLabel lblCapture = new JLabel(Translations.getString(
+                "CameraVisionConfigurationWizard.MetricsPanel.CaptureLabel.text")); //$NON-NLS-1$
+        lblCapture.setToolTipText(Translations.getString(
+                "CameraVisionConfigurationWizard.MetricsPanel.CaptureLabel.toolTipText")); //$NON-NLS-1$
+        panelMetrics.add(lblCapture, "2, 2, right, default");
+
+        captureMetrics = new JLabel("-");
+        panelMetrics.add(captureMetrics, "4, 2");
+
+        JButton btnRefreshMetrics = new JButton(refreshMetricsAction);
+        panelMetrics.add(btnRefreshMetrics, "6, 2");
+
+        JLabel lblTransform = new JLabel(Translations.getString(
+                "CameraVisionConfigurationWizard.MetricsPanel.TransformLabel.text")); //$NON-NLS-1$
+        lblTransform.setToolTipText(Translations.getString(
+                "CameraVisionConfigurationWizard.MetricsPanel.TransformLabel.toolTipText")); //$NON-NLS-1$
+        panelMetrics.add(lblTransform, "2, 4, right, default");
+
+        transformMetrics = new JLabel("-");
+        panelMetrics.add(transformMetrics, "4, 4");
+
+        JButton btnResetMetrics = new JButton(resetMetricsAction);
+        panelMetrics.add(btnResetMetrics, "6, 4");
+
+        JLabel lblBroadcast = new JLabel(Translations.getString(
+                "CameraVisionConfigurationWizard.MetricsPanel.BroadcastLabel.text")); //$NON-NLS-1$
+        lblBroadcast.setToolTipText(Translations.getString(
+                "CameraVisionConfigurationWizard.MetricsPanel.BroadcastLabel.toolTipText")); //$NON-NLS-1$
+        panelMetrics.add(lblBroadcast, "2, 6, right, default");
+
+        broadcastMetrics = new JLabel("-");
+        panelMetrics.add(broadcastMetrics, "4, 6");
+
+        JLabel lblDroppedFrames = new JLabel(Translations.getString(
+                "CameraVisionConfigurationWizard.MetricsPanel.DroppedFramesLabel.text")); //$NON-NLS-1$
+        lblDroppedFrames.setToolTipText(Translations.getString(
+                "CameraVisionConfigurationWizard.MetricsPanel.DroppedFramesLabel.toolTipText")); //$NON-NLS-1$
+        panelMetrics.add(lblDroppedFrames, "2, 8, right, default");
+
+        droppedFrames = new JLabel("-");
+        panelMetrics.add(droppedFrames, "4, 8");
+    }
+
+    private void refreshMetrics() {
+        if (panelMetrics == null) {
+            return;
+        }
+        CameraMetrics metrics = ((AbstractBroadcastingCamera) camera).getMetrics();
+        captureMetrics.setText(metrics.getCaptureMilliseconds().toString());
+        transformMetrics.setText(metrics.getTransformMilliseconds().toString());
+        broadcastMetrics.setText(metrics.getBroadcastMilliseconds().toString());
+        droppedFrames.setText(String.valueOf(metrics.getDroppedFrames()));
     }
 
     private void adaptDialog() {
@@ -280,6 +373,8 @@ public class CameraVisionConfigurationWizard extends AbstractConfigurationWizard
         settleTimeMs.setVisible(fixedTime);
         lblSettleTimeoutMs.setVisible(!fixedTime);
         settleTimeoutMs.setVisible(!fixedTime);
+        lblFrameBufferSize.setVisible(fixedTime);
+        frameBufferSize.setVisible(fixedTime);
 
         lblSettleThreshold.setVisible(!fixedTime);
         settleThreshold.setVisible(!fixedTime);
@@ -320,6 +415,7 @@ public class CameraVisionConfigurationWizard extends AbstractConfigurationWizard
         addWrappedBinding(camera, "settleMethod", settleMethod, "selectedItem");
         addWrappedBinding(camera, "settleTimeMs", settleTimeMs, "text", longConverter);
         addWrappedBinding(camera, "settleTimeoutMs", settleTimeoutMs, "text", longConverter);
+        addWrappedBinding(camera, "frameBufferSize", frameBufferSize, "text", intConverter);
         addWrappedBinding(camera, "settleDebounce", settleDebounce, "text", intConverter);
         addWrappedBinding(camera, "settleThreshold", settleThreshold, "text", doubleConverter);
         addWrappedBinding(camera, "settleFullColor", settleFullColor, "selected");
@@ -333,6 +429,7 @@ public class CameraVisionConfigurationWizard extends AbstractConfigurationWizard
         ComponentDecorators.decorateWithAutoSelect(settleTimeMs);
         ComponentDecorators.decorateWithAutoSelect(settleTimeMs);
         ComponentDecorators.decorateWithAutoSelect(settleTimeoutMs);
+        ComponentDecorators.decorateWithAutoSelect(frameBufferSize);
         ComponentDecorators.decorateWithAutoSelect(settleDebounce);
         ComponentDecorators.decorateWithAutoSelect(settleThreshold);
         ComponentDecorators.decorateWithAutoSelect(settleGaussianBlur);
@@ -345,6 +442,7 @@ public class CameraVisionConfigurationWizard extends AbstractConfigurationWizard
             btnTestZ.setVisible(false);
         }
         adaptDialog();
+        refreshMetrics();
     }
 
     private HeadMountable getJogTool() {
@@ -487,6 +585,30 @@ public class CameraVisionConfigurationWizard extends AbstractConfigurationWizard
         }
     };
 
+    private Action refreshMetricsAction = new AbstractAction(Translations.getString(
+            "CameraVisionConfigurationWizard.MetricsPanel.RefreshButton.text")) { //$NON-NLS-1$
+        {
+            putValue(Action.SHORT_DESCRIPTION,
+                    "Shows the current metrics of the camera.");
+        }
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            refreshMetrics();
+        }
+    };
+    private Action resetMetricsAction = new AbstractAction(Translations.getString(
+            "CameraVisionConfigurationWizard.MetricsPanel.ResetButton.text")) { //$NON-NLS-1$
+        {
+            putValue(Action.SHORT_DESCRIPTION,
+                    "Resets the metrics, e.g. to measure a particular operation.");
+        }
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            ((AbstractBroadcastingCamera) camera).getMetrics().reset();
+            refreshMetrics();
+        }
+    };
+
     private JPanel panelVision;
     private JLabel lblSettleTimeMs;
     private JTextField settleTimeMs;
@@ -494,6 +616,8 @@ public class CameraVisionConfigurationWizard extends AbstractConfigurationWizard
     private JComboBox settleMethod;
     private JLabel lblSettleTimeoutMs;
     private JTextField settleTimeoutMs;
+    private JLabel lblFrameBufferSize;
+    private JTextField frameBufferSize;
     private JTextField settleThreshold;
     private JLabel lblSettleThreshold;
     private JTextField settleGaussianBlur;
@@ -522,4 +646,9 @@ public class CameraVisionConfigurationWizard extends AbstractConfigurationWizard
     private JTextField settleContrastEnhance;
     private JLabel lblSettleDebounce;
     private JTextField settleDebounce;
+    private JPanel panelMetrics;
+    private JLabel captureMetrics;
+    private JLabel transformMetrics;
+    private JLabel broadcastMetrics;
+    private JLabel droppedFrames;
 }
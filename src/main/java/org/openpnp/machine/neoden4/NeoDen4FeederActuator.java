@@ -42,6 +42,7 @@ import org.openpnp.spi.Driver;
 import org.openpnp.spi.PropertySheetHolder;
 import org.openpnp.spi.PropertySheetHolder.PropertySheet;
 import org.openpnp.spi.base.AbstractActuator;
+import org.openpnp.util.NanosecondTime;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
@@ -83,6 +84,7 @@ public class NeoDen4FeederActuator extends ReferenceActuator{
 			NeoDen4Driver driver = (NeoDen4Driver) getDriver();
 			driver.feed(feederId, feedStrength, (int) feedLength);
 			driver.peel(peelerId, peelStrength, (int) ((peelLength / 100.0) * 5 * feedLength));
+			getMachine().setLastActuationTime(NanosecondTime.getRuntimeSeconds());
 		} else {
 			Logger.error("Actuation feedLength can't be lower than 0!");
 		}
@@ -56,6 +56,7 @@ import org.openpnp.spi.base.AbstractActuator;
 import org.openpnp.spi.base.AbstractHead;
 import org.openpnp.util.Collect;
 import org.openpnp.util.MovableUtils;
+import org.openpnp.util.NanosecondTime;
 import org.openpnp.util.UiUtils;
 import org.openpnp.util.VisionUtils;
 import org.openpnp.util.XmlSerialize;
@@ -543,7 +544,7 @@ public class ContactProbeNozzle extends ReferenceNozzle {
                 for (int i = 0; i < count; i++) {
                     probedLocation = probedLocation.subtract(probeIncrement);
                     moveTo(probedLocation);
-                    Thread.sleep(sniffleDwellTime);
+                    NanosecondTime.sleep(sniffleDwellTime);
                     if (! isPartOff()) {
                         // We got contact.
                         probedLocation = probedLocation.add(new Location(contactProbeAdjustZ .getUnits(), 0, 0, contactProbeAdjustZ.getValue(), 0));
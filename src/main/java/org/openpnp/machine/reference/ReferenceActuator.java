@@ -42,6 +42,7 @@ import org.openpnp.spi.Machine;
 import org.openpnp.spi.MachineListener;
 import org.openpnp.spi.PropertySheetHolder;
 import org.openpnp.spi.base.AbstractActuator;
+import org.openpnp.util.NanosecondTime;
 import org.openpnp.util.UiUtils;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
@@ -155,6 +156,7 @@ public class ReferenceActuator extends AbstractActuator implements ReferenceHead
     protected void setLastActuationValue(Object lastActuationValue) {
         Object oldValue = this.lastActuationValue;
         this.lastActuationValue = lastActuationValue;
+        getMachine().setLastActuationTime(NanosecondTime.getRuntimeSeconds());
         firePropertyChange("lastActuationValue", oldValue, lastActuationValue);
         if (oldValue == null || !oldValue.equals(lastActuationValue)) {
             getMachine().fireMachineActuatorActivity(this);
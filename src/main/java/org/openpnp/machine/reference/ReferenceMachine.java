@@ -164,6 +164,8 @@ public class ReferenceMachine extends AbstractMachine {
 
     private boolean isHomed = false;
 
+    private volatile double lastActuationTime = Double.NEGATIVE_INFINITY;
+
     private List<Class<? extends Axis>> registeredAxisClasses = new ArrayList<>();
 
     private List<Class<? extends Feeder>> registeredFeederClasses = new ArrayList<>();
@@ -271,6 +273,7 @@ public class ReferenceMachine extends AbstractMachine {
                 }
             }
             this.enabled = false;
+            getMotionPlanner().releaseResources();
             if (e != null) {
                 fireMachineDisableFailed(e.getMessage());
                 throw e;
@@ -285,7 +288,10 @@ public class ReferenceMachine extends AbstractMachine {
     }
 
     public void setMotionPlanner(MotionPlanner motionPlanner) {
-        Object oldValue = this.motionPlanner;
+        MotionPlanner oldValue = this.motionPlanner;
+        if (oldValue != null && oldValue != motionPlanner) {
+            oldValue.releaseResources();
+        }
         this.motionPlanner = motionPlanner;
         firePropertyChange("motionPlanner", oldValue, motionPlanner);
     }
@@ -530,6 +536,7 @@ public class ReferenceMachine extends AbstractMachine {
 
     @Override
     public void close() throws IOException {
+        getMotionPlanner().releaseResources();
         for (Driver driver : getDrivers()) {
             try {
                 driver.close();
@@ -588,6 +595,18 @@ public class ReferenceMachine extends AbstractMachine {
         fireMachineHomed(isHomed);
     }
 
+    /**
+     * @return The time of the latest actuation of any actuator, as NanosecondTime.getRuntimeSeconds(). 
+     * Actuations such as switching lights or feeders can change what the cameras see, without any motion.
+     */
+    public double getLastActuationTime() {
+        return lastActuationTime;
+    }
+
+    public void setLastActuationTime(double lastActuationTime) {
+        this.lastActuationTime = lastActuationTime;
+    }
+
     public Solutions getSolutions() {
         if (dismissedSolutions != null) {
             // Migrate to Solutions object.
@@ -46,6 +46,7 @@ import org.openpnp.spi.PropertySheetHolder;
 import org.openpnp.spi.base.AbstractActuator;
 import org.openpnp.spi.base.AbstractNozzle;
 import org.openpnp.util.MovableUtils;
+import org.openpnp.util.NanosecondTime;
 import org.openpnp.util.SimpleGraph;
 import org.openpnp.util.UiUtils;
 import org.pmw.tinylog.Logger;
@@ -1095,7 +1096,7 @@ public class ReferenceNozzle extends AbstractNozzle implements ReferenceHeadMoun
         }
         else {
             // simple method, just dwell
-            Thread.sleep(milliseconds);
+            NanosecondTime.sleep(milliseconds);
         }
     }
 
@@ -1129,7 +1130,7 @@ public class ReferenceNozzle extends AbstractNozzle implements ReferenceHeadMoun
         }
         else {
             // simple method, just dwell
-            Thread.sleep(milliseconds);
+            NanosecondTime.sleep(milliseconds);
         }
     }
 
@@ -1187,7 +1188,7 @@ public class ReferenceNozzle extends AbstractNozzle implements ReferenceHeadMoun
             }
             else {
                 // simple method, just dwell 
-                Thread.sleep(probingMilliseconds);
+                NanosecondTime.sleep(probingMilliseconds);
                 if (dwellMilliseconds <= 0) {
                     returnedVacuumLevel = readVacuumLevel();
                 }
@@ -1225,7 +1226,7 @@ public class ReferenceNozzle extends AbstractNozzle implements ReferenceHeadMoun
         else {
             // simple method, just dwell and then read the level
             if (dwellMilliseconds > 0) {
-                Thread.sleep(dwellMilliseconds);
+                NanosecondTime.sleep(dwellMilliseconds);
                 returnedVacuumLevel = readVacuumLevel();
             }
             // return the vacuum level, either from before or after valve closed
@@ -54,6 +54,7 @@ import org.openpnp.spi.PnpJobProcessor.JobPlacement.Status;
 import org.openpnp.spi.base.AbstractJobProcessor;
 import org.openpnp.spi.base.AbstractPnpJobProcessor;
 import org.openpnp.util.MovableUtils;
+import org.openpnp.util.NanosecondTime;
 import org.openpnp.util.TravellingSalesman;
 import org.openpnp.util.Utils2D;
 import org.openpnp.util.VisionUtils;
@@ -155,7 +156,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
      */
     protected class PreFlight implements Step {
         public Step step() throws JobProcessorException {
-            startTime = System.currentTimeMillis();
+            startTime = NanosecondTime.getRuntimeMilliseconds();
             totalPartsPlaced = 0;
             
             jobPlacements.clear();
@@ -1065,7 +1066,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         public Step step() throws JobProcessorException {
             new Cleanup().step();
           
-            double dtSec = (System.currentTimeMillis() - startTime) / 1000.0;
+            double dtSec = (NanosecondTime.getRuntimeMilliseconds() - startTime) / 1000.0;
             DecimalFormat df = new DecimalFormat("###,###.0");
             
             // Collect the errored placements
@@ -171,10 +171,23 @@ public class SimulationModeMachine extends ReferenceMachine {
     @Element(required = false)
     private boolean pickAndPlaceChecking = false;
 
+    /**
+     * Runs the simulation on a virtual clock, i.e. motion, settle, dwell and actuator delays advance the clock 
+     * instead of taking real time. Used to run jobs much faster than real-time, e.g. as benchmarks. 
+     */
+    @Attribute(required = false)
+    private boolean virtualTime = false;
+
     @Override
     public void setEnabled(boolean enabled) throws Exception {
         // TODO: re-wire drivers and cameras. 
         super.setEnabled(enabled);
+        applyVirtualTime();
+    }
+
+    protected void applyVirtualTime() {
+        NanosecondTime.setVirtualTime(isEnabled() && isVirtualTime() 
+                && getSimulationMode() != SimulationMode.Off);
     }
 
     @Override
@@ -273,6 +286,15 @@ public class SimulationModeMachine extends ReferenceMachine {
         this.pickAndPlaceChecking = pickAndPlaceChecking;
     }
 
+    public boolean isVirtualTime() {
+        return virtualTime;
+    }
+
+    public void setVirtualTime(boolean virtualTime) {
+        this.virtualTime = virtualTime;
+        applyVirtualTime();
+    }
+
     public void resetAllFeeders() {
         for (Feeder feeder : getFeeders()) {
             if (feeder instanceof ReferenceStripFeeder) {
@@ -399,7 +421,7 @@ public class SimulationModeMachine extends ReferenceMachine {
         }
         if (realtime) {
             try {
-                Thread.sleep(50);
+                NanosecondTime.sleep(50);
             }
             catch (InterruptedException e) {
             }
@@ -30,6 +30,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.opencv.core.Mat;
 import org.openpnp.CameraListener;
 import org.openpnp.ConfigurationListener;
 import org.openpnp.model.Configuration;
@@ -43,6 +44,8 @@ import org.openpnp.spi.Machine;
 import org.openpnp.spi.MachineListener;
 import org.openpnp.spi.base.AbstractActuator;
 import org.openpnp.util.MovableUtils;
+import org.openpnp.util.OpenCvUtils;
+import org.openpnp.vision.MatPool;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 
@@ -66,9 +69,12 @@ public abstract class AbstractBroadcastingCamera extends AbstractSettlingCamera
     private static BufferedImage CAPTURE_ERROR_IMAGE = null;
 
     /**
-     * The lastTransformedImage is produced by transformImage() and consumed by the Camera thread.
+     * The lastTransformedImage is produced by transformImage() and consumed by the Camera thread. It is either 
+     * a BufferedImage or a Mat, the latter is only converted when consumed.
      */
-    private AtomicReference<BufferedImage> lastTransformedImage = new AtomicReference<>();
+    private AtomicReference<Object> lastTransformedImage = new AtomicReference<>();
+
+    private final CameraMetrics metrics = new CameraMetrics();
 
     volatile private boolean cameraViewDirty;
 
@@ -162,14 +168,61 @@ public abstract class AbstractBroadcastingCamera extends AbstractSettlingCamera
     }
 
     protected BufferedImage getLastTransformedImage() {
-        return lastTransformedImage.get();
+        BufferedImage image = takeLastTransformedImage();
+        // Put it back, unless a new one was set in the meantime.
+        lastTransformedImage.compareAndSet(null, image);
+        return image;
     }
 
     protected void setLastTransformedImage(BufferedImage lastTransformedImage) {
-        this.lastTransformedImage.set(lastTransformedImage);
+        dropTransformedImage(this.lastTransformedImage.getAndSet(lastTransformedImage));
         notifyCapture();
     }
 
+    /**
+     * Set the last transformed image as a Mat, which is only converted to a BufferedImage if it is broadcast.
+     * 
+     * @param lastTransformedImage The Mat, which is copied.
+     */
+    protected void setLastTransformedImage(Mat lastTransformedImage) {
+        dropTransformedImage(this.lastTransformedImage.getAndSet(MatPool.get().borrowClone(lastTransformedImage)));
+        notifyCapture();
+    }
+
+    /**
+     * @return The last transformed image, converted to a BufferedImage if needed, or null. The last transformed 
+     * image is reset.
+     */
+    private BufferedImage takeLastTransformedImage() {
+        Object image = lastTransformedImage.getAndSet(null);
+        if (image instanceof Mat) {
+            BufferedImage bufferedImage = OpenCvUtils.toBufferedImage((Mat) image);
+            MatPool.get().recycle((Mat) image);
+            return bufferedImage;
+        }
+        return (BufferedImage) image;
+    }
+
+    /**
+     * Drops a transformed image that was replaced before it could be broadcast.
+     */
+    private void dropTransformedImage(Object image) {
+        if (image != null) {
+            metrics.frameDropped();
+        }
+        if (image instanceof Mat) {
+            MatPool.get().recycle((Mat) image);
+        }
+    }
+
+    /**
+     * @return The continuous measurements of this camera's capture, transform and broadcast times, and of
+     * the dropped frames.
+     */
+    public CameraMetrics getMetrics() {
+        return metrics;
+    }
+
     protected void notifyCapture() {
         synchronized(captureNotifier) {
             captureNotifier.notifyAll();
@@ -233,9 +286,11 @@ public abstract class AbstractBroadcastingCamera extends AbstractSettlingCamera
     }
 
     protected void broadcastCapture(BufferedImage img) {
+        long t0 = System.nanoTime();
         for (ListenerEntry listener : new ArrayList<>(listeners)) {
             listener.listener.frameReceived(img);
         }
+        metrics.getBroadcastMilliseconds().add(CameraMetrics.millisecondsSince(t0));
     }
 
     @Override
@@ -330,13 +385,13 @@ public abstract class AbstractBroadcastingCamera extends AbstractSettlingCamera
                 // every call to captureTransformed() may consume the frame and make it unavailable 
                 // to computer vision.  
                 // Note, by using the atomic getAndSet() we make sure not to miss the last image.
-                BufferedImage img = lastTransformedImage.getAndSet(null);
+                BufferedImage img = takeLastTransformedImage();
                 if (img == null && !isPreviewSuspended()) {
                     if (hasNewFrame()){
                         // None available, try capture a new frame.
                         captureTransformed();
                         // Void the last image, so a new one will be triggered next time.
-                        img = lastTransformedImage.getAndSet(null);
+                        img = takeLastTransformedImage();
                     }
                 }
                 if (img != null) {
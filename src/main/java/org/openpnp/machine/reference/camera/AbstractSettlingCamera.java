@@ -28,6 +28,9 @@ import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import org.opencv.core.Core;
 import org.opencv.core.Core.MinMaxLocResult;
@@ -40,7 +43,10 @@ import org.opencv.core.Size;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
 import org.openpnp.gui.MainFrame;
+import org.openpnp.machine.reference.ReferenceMachine;
 import org.openpnp.model.Configuration;
+import org.openpnp.model.Motion;
+import org.openpnp.spi.Machine;
 import org.openpnp.spi.MotionPlanner.CompletionType;
 import org.openpnp.spi.base.AbstractCamera;
 import org.openpnp.util.NanosecondTime;
@@ -203,6 +209,17 @@ public abstract class AbstractSettlingCamera extends AbstractCamera {
     @Attribute(required = false)
     protected boolean settleDiagnostics = false;
 
+    /**
+     * Number of recent frames kept with their capture time. If set, fixed time settling counts the settle 
+     * time from the confirmed end of the last motion or the last actuation, whichever is later, and takes 
+     * the newest buffered frame if it was captured after that. This requires drivers that confirm motion 
+     * completion, otherwise the full settle time is waited. See getSettleAnchorTime().  
+     */
+    @Attribute(required = false)
+    protected int frameBufferSize = 0;
+
+    private FrameBuffer frameBuffer;
+
     @Commit
     protected void commit() throws Exception {
         if (settleMethod == null) {
@@ -642,11 +659,53 @@ public abstract class AbstractSettlingCamera extends AbstractCamera {
         }
     }
 
+    /**
+     * @return The time from which fixed time settling is counted: the end of the last motion, or the last 
+     * actuation if later, e.g. when lights were switched. As the planned end of a motion is only the 
+     * host's estimate, the time the drivers confirmed its completion is taken, if later. Returns null if 
+     * the completion was not confirmed, e.g. for drivers without motion completion feedback.
+     */
+    protected Double getSettleAnchorTime() {
+        Machine machine = Configuration.get().getMachine();
+        Motion lastMotion = machine.getMotionPlanner().getLastMotion();
+        if (lastMotion == null || Double.isNaN(lastMotion.getConfirmedTime1())) {
+            return null;
+        }
+        double time = Math.max(lastMotion.getPlannedTime1(), lastMotion.getConfirmedTime1());
+        if (machine instanceof ReferenceMachine) {
+            time = Math.max(time, ((ReferenceMachine) machine).getLastActuationTime());
+        }
+        return time;
+    }
+
     @Override
     public BufferedImage settleAndCapture(SettleOption settleOption) throws Exception {
+        return settleAndCapture(settleOption, () -> capture(), (image) -> image, 
+                (frameBuffer, time) -> frameBuffer.getImageCapturedAfter(time));
+    }
+
+    @Override
+    public Mat settleAndCaptureMat(SettleOption settleOption) throws Exception {
+        return settleAndCapture(settleOption, () -> captureMat(), (image) -> OpenCvUtils.toMat(image), 
+                (frameBuffer, time) -> frameBuffer.getMatCapturedAfter(time));
+    }
+
+    /**
+     * Settles the camera, then captures the image.
+     * 
+     * @param settleOption
+     * @param capture Captures the image, after settling by fixed time or if settling is skipped.
+     * @param fromSettledImage Converts the image captured by auto-settling.
+     * @param fromFrameBuffer Gets the newest buffered image, if captured after the given time, or null.
+     * @return
+     * @throws Exception
+     */
+    private <T> T settleAndCapture(SettleOption settleOption, Callable<T> capture, 
+            Function<BufferedImage, T> fromSettledImage, 
+            BiFunction<FrameBuffer, Double, T> fromFrameBuffer) throws Exception {
         if (settleOption == SettleOption.Skip) {
             // Skip settling.
-            return capture();
+            return capture.call();
         }
         Map<String, Object> globals = new HashMap<>();
         globals.put("camera", this);
@@ -661,16 +720,34 @@ public abstract class AbstractSettlingCamera extends AbstractCamera {
                 settleMethod = SettleMethod.FixedTime;
             }
             if (settleMethod == SettleMethod.FixedTime) {
+                FrameBuffer frameBuffer = getFrameBuffer();
+                Double anchorTime = (frameBuffer == null ? null : getSettleAnchorTime());
+                if (anchorTime != null) {
+                    // Count the settle time from the end of the motion or the last actuation, rather than 
+                    // from now. 
+                    double settledTime = anchorTime + getSettleTimeMs()/1000.0;
+                    T image = fromFrameBuffer.apply(frameBuffer, settledTime);
+                    if (image != null) {
+                        Logger.trace("Camera {} settled from frame buffer.", getName());
+                        return image;
+                    }
+                    long remainingMs = (long) Math.ceil((settledTime - NanosecondTime.getRuntimeSeconds())*1000);
+                    if (remainingMs > 0) {
+                        NanosecondTime.sleep(Math.min(remainingMs, getSettleTimeMs()));
+                    }
+                    return capture.call();
+                }
                 try {
-                    Thread.sleep(getSettleTimeMs());
+                    NanosecondTime.sleep(getSettleTimeMs());
                 }
                 catch (Exception e) {
 
                 }
-                return capture();
+                return capture.call();
             }
             else {
-                return autoSettleAndCapture(settleOption == SettleOption.SettleFullArea ? 0 : settleMaskCircle);
+                return fromSettledImage.apply(
+                        autoSettleAndCapture(settleOption == SettleOption.SettleFullArea ? 0 : settleMaskCircle));
             }
         }
         finally {
@@ -687,6 +764,30 @@ public abstract class AbstractSettlingCamera extends AbstractCamera {
         this.settleMethod = settleMethod;
     }
 
+    public int getFrameBufferSize() {
+        return frameBufferSize;
+    }
+
+    public void setFrameBufferSize(int frameBufferSize) {
+        Object oldValue = this.frameBufferSize;
+        this.frameBufferSize = frameBufferSize;
+        firePropertyChange("frameBufferSize", oldValue, frameBufferSize);
+    }
+
+    /**
+     * @return The buffer of recent frames, or null if frame buffering is disabled.
+     */
+    protected synchronized FrameBuffer getFrameBuffer() {
+        if (frameBuffer != null && frameBuffer.getCapacity() != frameBufferSize) {
+            frameBuffer.clear();
+            frameBuffer = null;
+        }
+        if (frameBuffer == null && frameBufferSize > 0) {
+            frameBuffer = new FrameBuffer(frameBufferSize);
+        }
+        return frameBuffer;
+    }
+
     public long getSettleTimeMs() {
         return settleTimeMs;
     }
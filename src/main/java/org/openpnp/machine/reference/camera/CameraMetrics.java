@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.machine.reference.camera;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openpnp.util.RollingHistogram;
+
+/**
+ * Continuous measurements of a camera's frame pipeline, telling whether time is lost in the capture
+ * itself, in the image transforms, or in broadcasting the frames to the preview and other listeners.
+ * Times are in milliseconds of real time, over a rolling window of the most recent frames.
+ *
+ * Scripts can access them as camera.getMetrics().
+ */
+public class CameraMetrics {
+    public static final int WINDOW = 200;
+
+    private final RollingHistogram captureMilliseconds = new RollingHistogram(WINDOW);
+    private final RollingHistogram transformMilliseconds = new RollingHistogram(WINDOW);
+    private final RollingHistogram broadcastMilliseconds = new RollingHistogram(WINDOW);
+    private final AtomicLong droppedFrames = new AtomicLong();
+
+    /**
+     * @return The latency of the camera driver's internal capture, including any retries.
+     */
+    public RollingHistogram getCaptureMilliseconds() {
+        return captureMilliseconds;
+    }
+
+    /**
+     * @return The time taken by the image transforms, including the conversions they need.
+     */
+    public RollingHistogram getTransformMilliseconds() {
+        return transformMilliseconds;
+    }
+
+    /**
+     * @return The time taken to hand a frame to all the camera listeners, such as the CameraView.
+     */
+    public RollingHistogram getBroadcastMilliseconds() {
+        return broadcastMilliseconds;
+    }
+
+    /**
+     * @return The number of transformed frames that were replaced by a newer one, before they could be
+     * broadcast.
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    void frameDropped() {
+        droppedFrames.incrementAndGet();
+    }
+
+    public void reset() {
+        captureMilliseconds.clear();
+        transformMilliseconds.clear();
+        broadcastMilliseconds.clear();
+        droppedFrames.set(0);
+    }
+
+    static double millisecondsSince(long nanoTime) {
+        return (System.nanoTime() - nanoTime)*1e-6;
+    }
+
+    @Override
+    public String toString() {
+        return "capture ["+captureMilliseconds+"], transform ["+transformMilliseconds
+                +"], broadcast ["+broadcastMilliseconds+"], dropped frames "+droppedFrames.get();
+    }
+}
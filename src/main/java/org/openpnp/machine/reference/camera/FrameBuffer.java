@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.machine.reference.camera;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+import org.opencv.core.Mat;
+import org.openpnp.util.OpenCvUtils;
+import org.openpnp.vision.MatPool;
+
+/**
+ * A ring buffer of the most recent camera frames, each stamped with its capture time. Frames are
+ * either a BufferedImage or a Mat, converted only when requested in the other form. The capture
+ * time uses the same real-time base as the motion planner, i.e. NanosecondTime.getRuntimeSeconds().
+ */
+public class FrameBuffer {
+    private static class Frame {
+        final double time;
+        final Object image;
+
+        Frame(double time, Object image) {
+            this.time = time;
+            this.image = image;
+        }
+    }
+
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+    private final int capacity;
+
+    public FrameBuffer(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return frames.size();
+    }
+
+    /**
+     * Adds a frame, dropping the oldest one if the buffer is full.
+     *
+     * @param time The capture time in seconds.
+     * @param image The image, which must not be modified afterwards.
+     */
+    public synchronized void add(double time, BufferedImage image) {
+        addFrame(new Frame(time, image));
+    }
+
+    /**
+     * Adds a frame, dropping the oldest one if the buffer is full.
+     *
+     * @param time The capture time in seconds.
+     * @param mat The image, which is copied.
+     */
+    public synchronized void add(double time, Mat mat) {
+        addFrame(new Frame(time, MatPool.get().borrowClone(mat)));
+    }
+
+    private void addFrame(Frame frame) {
+        if (!frames.isEmpty() && frames.getLast().time > frame.time) {
+            // Frames from concurrent captures can complete out of order, drop the stale one.
+            recycle(frame);
+            return;
+        }
+        frames.addLast(frame);
+        while (frames.size() > capacity) {
+            recycle(frames.removeFirst());
+        }
+    }
+
+    /**
+     * @param time
+     * @return The newest frame, if it was captured at or after the given time, as a BufferedImage, or null if 
+     * none is buffered.
+     */
+    public synchronized BufferedImage getImageCapturedAfter(double time) {
+        Frame frame = getFrameCapturedAfter(time);
+        if (frame == null) {
+            return null;
+        }
+        if (frame.image instanceof Mat) {
+            return OpenCvUtils.toBufferedImage((Mat) frame.image);
+        }
+        return (BufferedImage) frame.image;
+    }
+
+    /**
+     * @param time
+     * @return The newest frame, if it was captured at or after the given time, as a Mat owned by the caller, 
+     * or null if none is buffered.
+     */
+    public synchronized Mat getMatCapturedAfter(double time) {
+        Frame frame = getFrameCapturedAfter(time);
+        if (frame == null) {
+            return null;
+        }
+        if (frame.image instanceof Mat) {
+            return MatPool.get().borrowClone((Mat) frame.image);
+        }
+        return OpenCvUtils.toMat((BufferedImage) frame.image);
+    }
+
+    private Frame getFrameCapturedAfter(double time) {
+        // Frames are in capture time order.
+        Frame frame = frames.peekLast();
+        if (frame != null && frame.time >= time) {
+            return frame;
+        }
+        return null;
+    }
+
+    /**
+     * Drops all the frames, e.g. when the scene changes without motion, such as when switching lights.
+     */
+    public synchronized void clear() {
+        for (Iterator<Frame> iterator = frames.iterator(); iterator.hasNext(); ) {
+            recycle(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    private static void recycle(Frame frame) {
+        if (frame.image instanceof Mat) {
+            MatPool.get().recycle((Mat) frame.image);
+        }
+    }
+}
@@ -27,13 +27,17 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.ConvolveOp;
+import java.awt.image.DataBufferByte;
 import java.awt.image.Kernel;
 import java.net.URL;
-import java.util.stream.IntStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.imageio.ImageIO;
 
 import org.opencv.core.Core;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.Scalar;
 import org.opencv.core.Size;
@@ -55,9 +59,9 @@ import org.openpnp.model.Solutions.Severity;
 import org.openpnp.spi.Nozzle;
 import org.openpnp.spi.PropertySheetHolder;
 import org.openpnp.spi.VisionProvider.TemplateMatch;
-import org.openpnp.util.ImageUtils;
 import org.openpnp.util.OpenCvUtils;
 import org.openpnp.vision.FluentCv;
+import org.openpnp.vision.MatPool;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
@@ -126,7 +130,19 @@ public class ImageCamera extends ReferenceCamera {
     @Attribute(required = false)
     private boolean subPixelRendering = true;
 
-    private double projectionFactor;
+    private BufferedImage sourcePyramidImage;
+    private List<Mat> sourcePyramid = new ArrayList<>();
+    private Mat viewMat = new Mat();
+
+    private Mat distortionMap1 = new Mat();
+    private Mat distortionMap2 = new Mat();
+    private List<Object> distortionMapKey;
+    private Mat distortedMat = new Mat();
+    /**
+     * Marks map coordinates that must take the border color. Far enough outside any image, even when 
+     * saturated to the fixed point map representation.
+     */
+    private static final float INVALID_COORDINATE = -1e6f;
 
     public ImageCamera() {
         setUnitsPerPixel(new Location(LengthUnit.Millimeters, 0.04233, 0.04233, 0, 0));
@@ -265,14 +281,6 @@ public class ImageCamera extends ReferenceCamera {
     }
 
     protected BufferedImage locationCapture(Location location, int width, int height, boolean simulation) {
-        /*
-         * Create a buffer that we will render the image view.
-         */
-        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-
-        Graphics2D gFrame = frame.createGraphics();
-        AffineTransform tx = gFrame.getTransform();
-
         double locationX = location.getX();
         double locationY = location.getY();
 
@@ -280,25 +288,26 @@ public class ImageCamera extends ReferenceCamera {
         double pixelX = locationX / upp.getX();
         double pixelY = locationY / upp.getY();
 
-        // Draw the image with sub-pixel rendering.
+        // Render the image with sub-pixel rendering.
         double dx = (pixelX - (width / 2.0));
         double dy = (source.getHeight() - (pixelY + (height / 2.0)));
-        gFrame.clearRect(0, 0, width, height);
-        gFrame.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);//VALUE_INTERPOLATION_BILINEAR);
-        gFrame.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        gFrame.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         double zRotRad = Math.toRadians(getSimulatedRotation());
+        AffineTransform tg = new AffineTransform();
         if (simulation) {
-            AffineTransform tg = new AffineTransform();
             tg.translate(width/2, height/2);
             tg.scale(isSimulatedFlipped() ? -getSimulatedScale() : getSimulatedScale(), getSimulatedScale());
             tg.rotate(-zRotRad);
             tg.translate(- width/2, - height/2);
-            gFrame.setTransform(tg);
         }
-        AffineTransform t = new AffineTransform();
+        AffineTransform t = new AffineTransform(tg);
         t.translate(-dx, -dy); // x/y set here
-        gFrame.drawImage(source, t, null);
+        BufferedImage frame = renderSource(t, width, height);
+
+        Graphics2D gFrame = frame.createGraphics();
+        AffineTransform tx = gFrame.getTransform();
+        gFrame.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        gFrame.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        gFrame.setTransform(tg);
 
         double cameraViewDiagonal = Math.sqrt(Math.pow(upp.getX()*width, 2) + Math.pow(upp.getY()*height, 2));
         double sensorDiagonal = getSensorDiagonal().convertToUnits(AxesLocation.getUnits()).getValue();
@@ -322,113 +331,9 @@ public class ImageCamera extends ReferenceCamera {
 
         if (getSimulatedDistortion() != 0.0 || getSimulatedYRotation() != 0.0) {
             // Simulate camera lens distortion and mounting y rotation.
-            BufferedImage undistorted  = ImageUtils.clone(frame);
-            double xo = 0.5 - width/2;
-            double yo = 0.5 - height/2;
             double radius = Math.hypot(width, height)/2;
             double dist = cameraDistance/(upp.getX()*radius);
-            double factor = 1.0/radius;
-            double zFactor = 1.0/dist;
-            double yRotRad = Math.toRadians(getSimulatedYRotation());
-            double sinYaw = Math.sin(yRotRad);
-            double cosYaw = Math.cos(yRotRad);
-            double tanYaw = sinYaw/cosYaw;
-            double zFactorYaw = zFactor*sinYaw;
-            double distort = 0.01*getSimulatedDistortion();
-            projectionFactor = radius;
-            double zRotSin = Math.sin(zRotRad);
-            double zRotCos = Math.cos(zRotRad);
-            final int kernel_r = 1;
-            int grayRGB = new Color(128, 128, 128).getRGB();
-            int baseRGB = new Color(0, 0, 0).getRGB();
-            // First pass  : stake out the projection by 9 points and calculate the projectionFactor.
-            // Second pass : actually apply the projection to the pixels.
-            for (int pass = 0; pass < 2; pass++) {
-                final int xStep = pass == 0 ? width/2 : 1;
-                final int yStep = pass == 0 ? height/2 : 1;
-                final int x1 = pass == 0 ? 3 : width-1; //width : width-1;
-                final int y1 = pass == 0 ? height : height-1;
-                final int passf = pass;
-                IntStream.range(0, x1).parallel().forEach(xi -> {
-                    int x = xi*xStep;
-                //for (int x = 0; x <= x1; x += xStep) {
-                    for (int y = 0; y <= y1; y += yStep) {
-                        // Normed to ±1.0
-                        double xN = (x + xo)*factor; 
-                        double yN = (y + yo)*factor;
-                        double radial = Math.hypot(xN, yN);
-                        // Distortion
-                        double distortion = (1-distort)*radial + distort*(-0.2*Math.pow(radial, 2) + 0.8*Math.pow(radial, 4) + 0.4*Math.pow(radial, 6));
-                        double xD = xN/radial*distortion;
-                        double yD = yN/radial*distortion;
-                        // Rotate back in Z 
-                        double xR = xD*zRotCos + yD*zRotSin;
-                        double yR = - xD*zRotSin + yD*zRotCos;
-                        // Reverse perspective transform
-                        double alpha = Math.atan2(xR, dist)-yRotRad;
-                        double xY = (Math.tan(alpha)+tanYaw)*dist;
-                        double zT = 1.0 - xY*zFactorYaw;
-                        double yY = yR*zT;
-                        // Rotate back in Z 
-                        double xT = xY*zRotCos - yY*zRotSin;
-                        double yT = xY*zRotSin + yY*zRotCos;
-                        // Pixel coordinates
-                        double xP = (xT*projectionFactor - xo);
-                        double yP = (yT*projectionFactor - yo);
-
-                        if (passf == 0) {
-                            // Minimize the projectionFactor.
-                            if (xP < kernel_r) {
-                                projectionFactor = (kernel_r + xo)/xT;
-                            }
-                            else if (xP > width-kernel_r) {
-                                projectionFactor = (-kernel_r + width + xo)/xT;
-                            }
-                            else if (yP < kernel_r) {
-                                projectionFactor = (kernel_r + yo)/yT;
-                            }
-                            else if (yP > height-kernel_r) {
-                                projectionFactor = (-kernel_r + height + yo)/yT;
-                            }
-                        }
-                        else {  
-                            // Set the pixel.
-                            int x0 = (int)(xP);
-                            int y0 = (int)(yP);
-                            if (x0 >= 0 && x0+kernel_r < width && y0 >= 0 && y0+kernel_r < height) {
-                                double red = 0;
-                                double green = 0;
-                                double blue = 0;
-                                double norm = 0;
-                                for (int ix = x0; ix <= x0+kernel_r; ix++) {
-                                    for (int iy = y0; iy <= y0+kernel_r; iy++) {
-                                        int rgb = undistorted.getRGB(ix, iy);
-                                        int r = (rgb >> 16) & 0xff;
-                                        int g = (rgb >> 8) & 0xff;
-                                        int b = (rgb >> 0) & 0xff;
-                                        double dix = ix - xP;
-                                        double diy = iy - yP;
-                                        double di = (dix*dix + diy*diy);
-                                        double weight = Math.max(0, 1.0 - di);
-                                        norm += weight;
-                                        red += weight*r;
-                                        green += weight*g;
-                                        blue += weight*b;
-                                    }
-                                }
-                                int r = Math.max(0, Math.min(255, (int)(red/norm)));
-                                int g = Math.max(0, Math.min(255, (int)(green/norm)));
-                                int b = Math.max(0, Math.min(255, (int)(blue/norm)));
-                                int newRGB = baseRGB|(r<<16)|(g<<8)|(b<<0);
-                                frame.setRGB(x, y, newRGB);
-                            }
-                            else {
-                                frame.setRGB(x, y, grayRGB);
-                            }
-                        }
-                    }
-                });
-            }
+            distort(frame, zRotRad, dist);
         }
 
         if (simulation) {
@@ -440,6 +345,186 @@ public class ImageCamera extends ReferenceCamera {
         return frame;
     }
 
+    /**
+     * Renders the source image into a new frame. The source is resampled from the level of the 
+     * source pyramid that is nearest to, but not below the scale of the transform, so only the pixels 
+     * in view are interpolated, and down-scaled views do not alias.  
+     * 
+     * @param transform The transform from source to frame pixels, in Java2D pixel coordinates.
+     * @param width
+     * @param height
+     * @return The frame as a TYPE_3BYTE_BGR image, which converts to a Mat without further ado.
+     */
+    private synchronized BufferedImage renderSource(AffineTransform transform, int width, int height) {
+        if (sourcePyramid.isEmpty() || sourcePyramidImage != source) {
+            releaseSourcePyramid();
+            sourcePyramid.add(OpenCvUtils.toMat(source));
+            sourcePyramidImage = source;
+        }
+        double scale = Math.sqrt(Math.abs(transform.getDeterminant()));
+        int level = 0;
+        while (scale*(2 << level) <= 1.0) {
+            Mat mat = sourcePyramid.get(level);
+            if (mat.cols() < 2 || mat.rows() < 2) {
+                break;
+            }
+            if (sourcePyramid.size() == level + 1) {
+                Mat pyrDown = new Mat();
+                Imgproc.pyrDown(mat, pyrDown);
+                sourcePyramid.add(pyrDown);
+            }
+            level++;
+        }
+        // Java2D samples at pixel centers, OpenCV at integer pixel coordinates. Pyramid pixels are 
+        // centered on the source pixels they merge. 
+        double levelScale = 1 << level;
+        AffineTransform t = AffineTransform.getTranslateInstance(-0.5, -0.5);
+        t.concatenate(transform);
+        t.scale(levelScale, levelScale);
+        t.translate(0.5, 0.5);
+        double[] matrix = new double[6];
+        t.getMatrix(matrix);
+        Mat mapMatrix = new Mat(2, 3, CvType.CV_64FC1);
+        mapMatrix.put(0, 0, matrix[0], matrix[2], matrix[4], matrix[1], matrix[3], matrix[5]);
+        Imgproc.warpAffine(sourcePyramid.get(level), viewMat, mapMatrix, new Size(width, height), 
+                Imgproc.INTER_CUBIC, Core.BORDER_CONSTANT, new Scalar(0, 0, 0));
+        mapMatrix.release();
+
+        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        viewMat.get(0, 0, ((DataBufferByte) frame.getRaster().getDataBuffer()).getData());
+        return frame;
+    }
+
+    private void releaseSourcePyramid() {
+        for (Mat mat : sourcePyramid) {
+            mat.release();
+        }
+        sourcePyramid.clear();
+        sourcePyramidImage = null;
+    }
+
+    /**
+     * Simulates the camera lens distortion and mounting y rotation on the frame, in place. The 
+     * projection only depends on the settings, so it is computed into remap tables once.  
+     * 
+     * @param frame A TYPE_3BYTE_BGR frame.
+     * @param zRotRad
+     * @param dist The camera distance, normed to the half view diagonal.
+     */
+    private synchronized void distort(BufferedImage frame, double zRotRad, double dist) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        List<Object> key = Arrays.asList(width, height, zRotRad, dist, 
+                getSimulatedDistortion(), getSimulatedYRotation());
+        if (!key.equals(distortionMapKey)) {
+            initDistortionMaps(width, height, zRotRad, dist);
+            distortionMapKey = key;
+        }
+        byte[] data = ((DataBufferByte) frame.getRaster().getDataBuffer()).getData();
+        Mat undistorted = OpenCvUtils.toMat(frame);
+        Imgproc.remap(undistorted, distortedMat, distortionMap1, distortionMap2, Imgproc.INTER_LINEAR, 
+                Core.BORDER_CONSTANT, new Scalar(128, 128, 128));
+        MatPool.get().recycle(undistorted);
+        distortedMat.get(0, 0, data);
+    }
+
+    private void initDistortionMaps(int width, int height, double zRotRad, double dist) {
+        double xo = 0.5 - width/2;
+        double yo = 0.5 - height/2;
+        double radius = Math.hypot(width, height)/2;
+        double factor = 1.0/radius;
+        double zFactor = 1.0/dist;
+        double yRotRad = Math.toRadians(getSimulatedYRotation());
+        double sinYaw = Math.sin(yRotRad);
+        double cosYaw = Math.cos(yRotRad);
+        double tanYaw = sinYaw/cosYaw;
+        double zFactorYaw = zFactor*sinYaw;
+        double distort = 0.01*getSimulatedDistortion();
+        double projectionFactor = radius;
+        double zRotSin = Math.sin(zRotRad);
+        double zRotCos = Math.cos(zRotRad);
+        final int kernel_r = 1;
+        float[] mapX = new float[width*height];
+        float[] mapY = new float[width*height];
+        // First pass  : stake out the projection by 9 points and calculate the projectionFactor.
+        // Second pass : map all the pixels.
+        for (int pass = 0; pass < 2; pass++) {
+            final int xStep = pass == 0 ? width/2 : 1;
+            final int yStep = pass == 0 ? height/2 : 1;
+            final int x1 = pass == 0 ? 3 : width-1;
+            final int y1 = pass == 0 ? height : height-1;
+            for (int xi = 0; xi < x1; xi++) {
+                int x = xi*xStep;
+                for (int y = 0; y <= y1; y += yStep) {
+                    // Normed to ±1.0
+                    double xN = (x + xo)*factor; 
+                    double yN = (y + yo)*factor;
+                    double radial = Math.hypot(xN, yN);
+                    // Distortion
+                    double distortion = (1-distort)*radial + distort*(-0.2*Math.pow(radial, 2) + 0.8*Math.pow(radial, 4) + 0.4*Math.pow(radial, 6));
+                    double xD = xN/radial*distortion;
+                    double yD = yN/radial*distortion;
+                    // Rotate back in Z 
+                    double xR = xD*zRotCos + yD*zRotSin;
+                    double yR = - xD*zRotSin + yD*zRotCos;
+                    // Reverse perspective transform
+                    double alpha = Math.atan2(xR, dist)-yRotRad;
+                    double xY = (Math.tan(alpha)+tanYaw)*dist;
+                    double zT = 1.0 - xY*zFactorYaw;
+                    double yY = yR*zT;
+                    // Rotate back in Z 
+                    double xT = xY*zRotCos - yY*zRotSin;
+                    double yT = xY*zRotSin + yY*zRotCos;
+                    // Pixel coordinates
+                    double xP = (xT*projectionFactor - xo);
+                    double yP = (yT*projectionFactor - yo);
+
+                    if (pass == 0) {
+                        // Minimize the projectionFactor.
+                        if (xP < kernel_r) {
+                            projectionFactor = (kernel_r + xo)/xT;
+                        }
+                        else if (xP > width-kernel_r) {
+                            projectionFactor = (-kernel_r + width + xo)/xT;
+                        }
+                        else if (yP < kernel_r) {
+                            projectionFactor = (kernel_r + yo)/yT;
+                        }
+                        else if (yP > height-kernel_r) {
+                            projectionFactor = (-kernel_r + height + yo)/yT;
+                        }
+                    }
+                    else {
+                        // Map the pixel, or leave it to the gray border, if the kernel is not inside. 
+                        int x0 = (int)(xP);
+                        int y0 = (int)(yP);
+                        int i = y*width + x;
+                        if (x0 >= 0 && x0+kernel_r < width && y0 >= 0 && y0+kernel_r < height) {
+                            mapX[i] = (float) xP;
+                            mapY[i] = (float) yP;
+                        }
+                        else {
+                            mapX[i] = mapY[i] = INVALID_COORDINATE;
+                        }
+                    }
+                }
+            }
+        }
+        // The last column is not distorted.
+        for (int y = 0; y < height; y++) {
+            mapX[y*width + width - 1] = width - 1;
+            mapY[y*width + width - 1] = y;
+        }
+        Mat floatMapX = new Mat(height, width, CvType.CV_32FC1);
+        Mat floatMapY = new Mat(height, width, CvType.CV_32FC1);
+        floatMapX.put(0, 0, mapX);
+        floatMapY.put(0, 0, mapY);
+        // The fixed point representation is considerably faster to remap.
+        Imgproc.convertMaps(floatMapX, floatMapY, distortionMap1, distortionMap2, CvType.CV_16SC2);
+        floatMapX.release();
+        floatMapY.release();
+    }
+
     protected void blurObjectIntoView(Graphics2D gView, BufferedImage frame) {
         AffineTransform tx = gView.getTransform();
         gView.setTransform(new AffineTransform());
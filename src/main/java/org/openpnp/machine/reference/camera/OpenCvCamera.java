@@ -79,6 +79,30 @@ public class OpenCvCamera extends ReferenceCamera implements Runnable {
         }
     }
 
+    @Override
+    protected boolean isCapturingMat() {
+        return true;
+    }
+
+    @Override
+    protected synchronized Mat internalCaptureMat() {
+        if (! ensureOpen()) {
+            return null;
+        }
+        Mat mat = new Mat();
+        try {
+            if (!fg.read(mat)) {
+                mat.release();
+                return null;
+            }
+            return mat;
+        }
+        catch (Exception e) {
+            mat.release();
+            return null;
+        }
+    }
+
     @Override
     public void open() throws Exception {
         stop();
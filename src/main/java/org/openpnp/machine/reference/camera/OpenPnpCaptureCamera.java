@@ -23,21 +23,30 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.List;
 
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
 import org.openpnp.capture.CaptureDevice;
+import org.openpnp.capture.CaptureException;
 import org.openpnp.capture.CaptureFormat;
 import org.openpnp.capture.CaptureProperty;
 import org.openpnp.capture.CaptureStream;
 import org.openpnp.capture.OpenPnpCapture;
 import org.openpnp.capture.PropertyLimits;
+import org.openpnp.capture.library.CapFormatInfo;
+import org.openpnp.capture.library.OpenpnpCaptureLibrary;
 import org.openpnp.gui.support.Wizard;
 import org.openpnp.machine.reference.camera.wizards.OpenPnpCaptureCameraConfigurationWizard;
 import org.openpnp.model.AbstractModelObject;
 import org.openpnp.spi.PropertySheetHolder;
+import org.openpnp.vision.MatPool;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
 import org.simpleframework.xml.core.Commit;
 
+import com.sun.jna.Pointer;
+
 public class OpenPnpCaptureCamera extends ReferenceCamera implements Runnable {
     private OpenPnpCapture capture = new OpenPnpCapture();
 
@@ -119,6 +128,44 @@ public class OpenPnpCaptureCamera extends ReferenceCamera implements Runnable {
         }
     }
 
+    @Override
+    protected boolean isCapturingMat() {
+        return true;
+    }
+
+    @Override
+    protected synchronized Mat internalCaptureMat() {
+        if (! ensureOpen()) {
+            return null;
+        }
+        Mat mat = null;
+        try {
+            long timeout = System.currentTimeMillis()+500;
+            while (!stream.hasNewFrame()) {
+                Thread.yield();
+                if (System.currentTimeMillis() > timeout) {
+                    return null;
+                }
+            }
+            // Capture the RGB frame directly into the Mat memory, then swap to BGR in place.
+            CapFormatInfo formatInfo = stream.getFormat().getFormatInfo();
+            mat = MatPool.get().borrow(formatInfo.height, formatInfo.width, CvType.CV_8UC3);
+            int result = OpenpnpCaptureLibrary.INSTANCE.Cap_captureFrame(stream.getContext(), stream.getStreamId(), 
+                    new Pointer(mat.dataAddr()), (int) (mat.total()*mat.elemSize()));
+            if (result != 0) {
+                throw new CaptureException(result);
+            }
+            Imgproc.cvtColor(mat, mat, Imgproc.COLOR_RGB2BGR);
+            return mat;
+        }
+        catch (Exception e) {
+            if (mat != null) {
+                MatPool.get().recycle(mat);
+            }
+            return null;
+        }
+    }
+
     @Override
     protected synchronized boolean isOpen() {
         return super.isOpen() 
@@ -25,7 +25,9 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -68,12 +70,14 @@ import org.openpnp.spi.FocusProvider;
 import org.openpnp.spi.Head;
 import org.openpnp.spi.Machine;
 import org.openpnp.util.Collect;
+import org.openpnp.util.NanosecondTime;
 import org.openpnp.util.OpenCvUtils;
 import org.openpnp.util.SimpleGraph;
 import org.openpnp.util.VisionUtils;
 import org.openpnp.vision.LensCalibration;
 import org.openpnp.vision.LensCalibration.LensModel;
 import org.openpnp.vision.LensCalibration.Pattern;
+import org.openpnp.vision.MatPool;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
@@ -186,6 +190,15 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
     private Mat undistortionMap2;
     private Mat lut;
 
+    private Mat transformMap1;
+    private Mat transformMap2;
+    private List<Object> transformMapKey;
+    /**
+     * Marks map coordinates that must remain black. Far enough outside any image, even when 
+     * saturated to the fixed point map representation.
+     */
+    private static final float INVALID_COORDINATE = -1e6f;
+
     private LensCalibration lensCalibration;
 
     private Actuator lightActuator;
@@ -230,13 +243,45 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
         Configuration.get().getScripting().on("Camera.AfterCapture", globals);
         return image;
     }
+
+    /**
+     * Same as capture(), but returns the image as a Mat. If the camera captures Mats natively, the transformations
+     * are applied to the captured Mat directly, and the preview only converts it to a BufferedImage when displayed.  
+     * @throws Exception 
+     */
+    @Override
+    public Mat captureMat() throws Exception {
+        if (!isCapturingMat()) {
+            return super.captureMat();
+        }
+        Map<String, Object> globals = new HashMap<>();
+        globals.put("camera", this);
+        Configuration.get().getScripting().on("Camera.BeforeCapture", globals);
+
+        double captureTime = NanosecondTime.getRuntimeSeconds();
+        Mat mat = transformMat(safeInternalCaptureMat());
+        FrameBuffer frameBuffer = getFrameBuffer();
+        if (frameBuffer != null && mat != null) {
+            frameBuffer.add(captureTime, mat);
+        }
+
+        Configuration.get().getScripting().on("Camera.AfterCapture", globals);
+        return mat;
+    }
     
     /**
      * Captures an image using captureRaw(), applies local transformations and returns the image.
      */
     @Override
     public BufferedImage captureTransformed() {
-        return transformImage(captureRaw());
+        double captureTime = NanosecondTime.getRuntimeSeconds();
+        BufferedImage image = transformImage(captureRaw());
+        FrameBuffer frameBuffer = getFrameBuffer();
+        if (frameBuffer != null && image != null) {
+            // Stamped with the time the capture was started.
+            frameBuffer.add(captureTime, image);
+        }
+        return image;
     }
     
     /**
@@ -255,7 +300,24 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
     }
 
     protected abstract BufferedImage internalCapture();
-    
+
+    /**
+     * @return True if the camera overrides internalCaptureMat() to hand over native frame buffers as Mat.
+     */
+    protected boolean isCapturingMat() {
+        return false;
+    }
+
+    /**
+     * Captures an image as a Mat in BGR color space. Only called if isCapturingMat() is true.
+     * 
+     * @return The Mat or null if the capture failed.
+     */
+    protected Mat internalCaptureMat() {
+        BufferedImage image = internalCapture();
+        return (image != null ? OpenCvUtils.toMat(image) : null);
+    }
+
     /**
      * Wraps internalCapture() to ensure that a null image is never returned. Attempts to
      * retry capture if the capture returns null and if no image can be captured returns a
@@ -265,15 +327,32 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
      * @return
      */
     protected synchronized BufferedImage safeInternalCapture() {
+        BufferedImage image = safeInternalCapture(() -> internalCapture());
+        return (image != null ? image : getCaptureErrorImage());
+    }
+
+    /**
+     * Same as safeInternalCapture() but using internalCaptureMat().
+     * 
+     * @return
+     */
+    protected synchronized Mat safeInternalCaptureMat() {
+        Mat mat = safeInternalCapture(() -> internalCaptureMat());
+        return (mat != null ? mat : OpenCvUtils.toMat(getCaptureErrorImage()));
+    }
+
+    private <T> T safeInternalCapture(Supplier<T> internalCapture) {
         if (! ensureOpen()) {
-            return getCaptureErrorImage();
+            return null;
         }
+        long t0 = System.nanoTime();
         long t1 = System.currentTimeMillis() + captureTryTimeoutMs;
         int i = 0;
         while (true) {
-            BufferedImage image = internalCapture();
+            T image = internalCapture.get();
             i++;
             if (image != null) {
+                getMetrics().getCaptureMilliseconds().add(CameraMetrics.millisecondsSince(t0));
                 return image;
             }
             if (i >= getCaptureTryCount()) {
@@ -287,7 +366,7 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
             Thread.yield();
         }
         Logger.warn("Camera {} failed to return an image after {} tries.", this, i);
-        return getCaptureErrorImage();
+        return null;
     }
 
     protected int getCaptureTryCount() {
@@ -571,24 +650,63 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
             if (image == null) {
                 return null;
             }
+            // We do skip the convert to and from Mat if no transforms are needed.
+            if (isTransformingImage()) {
+                long t0 = System.nanoTime();
+                Mat mat = applyTransforms(OpenCvUtils.toMat(image));
+                image = OpenCvUtils.toBufferedImage(mat);
+                MatPool.get().recycle(mat);
+                getMetrics().getTransformMilliseconds().add(CameraMetrics.millisecondsSince(t0));
+            }
+            if (image != null) {
+                // save the new image dimensions
+                width = image.getWidth();
+                height = image.getHeight();
+                setLastTransformedImage(image);
+            }
+        }
+        catch (Exception e) {
+            Logger.error(e);
+        }
+        return image;
+    }
 
-            if (advancedCalibration.isOverridingOldTransformsAndDistortionCorrectionSettings()) {
-                //Skip all the old style image transforms and distortion corrections except for 
-                //deinterlacing, cropping, and white balancing
-                if (isDeinterlaced() || isCropped() || isWhiteBalanced() || advancedCalibration.isEnabled()) {
-                    Mat mat = OpenCvUtils.toMat(image);
-                    mat = deinterlace(mat);
-                    mat = crop(mat);
-                    mat = whiteBalance(mat);
-                    mat = advancedUndistort(mat);
-                    image = OpenCvUtils.toBufferedImage(mat);
-                    mat.release();
-                }
+    /**
+     * Same as transformImage() but operating on a Mat. The given Mat is recycled if a new one is returned.
+     * 
+     * @param mat
+     * @return
+     */
+    protected Mat transformMat(Mat mat) {
+        try {
+            if (isTransformingImage()) {
+                long t0 = System.nanoTime();
+                mat = applyTransforms(mat);
+                getMetrics().getTransformMilliseconds().add(CameraMetrics.millisecondsSince(t0));
             }
-            // Old style of image transforms and distortion correction
-            // We do skip the convert to and from Mat if no transforms are needed.
-            // But we must enter while performing original calibration.
-            else if (isDeinterlaced()
+            // save the new image dimensions
+            width = mat.cols();
+            height = mat.rows();
+            setLastTransformedImage(mat);
+        }
+        catch (Exception e) {
+            Logger.error(e);
+        }
+        return mat;
+    }
+
+    /**
+     * @return True if any of the image transforms are enabled.
+     */
+    protected boolean isTransformingImage() {
+        if (advancedCalibration.isOverridingOldTransformsAndDistortionCorrectionSettings()) {
+            //Skip all the old style image transforms and distortion corrections except for 
+            //deinterlacing, cropping, and white balancing
+            return isDeinterlaced() || isCropped() || isWhiteBalanced() || advancedCalibration.isEnabled();
+        }
+        // Old style of image transforms and distortion correction
+        // But we must enter while performing original calibration.
+        return isDeinterlaced()
                 || isCropped() 
                 || isCalibrating()
                 || isUndistorted()
@@ -596,43 +714,72 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
                 || isRotated()
                 || isOffset()
                 || isFlipped()
-                || isWhiteBalanced()) {
+                || isWhiteBalanced();
+    }
 
-                Mat mat = OpenCvUtils.toMat(image);
+    private Mat applyTransforms(Mat mat) {
+        boolean advanced = advancedCalibration.isOverridingOldTransformsAndDistortionCorrectionSettings();
+        if (isCalibrating() && !advanced) {
+            // The lens calibration must see the image before undistortion, scaling etc.
+            return applyTransformsStepwise(mat);
+        }
 
-                mat = deinterlace(mat);
+        mat = deinterlace(mat);
 
-                mat = crop(mat);
+        if (!isResampling()) {
+            // Cropping and flipping just copy pixels.
+            mat = crop(mat);
+            mat = whiteBalance(mat);
+            if (!advanced) {
+                mat = flip(mat);
+            }
+            return mat;
+        }
 
-                mat = whiteBalance(mat);
+        // Crop, undistort, scale, rotate, offset and flip in one go.
+        mat = remap(mat);
 
-                mat = calibrate(mat);
+        // The white balance works per pixel, so it is applied to the final (usually smaller) image.
+        mat = whiteBalance(mat);
 
-                mat = undistort(mat);
+        return mat;
+    }
 
-                // apply affine transformations
-                mat = scale(mat);
+    private Mat applyTransformsStepwise(Mat mat) {
+        mat = deinterlace(mat);
 
-                mat = rotate(mat);
+        mat = crop(mat);
 
-                mat = offset(mat);
+        mat = whiteBalance(mat);
 
-                mat = flip(mat);
+        mat = calibrate(mat);
 
-                image = OpenCvUtils.toBufferedImage(mat);
-                mat.release();
-            }
-            if (image != null) {
-                // save the new image dimensions
-                width = image.getWidth();
-                height = image.getHeight();
-                setLastTransformedImage(image);
-            }
-        }
-        catch (Exception e) {
-            Logger.error(e);
+        mat = undistort(mat);
+
+        // apply affine transformations
+        mat = scale(mat);
+
+        mat = rotate(mat);
+
+        mat = offset(mat);
+
+        mat = flip(mat);
+
+        return mat;
+    }
+
+    /**
+     * @return True if any of the transforms needs pixels to be interpolated, i.e. more than just 
+     * copied.
+     */
+    private boolean isResampling() {
+        if (advancedCalibration.isOverridingOldTransformsAndDistortionCorrectionSettings()) {
+            return advancedCalibration.isEnabled();
         }
-        return image;
+        return isUndistorted()
+                || isScaled()
+                || isRotated()
+                || isOffset();
     }
 
     @Override
@@ -649,33 +796,192 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
         return super.getUnitsPerPixel(viewingPlaneZ);
     }
 
-    private synchronized Mat advancedUndistort(Mat mat) {
-        if (!advancedCalibration.isEnabled()) {
-            return mat;
+    /**
+     * Applies all the geometric transforms with a single remap, using maps that combine the 
+     * cropping, the undistortion and the affine transformations. Compared to applying them one 
+     * after the other, this saves the intermediate images and interpolates the pixels only once.
+     * 
+     * @param mat
+     * @return
+     */
+    private synchronized Mat remap(Mat mat) {
+        initTransformMaps(mat.size());
+        Mat dst = MatPool.get().borrow(transformMap1.rows(), transformMap1.cols(), mat.type());
+        Imgproc.remap(mat, dst, transformMap1, transformMap2, Imgproc.INTER_LINEAR);
+        MatPool.get().recycle(mat);
+
+        return dst;
+    }
+
+    private void initTransformMaps(Size size) {
+        boolean advanced = advancedCalibration.isOverridingOldTransformsAndDistortionCorrectionSettings();
+        boolean undistorting = advanced ? advancedCalibration.isEnabled() : isUndistorted();
+        Rect roi = getCropRect(size);
+        if (undistorting && (undistortionMap1 == null || undistortionMap2 == null)) {
+            initUndistortionMaps(roi.size(), advanced);
         }
-        Mat dst = mat.clone();
-        if (undistortionMap1 == null || undistortionMap2 == null) {
-            if (undistortionMap1 == null) {
-                undistortionMap1 = new Mat();
+        List<Object> key = Arrays.asList(size, roi, advanced, undistorting ? undistortionMap1 : null,
+                advanced ? null : Arrays.asList(scaleWidth, scaleHeight, rotation, offsetX, offsetY, flipX, flipY));
+        if (key.equals(transformMapKey)) {
+            return;
+        }
+        releaseTransformMaps();
+
+        int width = roi.width;
+        int height = roi.height;
+        int undistortedWidth = 0;
+        float[] undistortedX = null;
+        float[] undistortedY = null;
+        if (undistorting) {
+            width = undistortedWidth = undistortionMap1.cols();
+            height = undistortionMap1.rows();
+            undistortedX = new float[width*height];
+            undistortedY = new float[width*height];
+            undistortionMap1.get(0, 0, undistortedX);
+            undistortionMap2.get(0, 0, undistortedY);
+        }
+        int undistortedHeight = height;
+        int sourceWidth = width;
+        int sourceHeight = height;
+        boolean replicatingBorder = !advanced && isScaled();
+
+        // The affine transformations as one 3x3 matrix (row major), mapping undistorted to 
+        // final pixel coordinates. They must match scale(), rotate(), offset() and flip().
+        double[] transform = { 1, 0, 0,  0, 1, 0,  0, 0, 1 };
+        if (!advanced) {
+            if (isScaled()) {
+                int scaledWidth = scaleWidth != 0 ? scaleWidth : width;
+                int scaledHeight = scaleHeight != 0 ? scaleHeight : height;
+                double sx = (double) scaledWidth / width;
+                double sy = (double) scaledHeight / height;
+                // Pixel centers are aligned like in Imgproc.resize().
+                transform = multiplyAffine(new double[] { 
+                        sx, 0, 0.5*sx - 0.5,  
+                        0, sy, 0.5*sy - 0.5 }, transform);
+                width = scaledWidth;
+                height = scaledHeight;
+            }
+            if (isRotated()) {
+                Point center = new Point(width / 2D, height / 2D);
+                Mat mapMatrix = Imgproc.getRotationMatrix2D(center, rotation, 1.0);
+                Rect bbox = new RotatedRect(center, new Size(width, height), rotation).boundingRect();
+                double[] rotate = new double[6];
+                mapMatrix.get(0, 0, rotate);
+                mapMatrix.release();
+                rotate[2] += bbox.width / 2D - center.x;
+                rotate[5] += bbox.height / 2D - center.y;
+                transform = multiplyAffine(rotate, transform);
+                width = bbox.width;
+                height = bbox.height;
+            }
+            if (isOffset()) {
+                transform = multiplyAffine(new double[] { 
+                        1, 0, offsetX,  
+                        0, 1, offsetY }, transform);
             }
-            if (undistortionMap2 == null) {
-                undistortionMap2 = new Mat();
+            if (flipY) {
+                transform = multiplyAffine(new double[] { 
+                        -1, 0, width - 1,  
+                        0, 1, 0 }, transform);
+            }
+            if (flipX) {
+                transform = multiplyAffine(new double[] { 
+                        1, 0, 0,  
+                        0, -1, height - 1 }, transform);
             }
-            advancedCalibration.initUndistortRectifyMap(mat.size(), 
-                    undistortionMap1, undistortionMap2);
         }
-        Imgproc.remap(mat, dst, undistortionMap1, undistortionMap2, Imgproc.INTER_LINEAR);
-        mat.release();
+        double det = transform[0]*transform[4] - transform[1]*transform[3];
+        double[] inverse = {
+                transform[4]/det, -transform[1]/det, (transform[1]*transform[5] - transform[2]*transform[4])/det,
+                -transform[3]/det, transform[0]/det, (transform[2]*transform[3] - transform[0]*transform[5])/det
+        };
 
-        return dst;
+        // Map each final pixel back to the source image.
+        boolean cropped = roi.width < size.width || roi.height < size.height;
+        float[] mapX = new float[width*height];
+        float[] mapY = new float[width*height];
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                double px = inverse[0]*x + inverse[1]*y + inverse[2];
+                double py = inverse[3]*x + inverse[4]*y + inverse[5];
+                if (replicatingBorder) {
+                    // Imgproc.resize() replicates the border pixels over the outer half pixel.
+                    px = (px < 0 && px > -0.5) ? 0 : (px > sourceWidth - 1 && px < sourceWidth - 0.5) ? sourceWidth - 1 : px;
+                    py = (py < 0 && py > -0.5) ? 0 : (py > sourceHeight - 1 && py < sourceHeight - 0.5) ? sourceHeight - 1 : py;
+                }
+                if (undistorting) {
+                    if (px < 0 || py < 0 || px > undistortedWidth - 1 || py > undistortedHeight - 1) {
+                        px = py = INVALID_COORDINATE;
+                    }
+                    else {
+                        // Bilinear interpolation of the undistortion map.
+                        int x0 = (int) px;
+                        int y0 = (int) py;
+                        int x1 = Math.min(x0 + 1, undistortedWidth - 1);
+                        int y1 = Math.min(y0 + 1, undistortedHeight - 1);
+                        double fx = px - x0;
+                        double fy = py - y0;
+                        int i00 = y0*undistortedWidth + x0;
+                        int i01 = y0*undistortedWidth + x1;
+                        int i10 = y1*undistortedWidth + x0;
+                        int i11 = y1*undistortedWidth + x1;
+                        px = (undistortedX[i00]*(1 - fx) + undistortedX[i01]*fx)*(1 - fy)
+                                + (undistortedX[i10]*(1 - fx) + undistortedX[i11]*fx)*fy;
+                        py = (undistortedY[i00]*(1 - fx) + undistortedY[i01]*fx)*(1 - fy)
+                                + (undistortedY[i10]*(1 - fx) + undistortedY[i11]*fx)*fy;
+                    }
+                }
+                if (cropped && (px < 0 || py < 0 || px > roi.width - 1 || py > roi.height - 1)) {
+                    // Must stay black, rather than show what was cropped away.
+                    px = py = INVALID_COORDINATE;
+                }
+                mapX[i] = (float) (px + roi.x);
+                mapY[i] = (float) (py + roi.y);
+            }
+        }
+        Mat floatMapX = new Mat(height, width, CvType.CV_32FC1);
+        Mat floatMapY = new Mat(height, width, CvType.CV_32FC1);
+        floatMapX.put(0, 0, mapX);
+        floatMapY.put(0, 0, mapY);
+        // The fixed point representation is considerably faster to remap.
+        transformMap1 = new Mat();
+        transformMap2 = new Mat();
+        Imgproc.convertMaps(floatMapX, floatMapY, transformMap1, transformMap2, CvType.CV_16SC2);
+        floatMapX.release();
+        floatMapY.release();
+        transformMapKey = key;
+    }
+
+    /**
+     * @return The 2x3 affine transformation a applied after the 3x3 transformation b, as a 3x3 
+     * matrix (row major).
+     */
+    private static double[] multiplyAffine(double[] a, double[] b) {
+        return new double[] {
+                a[0]*b[0] + a[1]*b[3],  a[0]*b[1] + a[1]*b[4],  a[0]*b[2] + a[1]*b[5] + a[2],
+                a[3]*b[0] + a[4]*b[3],  a[3]*b[1] + a[4]*b[4],  a[3]*b[2] + a[4]*b[5] + a[5],
+                0, 0, 1
+        };
+    }
+
+    private void releaseTransformMaps() {
+        if (transformMap1 != null) {
+            transformMap1.release();
+            transformMap1 = null;
+        }
+        if (transformMap2 != null) {
+            transformMap2.release();
+            transformMap2 = null;
+        }
+        transformMapKey = null;
     }
 
     private Mat whiteBalance(Mat mat) {
         if (isWhiteBalanced() && mat.channels() == 3) {
             initWhiteBalanceLut();
-            Mat whiteBalanced = new Mat();
+            Mat whiteBalanced = MatPool.get().borrow(mat.rows(), mat.cols(), mat.type());
             Core.LUT(mat, lut, whiteBalanced);
-            mat.release();
+            MatPool.get().recycle(mat);
             mat = whiteBalanced;
         }
         return mat;
@@ -966,20 +1272,23 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
 
     private Mat crop(Mat mat) {
         if (isCropped()) {
-            int cw = (cropWidth != 0 && cropWidth < (int) mat.size().width) ? cropWidth : (int) mat.size().width;
-            int ch = (cropHeight != 0 && cropHeight < (int) mat.size().height) ? cropHeight : (int) mat.size().height;
-            Rect roi = new Rect(
-                    (int) ((mat.size().width / 2) - (cw / 2)),
-                    (int) ((mat.size().height / 2) - (ch / 2)),
-                    cw,
-                    ch);
-            Mat tmp = new Mat(mat, roi);
+            Mat tmp = new Mat(mat, getCropRect(mat.size()));
             tmp.copyTo(mat);
             tmp.release();
         }
         return mat;
     }
 
+    private Rect getCropRect(Size size) {
+        int cw = (cropWidth != 0 && cropWidth < (int) size.width) ? cropWidth : (int) size.width;
+        int ch = (cropHeight != 0 && cropHeight < (int) size.height) ? cropHeight : (int) size.height;
+        return new Rect(
+                (int) ((size.width / 2) - (cw / 2)),
+                (int) ((size.height / 2) - (ch / 2)),
+                cw,
+                ch);
+    }
+
     protected boolean isCropped() {
         return cropWidth != 0 || cropHeight != 0;
     }
@@ -988,12 +1297,12 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
         if (!isDeinterlaced()) {
             return mat;
         }
-        Mat dst = new Mat(mat.size(), mat.type());
+        Mat dst = MatPool.get().borrow(mat.rows(), mat.cols(), mat.type());
         for (int i = 0; i < mat.rows() / 2; i++) {
             mat.row(i).copyTo(dst.row(i * 2));
             mat.row(i + mat.rows() / 2).copyTo(dst.row(i * 2 + 1));
         }
-        mat.release();
+        MatPool.get().recycle(mat);
         return dst;
     }
 
@@ -1023,7 +1332,7 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
 
         Mat dst = new Mat(bbox.width, bbox.height, mat.type());
         Imgproc.warpAffine(mat, dst, mapMatrix, bbox.size(), Imgproc.INTER_LINEAR);
-        mat.release();
+        MatPool.get().recycle(mat);
 
         mapMatrix.release();
 
@@ -1046,9 +1355,9 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
             }
         };
 
-        Mat dst = mat.clone();
+        Mat dst = MatPool.get().borrow(mat.rows(), mat.cols(), mat.type());
         Imgproc.warpAffine(mat, dst, mapMatrix, mat.size(), Imgproc.INTER_LINEAR);
-        mat.release();
+        MatPool.get().recycle(mat);
 
         mapMatrix.release();
 
@@ -1065,7 +1374,7 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
         }
         Mat dst = new Mat();
         Imgproc.resize(mat, dst, new Size(scaleWidth, scaleHeight));
-        mat.release();
+        MatPool.get().recycle(mat);
         return dst;
     }
 
@@ -1079,23 +1388,31 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
         }
 
         if (undistortionMap1 == null || undistortionMap2 == null) {
-            undistortionMap1 = new Mat();
-            undistortionMap2 = new Mat();
-            Mat rectification = Mat.eye(3, 3, CvType.CV_32F);
-            Calib3d.initUndistortRectifyMap(calibration.getCameraMatrixMat(),
-                    calibration.getDistortionCoefficientsMat(), rectification,
-                    calibration.getCameraMatrixMat(), mat.size(), CvType.CV_32FC1, undistortionMap1,
-                    undistortionMap2);
-            rectification.release();
+            initUndistortionMaps(mat.size(), false);
         }
 
-        Mat dst = mat.clone();
+        Mat dst = MatPool.get().borrow(mat.rows(), mat.cols(), mat.type());
         Imgproc.remap(mat, dst, undistortionMap1, undistortionMap2, Imgproc.INTER_LINEAR);
-        mat.release();
+        MatPool.get().recycle(mat);
 
         return dst;
     }
 
+    private void initUndistortionMaps(Size size, boolean advanced) {
+        undistortionMap1 = new Mat();
+        undistortionMap2 = new Mat();
+        if (advanced) {
+            advancedCalibration.initUndistortRectifyMap(size, undistortionMap1, undistortionMap2);
+            return;
+        }
+        Mat rectification = Mat.eye(3, 3, CvType.CV_32F);
+        Calib3d.initUndistortRectifyMap(calibration.getCameraMatrixMat(),
+                calibration.getDistortionCoefficientsMat(), rectification,
+                calibration.getCameraMatrixMat(), size, CvType.CV_32FC1, undistortionMap1,
+                undistortionMap2);
+        rectification.release();
+    }
+
     public void setUndistorted(boolean undistorted) {
         if (!undistorted) {
             clearCalibrationCache();
@@ -1187,6 +1504,7 @@ public abstract class ReferenceCamera extends AbstractBroadcastingCamera impleme
             undistortionMap2.release();
             undistortionMap2 = null;
         }
+        releaseTransformMaps();
     }
 
     public void startCalibration(CalibrationCallback callback) {
@@ -3,6 +3,7 @@ package org.openpnp.machine.reference.camera;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
@@ -67,17 +68,20 @@ public class SimulatedUpCamera extends ReferenceCamera {
     @Element(required = false)
     private Length sensorDiagonal = new Length(4.4, LengthUnit.Millimeters);
 
+    private BufferedImage blurFrame;
+
     public SimulatedUpCamera() {
         setUnitsPerPixel(new Location(LengthUnit.Millimeters, 0.0234375D, 0.0234375D, 0, 0));
         setLooking(Looking.Up);
     }
 
     @Override
-    public BufferedImage internalCapture() {
+    public synchronized BufferedImage internalCapture() {
         if (!ensureOpen()) {
             return null;
         }
-        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        // The frame is opaque, so it is rendered as BGR, which converts to a Mat without further ado.
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
         Graphics2D g = (Graphics2D) image.getGraphics();
         g.setColor(new Color(32, 32, 32));
         g.fillRect(0, 0, width, height);
@@ -134,17 +138,21 @@ public class SimulatedUpCamera extends ReferenceCamera {
     private void drawNozzle(Graphics2D gView, Nozzle nozzle, Location l) {
         BufferedImage frame;
         Graphics2D g; 
+        Rectangle bounds;
         if (isSimulateFocalBlur()) {
-            frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            // Reuse the transparent frame, it is cleared where the objects were drawn, after blurring them. 
+            if (blurFrame == null || blurFrame.getWidth() != width || blurFrame.getHeight() != height) {
+                blurFrame = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            }
+            frame = blurFrame;
             g = frame.createGraphics();
             g.setTransform(gView.getTransform());
-            // Clear with transparent background
-            g.setBackground(new Color(0, 0, 0, 0));
-            g.clearRect(-width/2, -height/2, width, height);
+            bounds = new Rectangle(0, 0, -1, -1);
         }
         else {
            frame = null;
            g = gView;
+           bounds = null;
         }
 
         g.setStroke(new BasicStroke(2f));
@@ -160,14 +168,11 @@ public class SimulatedUpCamera extends ReferenceCamera {
         Location offsets = l.subtractWithRotation(getSimulatedLocation());
 
         // Create a nozzle shape
-        if (fillShape(g, new Ellipse2D.Double(-0.5, -0.5, 1, 1), new Color(0, 220, 0), unitsPerPixel, offsets, false)) {
-            fillShape(g, new Ellipse2D.Double(-0.1, -0.1, 0.2, 0.2), new Color(32, 32, 32), unitsPerPixel, offsets, false);
+        if (fillShape(g, new Ellipse2D.Double(-0.5, -0.5, 1, 1), new Color(0, 220, 0), unitsPerPixel, offsets, false, bounds)) {
+            fillShape(g, new Ellipse2D.Double(-0.1, -0.1, 0.2, 0.2), new Color(32, 32, 32), unitsPerPixel, offsets, false, bounds);
             if (frame != null) {
-                blurObjectIntoView(gView, frame, nozzle, l);
-
-                // Clear with transparent background
-                g.setBackground(new Color(0, 0, 0, 0));
-                g.clearRect(-width/2, -height/2, width, height);
+                blurObjectIntoView(gView, frame, bounds, nozzle, l);
+                bounds = new Rectangle(0, 0, -1, -1);
             }
 
             // Draw the part
@@ -197,13 +202,13 @@ public class SimulatedUpCamera extends ReferenceCamera {
             offsets = partUndersideLocation.subtractWithRotation(getSimulatedLocation());
 
             // First draw the body in dark grey.
-            fillShape(g, footprint.getBodyShape(), new Color(60, 60, 60), unitsPerPixel, offsets, true);
+            fillShape(g, footprint.getBodyShape(), new Color(60, 60, 60), unitsPerPixel, offsets, true, bounds);
 
             // Then draw the pads in white
-            fillShape(g, footprint.getPadsShape(), Color.white, unitsPerPixel, offsets, true);
+            fillShape(g, footprint.getPadsShape(), Color.white, unitsPerPixel, offsets, true, bounds);
 
             if (frame != null) {
-                blurObjectIntoView(gView, frame, nozzle, 
+                blurObjectIntoView(gView, frame, bounds, nozzle, 
                         partUndersideLocation);
 
                 g.dispose();
@@ -216,7 +221,18 @@ public class SimulatedUpCamera extends ReferenceCamera {
         }
     }
 
-    protected void blurObjectIntoView(Graphics2D gView, BufferedImage frame, Nozzle nozzle, Location l) {
+    /**
+     * Blurs the objects drawn on the transparent frame into the view, according to their Z distance, and 
+     * clears the frame again. Only the bounds where the objects were drawn are processed. 
+     * 
+     * @param gView
+     * @param frame
+     * @param bounds The bounds of the drawn objects, in frame pixels, or a nonexistent rectangle if none 
+     * were drawn.
+     * @param nozzle
+     * @param l
+     */
+    protected void blurObjectIntoView(Graphics2D gView, BufferedImage frame, Rectangle bounds, Nozzle nozzle, Location l) {
         // Blur according to Z coordinate
         AffineTransform tx = gView.getTransform();
         gView.setTransform(new AffineTransform());
@@ -224,8 +240,9 @@ public class SimulatedUpCamera extends ReferenceCamera {
         final double bokeh = 0.01/getSimulatedUnitsPerPixel().convertToUnits(LengthUnit.Millimeters).getX();
         double radius = Math.min(distanceMm*bokeh, 5); // Be reasonable.
         ConvolveOp op = null;
+        int size = 1;
         if (radius > 0.01) {
-            int size = (int)Math.ceil(radius) * 2 + 1;
+            size = (int)Math.ceil(radius) * 2 + 1;
             float[] data = new float[size * size];
             double sum = 0;
             int num = 0;
@@ -250,11 +267,24 @@ public class SimulatedUpCamera extends ReferenceCamera {
                 op = new ConvolveOp(kernel, ConvolveOp.EDGE_NO_OP, null);
             }
         }
-        gView.drawImage(frame, op, 0, 0);
+        // Add the antialiasing pixel and the kernel reach, with transparent pixels to spare for the kernel edge.
+        Rectangle region = new Rectangle(bounds);
+        region.grow(1 + size, 1 + size);
+        region = region.intersection(new Rectangle(0, 0, frame.getWidth(), frame.getHeight()));
+        if (!bounds.isEmpty() && !region.isEmpty()) {
+            gView.drawImage(frame.getSubimage(region.x, region.y, region.width, region.height), op, region.x, region.y);
+
+            // Clear with transparent background
+            Graphics2D g = frame.createGraphics();
+            g.setBackground(new Color(0, 0, 0, 0));
+            g.clearRect(region.x, region.y, region.width, region.height);
+            g.dispose();
+        }
         gView.setTransform(tx);
     }
 
-    private boolean fillShape(Graphics2D g, Shape shape, Color color, Location unitsPerPixel, Location offsets, boolean addError) {
+    private boolean fillShape(Graphics2D g, Shape shape, Color color, Location unitsPerPixel, Location offsets, boolean addError, 
+            Rectangle bounds) {
         AffineTransform tx = new AffineTransform();
         double cameraViewDiagonal = Math.sqrt(Math.pow(unitsPerPixel.getX()*width, 2) + Math.pow(unitsPerPixel.getY()*height, 2));
         double sensorDiagonal = getSensorDiagonal().convertToUnits(AxesLocation.getUnits()).getValue();
@@ -285,6 +315,9 @@ public class SimulatedUpCamera extends ReferenceCamera {
                     (int)Math.min(255, color.getBlue()/shade));
             g.setColor(colorShade);
             g.fill(shape);
+            if (bounds != null) {
+                bounds.add(g.getTransform().createTransformedShape(shape).getBounds());
+            }
             return true;
         }
         return false;
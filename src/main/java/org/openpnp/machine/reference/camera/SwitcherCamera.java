@@ -31,6 +31,7 @@ import org.openpnp.spi.Actuator;
 import org.openpnp.spi.Camera;
 import org.openpnp.spi.PropertySheetHolder;
 import org.openpnp.spi.base.AbstractActuator;
+import org.openpnp.util.NanosecondTime;
 import org.simpleframework.xml.Attribute;
 
 public class SwitcherCamera extends ReferenceCamera {
@@ -71,7 +72,7 @@ public class SwitcherCamera extends ReferenceCamera {
                     if (this != switchedCamera) {
                         return null;
                     }
-                    Thread.sleep(actuatorDelayMillis);
+                    NanosecondTime.sleep(actuatorDelayMillis);
                     switchers.put(switcher, this);
                 }
                 catch (TimeoutException e) {
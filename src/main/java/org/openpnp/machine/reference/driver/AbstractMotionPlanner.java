@@ -22,10 +22,18 @@
 package org.openpnp.machine.reference.driver;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.Action;
 import javax.swing.Icon;
@@ -70,7 +78,8 @@ import org.simpleframework.xml.Attribute;
  * <li> As soon as some facility needs to wait for a move to actually complete (e.g. Vision),   
  *      the recorded MotionCommands are transformed into an execution plan of Motions.</li> 
  * <li> Any advanced motion planning can take place on the execution plan (Overrides on sub-classes).</li>  
- * <li> The execution plan is sent to the drivers.</li>
+ * <li> The execution plan is sent to the drivers. With parallel driver dispatch, each driver's share of a Motion
+ *      is sent concurrently, one sender thread per driver.</li>
  * <li> Finally the actual wait for completion takes place.</li>
  * <li> Additional work such as homing(), driver coordination and enumeration, soft-limit checking and rotation 
  *      angle wrap-around is done.</li>
@@ -82,6 +91,9 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
     @Attribute(required=false)
     private double maximumPlanHistory = 60; // s
 
+    @Attribute(required=false)
+    private boolean parallelDriverDispatch = false;
+
     private ReferenceMachine machine;
 
     protected LinkedList<Motion> motionCommands = new LinkedList<>();
@@ -90,6 +102,25 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
     private AxesLocation lastDirectionalBacklashOffset = new AxesLocation();
     private List<Driver> lastPlannedDrivers = new ArrayList<Driver>(); 
 
+    private final Map<Driver, ExecutorService> driverExecutors = new HashMap<>();
+
+    /**
+     * A task dispatched to one driver, see {@link AbstractMotionPlanner#dispatchToDrivers(List, boolean, DriverDispatch)}.
+     */
+    protected interface DriverDispatch {
+        void dispatch(Driver driver) throws Exception;
+    }
+
+    public boolean isParallelDriverDispatch() {
+        return parallelDriverDispatch;
+    }
+
+    public void setParallelDriverDispatch(boolean parallelDriverDispatch) {
+        Object oldValue = this.parallelDriverDispatch;
+        this.parallelDriverDispatch = parallelDriverDispatch;
+        firePropertyChange("parallelDriverDispatch", oldValue, parallelDriverDispatch);
+    }
+
     @Override
     public synchronized void home() throws Exception {
         // Reset lastDirectionalBacklashOffset (we don't actually know it after homing, but it will be known after the first move).
@@ -398,6 +429,19 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
         // The motion commands are reset.
         motionCommands = new LinkedList<>();
 
+        executeMotionPlan(executionPlan, completionType);
+    }
+
+    /**
+     * Plan and then execute the given motion commands, that have already been taken from the pending motion 
+     * commands.  
+     * 
+     * @param executionPlan
+     * @param completionType
+     * @throws Exception
+     */
+    protected synchronized void executeMotionPlan(List<Motion> executionPlan, CompletionType completionType) 
+            throws Exception {
         // Apply any optimization to the execution plan. This is where advanced MotionPlanner sub-classes will shine.
         optimizeExecutionPlan(executionPlan, completionType);
 
@@ -461,12 +505,25 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
     protected boolean executeMoveTo(ReferenceMachine machine, ReferenceHeadMountable hm,
             Motion plannedMotion, boolean firstAfterCoordination) throws Exception {
         AxesLocation motionSegment = plannedMotion.getLocation0().motionSegmentTo(plannedMotion.getLocation1());
-        // Note, this loop will be empty if the motion is empty, i.e. if it only contains VirtualAxis movement.
-        boolean firstDriver = true;
-        for (Driver driver : motionSegment.getAxesDrivers(machine)) {
-            for (Motion.MoveToCommand moveToCommand : plannedMotion
-                    .interpolatedMoveToCommands(driver, isInterpolationRetiming())) {
+        List<Driver> drivers = motionSegment.getAxesDrivers(machine);
+        // Note, this will be empty if the motion is empty, i.e. if it only contains VirtualAxis movement.
+        if (drivers.isEmpty()) {
+            return false;
+        }
+        // Interpolate up front, so the dispatch only has to send.
+        Map<Driver, List<Motion.MoveToCommand>> driverCommands = new HashMap<>();
+        for (Driver driver : drivers) {
+            driverCommands.put(driver, plannedMotion
+                    .interpolatedMoveToCommands(driver, isInterpolationRetiming()));
+        }
+        dispatchToDrivers(drivers, isParallelDriverDispatch(), (driver) -> {
+            for (Motion.MoveToCommand moveToCommand : driverCommands.get(driver)) {
                 driver.moveTo(hm, moveToCommand);
+            }
+        });
+        boolean firstDriver = true;
+        for (Driver driver : drivers) {
+            for (Motion.MoveToCommand moveToCommand : driverCommands.get(driver)) {
                 try {
                     recordDiagnostics(plannedMotion, moveToCommand, driver, firstAfterCoordination, firstDriver);
                 }
@@ -476,7 +533,105 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
             }
             firstDriver = false;
         }
-        return !firstDriver;
+        return true;
+    }
+
+    /**
+     * Dispatch a task to each of the given drivers. If parallel is true and more than one driver is 
+     * involved, the drivers are served concurrently, with one sender thread per driver, so that the send
+     * and confirmation round-trips of multiple controllers overlap. The method returns when all the 
+     * drivers have completed their task (completion barrier). If any of the tasks fails, the first 
+     * exception is thrown after all the others have completed.
+     * 
+     * Note, while the calling thread holds the planner lock, parallel tasks must not call synchronized 
+     * planner methods.  
+     * 
+     * @param drivers
+     * @param parallel
+     * @param dispatch
+     * @throws Exception
+     */
+    protected void dispatchToDrivers(List<Driver> drivers, boolean parallel, DriverDispatch dispatch) throws Exception {
+        if (!parallel || drivers.size() < 2) {
+            for (Driver driver : drivers) {
+                dispatch.dispatch(driver);
+            }
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < drivers.size() - 1; i++) {
+            Driver driver = drivers.get(i);
+            futures.add(submitToDriverExecutor(driver, () -> {
+                dispatch.dispatch(driver);
+                return null;
+            }));
+        }
+        // Serve the last driver on this thread.
+        Exception error = null;
+        try {
+            dispatch.dispatch(drivers.get(drivers.size() - 1));
+        }
+        catch (Exception e) {
+            error = e;
+        }
+        // Completion barrier.
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            }
+            catch (ExecutionException e) {
+                if (error == null) {
+                    error = (e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Submit a task to the sender thread of the driver, creating it on demand. 
+     * 
+     * @param driver
+     * @param task
+     * @return
+     */
+    protected Future<?> submitToDriverExecutor(Driver driver, Callable<?> task) {
+        synchronized (driverExecutors) {
+            ExecutorService executor = driverExecutors.get(driver);
+            if (executor == null) {
+                // Shut down the threads of drivers that were removed or replaced.
+                for (Iterator<Entry<Driver, ExecutorService>> iterator = driverExecutors.entrySet().iterator(); 
+                        iterator.hasNext(); ) {
+                    Entry<Driver, ExecutorService> entry = iterator.next();
+                    if (!getMachine().getDrivers().contains(entry.getKey())) {
+                        entry.getValue().shutdown();
+                        iterator.remove();
+                    }
+                }
+                executor = Executors.newSingleThreadExecutor((runnable) -> {
+                    Thread thread = new Thread(runnable, "MotionPlanner dispatch "+driver.getName());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                driverExecutors.put(driver, executor);
+            }
+            return executor.submit(task);
+        }
+    }
+
+    /**
+     * Shuts down the driver sender threads. Tasks already submitted are still completed.
+     */
+    @Override
+    public void releaseResources() {
+        synchronized (driverExecutors) {
+            for (ExecutorService executor : driverExecutors.values()) {
+                executor.shutdown();
+            }
+            driverExecutors.clear();
+        }
     }
 
     /**
@@ -722,10 +877,14 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
             throws Exception {
         // Now is high time to plan and execute the queued motion commands. 
         executeMotionPlan(completionType);
+        double executedTime1 = getExecutedTime1();
 
         if (completionType.isEnforcingStillstand()) {
             // Wait for the drivers.
             waitForDriverCompletion(hm, completionType);
+            if (completionType.isWaitingForDrivers()) {
+                confirmMotionCompletion(hm, executedTime1);
+            }
             // The drivers might have reported new coordinates back. Propagate to planned axis coordinates, 
             // applying the backlash offset in reverse.
             AxesLocation reportedLocation = new AxesLocation(getMachine().getAxes(), 
@@ -792,6 +951,42 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
         }
     }
 
+    /**
+     * @return The planned end of the last motion executed with the drivers.
+     */
+    protected synchronized double getExecutedTime1() {
+        return motionPlan.isEmpty() ? Double.NEGATIVE_INFINITY : motionPlan.lastKey();
+    }
+
+    /**
+     * Records the time the drivers confirmed the completion of the motions executed until the given planned 
+     * time. Only motions whose drivers were all waited for, and confirm motion completion, are recorded.
+     * 
+     * @param hm The HeadMountable that was waited for, or null for all the drivers.
+     * @param executedTime1
+     */
+    protected synchronized void confirmMotionCompletion(HeadMountable hm, double executedTime1) {
+        double time = NanosecondTime.getRuntimeSeconds();
+        ReferenceMachine machine = getMachine();
+        List<Driver> drivers = (hm != null ? 
+                hm.getMappedAxes(machine).getAxesDrivers(machine) 
+                : machine.getDrivers());
+        for (Motion motion : motionPlan.headMap(executedTime1, true).values()) {
+            if (Double.isNaN(motion.getConfirmedTime1())) {
+                boolean confirmed = true;
+                for (Driver driver : motion.getLocation1().getAxesDrivers(machine)) {
+                    if (!(drivers.contains(driver) && driver.isMotionCompletionConfirmed())) {
+                        confirmed = false;
+                        break;
+                    }
+                }
+                if (confirmed) {
+                    motion.setConfirmedTime1(time);
+                }
+            }
+        }
+    }
+
     /**
      * Wait for the drivers.
      * 
@@ -802,20 +997,21 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
     protected void waitForDriverCompletion(HeadMountable hm, CompletionType completionType)
             throws Exception {
         ReferenceMachine machine = getMachine();
+        // Drivers may query the planner while waiting (e.g. the NullDriver), so we can only wait in parallel 
+        // when not holding the planner lock, as is the case when called from home(). 
+        boolean parallel = isParallelDriverDispatch() && !Thread.holdsLock(this);
         // If the hm is given, we just wait for the drivers of that hm, otherwise we wait for all drivers,
         // including those that do not have any axes attached.
         if (hm != null) {
             AxesLocation mappedAxes = hm.getMappedAxes(machine);
             if (!mappedAxes.isEmpty()) {
-                for (Driver driver : mappedAxes.getAxesDrivers(machine)) {
-                    driver.waitForCompletion((ReferenceHeadMountable) hm, completionType);
-                }
+                dispatchToDrivers(mappedAxes.getAxesDrivers(machine), parallel, 
+                        (driver) -> driver.waitForCompletion((ReferenceHeadMountable) hm, completionType));
             }
         }
         else {
-            for (Driver driver : machine.getDrivers()) {
-                driver.waitForCompletion(null, completionType);
-            }
+            dispatchToDrivers(machine.getDrivers(), parallel, 
+                    (driver) -> driver.waitForCompletion(null, completionType));
         }
     }
 
@@ -202,6 +202,14 @@ public abstract class AbstractReferenceDriver extends AbstractDriver {
         }
     }
 
+    /**
+     * @param communications
+     * @return True if the communications instance belongs to this driver, whether it is currently used or not.
+     */
+    public boolean isOwningCommunications(ReferenceDriverCommunications communications) {
+        return communications == serial || communications == tcp || communications == simulated;
+    }
+
     public LineEndingType getLineEndingType() {
         return getCommunications().getLineEndingType();
     }
@@ -294,6 +302,14 @@ public abstract class AbstractReferenceDriver extends AbstractDriver {
         tcp.setPort(port);
     }
 
+    public boolean isSocketChannel() {
+        return tcp.isSocketChannel();
+    }
+
+    public void setSocketChannel(boolean socketChannel) {
+        tcp.setSocketChannel(socketChannel);
+    }
+
     @Override
     public void setEnabled(boolean enabled) throws Exception {
         if (enabled && isSyncInitialLocation()) {
@@ -22,6 +22,7 @@
 package org.openpnp.machine.reference.driver;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -57,6 +58,13 @@ import org.simpleframework.xml.Element;
  * will therefore issue specific reporting commands where needed, making the responses uniquely recognizable, 
  * and marking the position in the response stream. 
  * 
+ * With confirmation flow control, the GcodeAsyncDriver can optionally stream commands to the controller, using 
+ * the well-known character-counting scheme (as used by GRBL, Smoothieware and others). The characters and lines 
+ * of sent but not yet confirmed commands are tracked in flight and new commands are sent as long as they fit 
+ * into the configured controller receive buffer size and queue depth. Each received confirmation releases the 
+ * oldest command in flight. This keeps the controller's buffers and look-ahead planner filled, even for small 
+ * interpolated moves, instead of paying a full communications round-trip per command.  
+ * 
  * FUTURE WORK:
  * 
  * To optimize the asynchronous operation, Actuator reads should also be handled differently. Often the 
@@ -94,6 +102,15 @@ public class GcodeAsyncDriver extends GcodeDriver {
     @Attribute(required=false)
     private boolean confirmationFlowControl = true;
 
+    @Attribute(required=false)
+    private boolean streamingFlowControl = false;
+
+    @Attribute(required=false)
+    private int streamingBufferCharacters = 127;
+
+    @Attribute(required=false)
+    private int streamingBufferLines = 16;
+
     @Attribute(required=false)
     private boolean reportedLocationConfirmation = true;
 
@@ -109,9 +126,24 @@ public class GcodeAsyncDriver extends GcodeDriver {
     @Attribute(required = false)
     private int interpolationMinStep = 16;
 
+    @Attribute(required = false)
+    private double interpolationVelocityTolerance = 0.0;
+
+    @Attribute(required = false)
+    private double interpolationLineRate = 0.0; // 0 = off, negative = estimated from the serial baud rate
+
+    @Attribute(required = false)
+    private double interpolationMaxVelocityError = 10.0;
+
     @Element(required = false)
     private Length junctionDeviation = new Length(0.02, LengthUnit.Millimeters);
 
+    /**
+     * Nominal length of an interpolated move command line, including the line ending, used to estimate the 
+     * line rate from the serial baud rate. 
+     */
+    private static final int nominalMoveCommandCharacters = 48;
+
     @Override
     public void home(Machine machine) throws Exception {
         super.home(machine);
@@ -131,6 +163,19 @@ public class GcodeAsyncDriver extends GcodeDriver {
             return timeout;
         }
     }
+
+    /**
+     * A CommandLine that was sent to the controller but is not yet confirmed.
+     */
+    static protected class InFlightCommand {
+        final CommandLine command;
+        final int characters;
+
+        InFlightCommand(CommandLine command, int characters) {
+            this.command = command;
+            this.characters = characters;
+        }
+    }
     protected LinkedBlockingQueue<CommandLine> commandQueue;
 
     private boolean waitedForCommands;
@@ -146,6 +191,43 @@ public class GcodeAsyncDriver extends GcodeDriver {
         firePropertyChange("confirmationFlowControl", oldValue, confirmationFlowControl);
     }
 
+    public boolean isStreamingFlowControl() {
+        return streamingFlowControl;
+    }
+
+    public void setStreamingFlowControl(boolean streamingFlowControl) {
+        Object oldValue = this.streamingFlowControl;
+        this.streamingFlowControl = streamingFlowControl;
+        firePropertyChange("streamingFlowControl", oldValue, streamingFlowControl);
+    }
+
+    public int getStreamingBufferCharacters() {
+        return streamingBufferCharacters;
+    }
+
+    public void setStreamingBufferCharacters(int streamingBufferCharacters) {
+        Object oldValue = this.streamingBufferCharacters;
+        this.streamingBufferCharacters = streamingBufferCharacters;
+        firePropertyChange("streamingBufferCharacters", oldValue, streamingBufferCharacters);
+    }
+
+    public int getStreamingBufferLines() {
+        return streamingBufferLines;
+    }
+
+    public void setStreamingBufferLines(int streamingBufferLines) {
+        Object oldValue = this.streamingBufferLines;
+        this.streamingBufferLines = streamingBufferLines;
+        firePropertyChange("streamingBufferLines", oldValue, streamingBufferLines);
+    }
+
+    /**
+     * @return True if commands are streamed with character-counting flow control.
+     */
+    protected boolean isStreaming() {
+        return confirmationFlowControl && streamingFlowControl;
+    }
+
     public boolean isReportedLocationConfirmation() {
         return reportedLocationConfirmation;
     }
@@ -192,6 +274,48 @@ public class GcodeAsyncDriver extends GcodeDriver {
         this.interpolationMinStep = interpolationMinStep;
     }
 
+    @Override
+    public Double getInterpolationVelocityTolerance() {
+        return interpolationVelocityTolerance;
+    }
+
+    public void setInterpolationVelocityTolerance(Double interpolationVelocityTolerance) {
+        this.interpolationVelocityTolerance = interpolationVelocityTolerance;
+    }
+
+    @Override
+    public Double getInterpolationLineRate() {
+        if (interpolationLineRate > 0) {
+            return interpolationLineRate;
+        }
+        if (interpolationLineRate < 0 && getCommunicationsType() == CommunicationsType.serial) {
+            // A serial character takes 10 bits including start and stop bit.
+            return getSerial().getBaud()/10.0/nominalMoveCommandCharacters;
+        }
+        // Network and simulated communications are not limiting. 
+        return null;
+    }
+
+    /**
+     * @return The line rate as set, 0 = off, negative = estimated from the serial baud rate.
+     */
+    public double getInterpolationLineRateSetting() {
+        return interpolationLineRate;
+    }
+
+    public void setInterpolationLineRateSetting(double interpolationLineRate) {
+        this.interpolationLineRate = interpolationLineRate;
+    }
+
+    @Override
+    public Double getInterpolationMaxVelocityError() {
+        return interpolationMaxVelocityError;
+    }
+
+    public void setInterpolationMaxVelocityError(Double interpolationMaxVelocityError) {
+        this.interpolationMaxVelocityError = interpolationMaxVelocityError;
+    }
+
     @Override
     public Length getJunctionDeviation() {
         return junctionDeviation;
@@ -226,6 +350,11 @@ public class GcodeAsyncDriver extends GcodeDriver {
     }
 
     protected class WriterThread extends Thread {
+        /**
+         * The commands sent but not yet confirmed, when streaming. 
+         */
+        private final ArrayDeque<InFlightCommand> inFlightCommands = new ArrayDeque<>();
+        private int inFlightCharacters;
 
         @Override
         public void run() {
@@ -246,6 +375,16 @@ public class GcodeAsyncDriver extends GcodeDriver {
                     continue;
                 }
                 try {
+                    if (isStreaming()) {
+                        // Flow control was switched to streaming, never wait for the last command again. 
+                        lastCommand = null;
+                        streamCommand(command);
+                        continue;
+                    }
+                    while (!inFlightCommands.isEmpty()) {
+                        // Streaming was switched off, the commands still in flight must be confirmed first.
+                        confirmInFlightCommand();
+                    }
                     if (confirmationFlowControl && lastCommand != null) {
                         try {
                             // Before we can send the new command, make sure the wanted confirmation count of the last command was received.
@@ -260,15 +399,11 @@ public class GcodeAsyncDriver extends GcodeDriver {
                         // Set up the wanted confirmations for next time.
                         lastCommand = command;
                         receivedConfirmationsQueue.clear();
-                        getCommunications().writeLine(command.line);
+                        writeCommandLine(command.line);
                         Logger.trace("[{}] >> {}", getCommunications().getConnectionName(), command);
                     }
                     else {
-                        confirmationComplete = true;
-                        synchronized(GcodeAsyncDriver.this) {
-                            GcodeAsyncDriver.this.notify();
-                        }
-                        //Logger.trace("[{}] confirmation released.", getCommunications().getConnectionName());
+                        releaseConfirmation();
                     }
                 }
                 catch (IOException e) {
@@ -279,11 +414,79 @@ public class GcodeAsyncDriver extends GcodeDriver {
                     // We probably got a timeout exception. We can't throw from the writer thread. Therefore, set 
                     // the exception as an error response, it will be reported when the driver wants to do the next step. 
                     errorResponse = new Line(e.getMessage());
+                    // We lost track of the confirmations, restart counting.
+                    clearInFlightCommands();
                     //Logger.error("[{}] {}", getCommunications().getConnectionName(), e);
                 }
             }
             Logger.trace("[{}] disconnectRequested, bye-bye.", getCommunications().getConnectionName());
         }
+
+        /**
+         * Send the command using character-counting flow control. The command is only sent once it fits 
+         * into the controller's receive buffer, i.e. once enough of the commands in flight have been 
+         * confirmed.  
+         * 
+         * @param command
+         * @throws Exception
+         */
+        protected void streamCommand(CommandLine command) throws Exception {
+            if (command.line != null) {
+                int characters = command.line.length() 
+                        + getCommunications().getLineEndingType().getLineEnding().length();
+                while (!inFlightCommands.isEmpty() 
+                        && (inFlightCharacters + characters > streamingBufferCharacters
+                                || inFlightCommands.size() >= streamingBufferLines)) {
+                    // Controller buffer is full, wait for the oldest command to be confirmed.
+                    confirmInFlightCommand();
+                }
+                if (inFlightCommands.isEmpty()) {
+                    // Nothing in flight, so any queued confirmation is stale.
+                    receivedConfirmationsQueue.clear();
+                }
+                inFlightCommands.add(new InFlightCommand(command, characters));
+                inFlightCharacters += characters;
+                writeCommandLine(command.line);
+                Logger.trace("[{}] >> {} (streaming {} lines, {} characters in flight)", 
+                        getCommunications().getConnectionName(), command, 
+                        inFlightCommands.size(), inFlightCharacters);
+            }
+            else {
+                try {
+                    // Drain: all the commands in flight must be confirmed.
+                    while (!inFlightCommands.isEmpty()) {
+                        confirmInFlightCommand();
+                    }
+                }
+                finally {
+                    releaseConfirmation();
+                }
+            }
+        }
+
+        /**
+         * Wait for the confirmation of the oldest command in flight and release its characters.
+         * 
+         * @throws Exception
+         */
+        protected void confirmInFlightCommand() throws Exception {
+            InFlightCommand inFlightCommand = inFlightCommands.poll();
+            inFlightCharacters -= inFlightCommand.characters;
+            waitForConfirmation(inFlightCommand.command.toString(), inFlightCommand.command.getTimeout());
+        }
+
+        protected void clearInFlightCommands() {
+            inFlightCommands.clear();
+            inFlightCharacters = 0;
+        }
+
+        protected void releaseConfirmation() {
+            confirmationComplete = true;
+            synchronized(GcodeAsyncDriver.this) {
+                GcodeAsyncDriver.this.notify();
+            }
+            //Logger.trace("[{}] confirmation released.", getCommunications().getConnectionName());
+        }
     }
 
     @Override
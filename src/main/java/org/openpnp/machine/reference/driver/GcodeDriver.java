@@ -21,13 +21,13 @@ package org.openpnp.machine.reference.driver;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -76,6 +76,7 @@ import org.openpnp.spi.base.AbstractHeadMountable;
 import org.openpnp.spi.base.AbstractSingleTransformedAxis;
 import org.openpnp.spi.base.AbstractTransformedAxis;
 import org.openpnp.util.NanosecondTime;
+import org.openpnp.util.TextTemplate;
 import org.openpnp.util.TextUtils;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
@@ -170,6 +171,11 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         @ElementList(required = false, inline = true, entry = "text", data = true)
         public ArrayList<String> commands = new ArrayList<>();
 
+        /**
+         * The compiled command, created on first use.
+         */
+        private TextTemplate template;
+
         public Command(String headMountableId, CommandType type, String text) {
             this.headMountableId = headMountableId;
             this.type = type;
@@ -177,6 +183,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         }
 
         public void setCommand(String text) {
+            this.template = null;
             this.commands.clear();
             if (text != null) {
                 text = text.trim();
@@ -190,6 +197,13 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
             return Joiner.on('\n').join(commands);
         }
 
+        public TextTemplate getTemplate() {
+            if (template == null) {
+                template = new TextTemplate(getCommand());
+            }
+            return template;
+        }
+
         private Command() {
 
         }
@@ -321,7 +335,35 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
     protected Line errorResponse;
     private boolean motionPending;
 
-    private PrintWriter gcodeLogger;
+    /**
+     * The compiled response regexes, used to classify each received line.  
+     */
+    protected static class ResponsePatterns {
+        final Pattern confirmPattern;
+        final Pattern errorPattern;
+        final Pattern positionReportPattern;
+
+        ResponsePatterns(String confirmRegex, String errorRegex, String positionReportRegex) {
+            confirmPattern = compile(confirmRegex);
+            errorPattern = compile(errorRegex);
+            positionReportPattern = compile(positionReportRegex);
+        }
+
+        private static Pattern compile(String regex) {
+            return regex == null ? null : Pattern.compile(regex);
+        }
+    }
+
+    private volatile ResponsePatterns responsePatterns;
+
+    private GcodeTrace gcodeTrace;
+    private final Object gcodeTraceLock = new Object();
+    /**
+     * Set when the trace file could not be created, so it is not retried on every line. Reset when the trace 
+     * is closed, i.e. on disconnect or when logging is toggled. 
+     */
+    private boolean gcodeTraceUnavailable;
+    private static final int gcodeTraceCapacity = 4096;
 
     @Commit
     public void commit() {
@@ -393,6 +435,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
      * @throws Exception
      */
     protected void connectThreads() throws Exception {
+        responsePatterns = null;
         readerThread = new ReaderThread();
         readerThread.setDaemon(true);
         readerThread.start();
@@ -437,11 +480,12 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
     public void home(Machine machine) throws Exception {
         // Home is sent with an infinite timeout since it's tough to tell how long it will
         // take.
-        String command = getCommand(null, CommandType.HOME_COMMAND);
+        TextTemplate template = getCommandTemplate(null, CommandType.HOME_COMMAND);
+        Map<String, Object> variables = new HashMap<>();
         // legacy head support
         Head head = machine.getDefaultHead();
-        command = substituteVariable(command, "Id", head.getId()); 
-        command = substituteVariable(command, "Name", head.getName());
+        variables.put("Id", head.getId()); 
+        variables.put("Name", head.getName());
         if (isUsingLetterVariables()) {
             AxesLocation axesHomeLocation =  new AxesLocation(machine, 
                     (axis) -> (axis.getHomeCoordinate())); 
@@ -459,9 +503,8 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                     else {
                         coordinate = axesHomeLocation.getCoordinate(axis, getUnits());
                     }
-                    command = substituteVariable(command, variable, coordinate);
-                    command = substituteVariable(command, variable+"L", 
-                            axis.getLetter());
+                    variables.put(variable, coordinate);
+                    variables.put(variable+"L", axis.getLetter());
 
                     // Because in homing we don't know which axis is moved when and in what combination, 
                     // we need to find the lowest rates of any axis.
@@ -482,33 +525,35 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                     }
                 }
                 else {
-                    command = substituteVariable(command, variable, null);
-                    command = substituteVariable(command, variable+"L", null); 
+                    variables.put(variable, null);
+                    variables.put(variable+"L", null); 
                 }
             }
 
             if (getMotionControlType().isUnpredictable()) {
                 // Do not initialize rates, as the motion control is unpredictable, i.e. not controlled by us.  
-                command = substituteVariable(command, "FeedRate", null);
-                command = substituteVariable(command, "Acceleration", null);
-                command = substituteVariable(command, "Jerk", null);
+                variables.put("FeedRate", null);
+                variables.put("Acceleration", null);
+                variables.put("Jerk", null);
             }
             else {
                 // For the purpose of homing, initialize the rates to the lowest of any axis. 
-                command = substituteVariable(command, "FeedRate", feedrate);
-                command = substituteVariable(command, "Acceleration", acceleration);
-                command = substituteVariable(command, "Jerk", jerk);
+                variables.put("FeedRate", feedrate);
+                variables.put("Acceleration", acceleration);
+                variables.put("Jerk", jerk);
             }
         }
         else {
             // Do not initialize rates in legacy mode.  
-            command = substituteVariable(command, "FeedRate", null);
-            command = substituteVariable(command, "Acceleration", null);
-            command = substituteVariable(command, "Jerk", null);
+            variables.put("FeedRate", null);
+            variables.put("Acceleration", null);
+            variables.put("Jerk", null);
         }
 
         long timeout = -1;
-        sendGcode(command, timeout);
+        if (template != null) {
+            sendGcode(template.substitute(variables), timeout);
+        }
 
         // Check home complete response against user's regex
         String homeCompleteRegex = getCommand(null, CommandType.HOME_COMPLETE_REGEX);
@@ -544,17 +589,18 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
     public void setGlobalOffsets(Machine machine, AxesLocation axesLocation)
             throws Exception {
         // Compose the command
-        String command = getCommand(null, CommandType.SET_GLOBAL_OFFSETS_COMMAND);
-        if (command != null) {
+        TextTemplate template = getCommandTemplate(null, CommandType.SET_GLOBAL_OFFSETS_COMMAND);
+        if (template != null) {
+            Map<String, Object> variables = new HashMap<>();
             // legacy head support
             Head head = machine.getDefaultHead();
-            command = substituteVariable(command, "Id", head.getId());
-            command = substituteVariable(command, "Name", head.getName());
+            variables.put("Id", head.getId());
+            variables.put("Name", head.getName());
             boolean isEmpty = true;
             for (String variable : getAxisVariables((ReferenceMachine) machine)) {
                 ControllerAxis axis = axesLocation.getAxisByVariable(this, variable);
                 if (axis != null) {
-                    if (hasVariable(command, variable)) {
+                    if (template.hasVariable(variable)) {
                         double coordinate;
                         if (axis.getType() == Type.Rotation) {
                             // Never convert rotation to driver units.
@@ -563,9 +609,8 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                         else {
                             coordinate = axesLocation.getCoordinate(axis, getUnits());
                         }
-                        command = substituteVariable(command, variable, coordinate);
-                        command = substituteVariable(command, variable+"L", 
-                                axis.getLetter());
+                        variables.put(variable, coordinate);
+                        variables.put(variable+"L", axis.getLetter());
                         // Store the new driver coordinate on the axis.
                         axis.setDriverCoordinate(coordinate);
                         isEmpty = false;
@@ -577,14 +622,14 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                     }
                 }
                 else {
-                    command = substituteVariable(command, variable, null);
-                    command = substituteVariable(command, variable+"L", null); 
+                    variables.put(variable, null);
+                    variables.put(variable+"L", null); 
                 }
             }
             if (!isEmpty) {
                 // If no axes are included, the G92 command must not be executed, because it would otherwise reset all
                 // axes to zero in some controllers! 
-                sendGcode(command, -1);
+                sendGcode(template.substitute(variables), -1);
             }
         }
         else {
@@ -616,7 +661,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         if (command == null) {
             throw new Exception(getName()+" configuration error: missing GET_POSITION_COMMAND.");
         }
-        if (getCommand(null, CommandType.POSITION_REPORT_REGEX) == null) {
+        if (getResponsePatterns().positionReportPattern == null) {
             throw new Exception(getName()+" configuration error: missing POSITION_REPORT_REGEX.");
         }
 
@@ -687,7 +732,24 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         return c.getCommand();
     }
 
+    /**
+     * Like getCommand(HeadMountable, CommandType) but returns the compiled command template.
+     * 
+     * @param hm
+     * @param type
+     * @return The template or null if the command is not set. 
+     */
+    public TextTemplate getCommandTemplate(HeadMountable hm, CommandType type) {
+        Command c = getCommand(hm, type, true);
+        if (c == null) {
+            return null;
+        }
+        return c.getTemplate();
+    }
+
     public void setCommand(HeadMountable hm, CommandType type, String text) {
+        // Recompile the response patterns on next use.
+        responsePatterns = null;
         Command c = getCommand(hm, type, false);
         if (text == null || text.trim().length() == 0) {
             if (c != null) {
@@ -721,8 +783,8 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
             movedAxesLocation.getLengthCoordinate(axis).convertToUnits(getUnits()).getValue() - axis.getDriverCoordinate()).third;
 
         // Start composing the command, will decide later, whether we actually send it.
-        String command = getCommand(hm, CommandType.MOVE_TO_COMMAND);
-        if (command == null) {
+        TextTemplate template = getCommandTemplate(hm, CommandType.MOVE_TO_COMMAND);
+        if (template == null) {
             if (movedAxesLocation.isEmpty()) {
                 return;
             }
@@ -734,16 +796,17 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 throw new Exception(getName()+" MOVE_TO_COMMAND missing, please use Issues & Solutions to propose proper G-code commands.");
             }
         }
-        if (hasVariable(command, "BacklashFeedRate")) {
+        if (template.hasVariable("BacklashFeedRate")) {
             throw new Exception(getName()+" configuration upgrade needed: Please remove the extra backlash compensation move from your MOVE_TO_COMMAND. "
                     +"Backlash compensation is now done outside of the drivers and configured on the axes.");
         }
 
-        command = substituteVariable(command, "Id", hm.getId());
-        command = substituteVariable(command, "Name", hm.getName());
-        command = substituteVariable(command, "FeedRate", feedRate);
-        command = substituteVariable(command, "Acceleration", acceleration);
-        command = substituteVariable(command, "Jerk", jerk);
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("Id", hm.getId());
+        variables.put("Name", hm.getName());
+        variables.put("FeedRate", feedRate);
+        variables.put("Acceleration", acceleration);
+        variables.put("Jerk", jerk);
 
         ReferenceMachine machine = (ReferenceMachine) hm.getHead().getMachine();
         // Get a map of the axes of ...
@@ -770,7 +833,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 // position change after all. 
                 // Note, there is no need for separate backlash compensation variables, as these are always 
                 // substituted alongside. 
-                if (hasVariable(command, variable+"F")) {
+                if (template.hasVariable(variable+"F")) {
                     // Force it! Must get it from the mappedAxes. If the mappedAxes do not have it, it is 
                     // still suppressed (this never happens when using letter variables). 
                     axis = mappedAxes.getAxisByVariable(this, variable);
@@ -791,15 +854,15 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 double previousCoordinate = axis.getDriverCoordinate(); 
                 int direction = ((Double)coordinate).compareTo(previousCoordinate);
                 // Substitute the axis variables.
-                command = substituteVariable(command, variable, coordinate);
-                command = substituteVariable(command, variable+"F", coordinate);
-                command = substituteVariable(command, variable+"L", axis.getLetter());
-                if (hasVariable(command, "BacklashOffset"+variable)) {
+                variables.put(variable, coordinate);
+                variables.put(variable+"F", coordinate);
+                variables.put(variable+"L", axis.getLetter());
+                if (template.hasVariable("BacklashOffset"+variable)) {
                     throw new Exception(getName()+" configuration upgrade needed: Please remove the extra backlash compensation move from your MOVE_TO_COMMAND. "
                             +"Backlash compensation is now done outside of the drivers.");
                 }
-                command = substituteVariable(command, variable+"Decreasing", direction < 0 ? true : null);
-                command = substituteVariable(command, variable+"Increasing", direction > 0 ? true : null);
+                variables.put(variable+"Decreasing", direction < 0 ? true : null);
+                variables.put(variable+"Increasing", direction > 0 ? true : null);
                 if (isSupportingPreMove() && axis instanceof ReferenceControllerAxis) {
                     // Check for a pre-move command.
                     String preMoveCommand = ((ReferenceControllerAxis) axis).getPreMoveCommand();
@@ -811,27 +874,27 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 // Axis specific jerk limits are needed on TinyG.
                 double axisDistance = coordinate - previousCoordinate;
                 double axisJerk = (jerk != null ? jerk : 0)*Math.abs(axisDistance)/driverDistance;
-                command = substituteVariable(command, variable+"Jerk", axisJerk > 1 ? axisJerk : null);
-                command = substituteVariable(command, variable+"JerkMupm3", axisJerk > 4.63 ? axisJerk*1e-6*Math.pow(60, 3) : null); // TinyG: Megaunits/min^3 
+                variables.put(variable+"Jerk", axisJerk > 1 ? axisJerk : null);
+                variables.put(variable+"JerkMupm3", axisJerk > 4.63 ? axisJerk*1e-6*Math.pow(60, 3) : null); // TinyG: Megaunits/min^3 
                 // Store the new driver coordinate on the axis.
                 axis.setDriverCoordinate(coordinate);
             }
             else {
                 // Delete the unused axis variables.
-                command = substituteVariable(command, variable, null);
-                command = substituteVariable(command, variable+"F", null);
-                command = substituteVariable(command, variable+"L", null); 
-                command = substituteVariable(command, "BacklashOffset"+variable, null);
-                command = substituteVariable(command, variable+"Decreasing", null);
-                command = substituteVariable(command, variable+"Increasing", null);
-                command = substituteVariable(command, variable+"Jerk", null);
-                command = substituteVariable(command, variable+"JerkMupm3", null);  
+                variables.put(variable, null);
+                variables.put(variable+"F", null);
+                variables.put(variable+"L", null); 
+                variables.put("BacklashOffset"+variable, null);
+                variables.put(variable+"Decreasing", null);
+                variables.put(variable+"Increasing", null);
+                variables.put(variable+"Jerk", null);
+                variables.put(variable+"JerkMupm3", null);  
             }
         }
         if (doesMove) {
             // We do actually send the command.
             motionPending = true;
-            sendGcode(command);
+            sendGcode(template.substitute(variables));
         }
     }
 
@@ -840,6 +903,11 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         return motionPending;
     }
 
+    @Override
+    public boolean isMotionCompletionConfirmed() {
+        return getCommand(null, CommandType.MOVE_TO_COMPLETE_COMMAND) != null;
+    }
+
     protected void drainCommandQueue(long timeout) throws InterruptedException {
         // This does nothing in the plain GcodeDriver. It will be overridden in the GcodeAsyncDriver.
     }
@@ -895,43 +963,54 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
 
     @Override
     public void actuate(Actuator actuator, boolean on) throws Exception {
-        String command = getCommand(actuator, CommandType.ACTUATE_BOOLEAN_COMMAND);
-        command = substituteVariable(command, "Id", actuator.getId());
-        command = substituteVariable(command, "Name", actuator.getName());
-        if (actuator instanceof ReferenceActuator) {
-            command = substituteVariable(command, "Index", ((ReferenceActuator)actuator).getIndex());
-        }
-        command = substituteVariable(command, "BooleanValue", on);
-        command = substituteVariable(command, "True", on ? on : null);
-        command = substituteVariable(command, "False", on ? null : on);
-        sendGcode(command);
+        Map<String, Object> variables = getActuatorVariables(actuator);
+        variables.put("BooleanValue", on);
+        variables.put("True", on ? on : null);
+        variables.put("False", on ? null : on);
+        sendGcode(substituteCommand(actuator, CommandType.ACTUATE_BOOLEAN_COMMAND, variables));
         SimulationModeMachine.simulateActuate(actuator, on, true);
     }
 
     @Override
     public void actuate(Actuator actuator, double value) throws Exception {
-        String command = getCommand(actuator, CommandType.ACTUATE_DOUBLE_COMMAND);
-        command = substituteVariable(command, "Id", actuator.getId());
-        command = substituteVariable(command, "Name", actuator.getName());
-        if (actuator instanceof ReferenceActuator) {
-            command = substituteVariable(command, "Index", ((ReferenceActuator)actuator).getIndex());
-        }
-        command = substituteVariable(command, "DoubleValue", value);
-        command = substituteVariable(command, "IntegerValue", (int) value);
-        sendGcode(command);
+        Map<String, Object> variables = getActuatorVariables(actuator);
+        variables.put("DoubleValue", value);
+        variables.put("IntegerValue", (int) value);
+        sendGcode(substituteCommand(actuator, CommandType.ACTUATE_DOUBLE_COMMAND, variables));
         SimulationModeMachine.simulateActuate(actuator, value, true);
     }
 
     @Override
     public void actuate(Actuator actuator, String value) throws Exception {
-        String command = getCommand(actuator, CommandType.ACTUATE_STRING_COMMAND);
-        command = substituteVariable(command, "Id", actuator.getId());
-        command = substituteVariable(command, "Name", actuator.getName());
+        Map<String, Object> variables = getActuatorVariables(actuator);
+        variables.put("StringValue", value);
+        sendGcode(substituteCommand(actuator, CommandType.ACTUATE_STRING_COMMAND, variables));
+    }
+
+    protected Map<String, Object> getActuatorVariables(Actuator actuator) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("Id", actuator.getId());
+        variables.put("Name", actuator.getName());
         if (actuator instanceof ReferenceActuator) {
-            command = substituteVariable(command, "Index", ((ReferenceActuator)actuator).getIndex());
+            variables.put("Index", ((ReferenceActuator)actuator).getIndex());
+        }
+        return variables;
+    }
+
+    /**
+     * Substitute the variables into the compiled command. 
+     * 
+     * @param hm
+     * @param type
+     * @param variables
+     * @return The command text or null if the command is not set.
+     */
+    protected String substituteCommand(HeadMountable hm, CommandType type, Map<String, Object> variables) {
+        TextTemplate template = getCommandTemplate(hm, type);
+        if (template == null) {
+            return null;
         }
-        command = substituteVariable(command, "StringValue", value);
-        sendGcode(command);
+        return template.substitute(variables);
     }
 
     @Override
@@ -941,24 +1020,20 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
          * not fire and forget. In this case, we need to know if the command was serviced or not
          * and throw an Exception if not.
          */
-        String command = getCommand(actuator, CommandType.ACTUATOR_READ_COMMAND);
+        TextTemplate template = getCommandTemplate(actuator, CommandType.ACTUATOR_READ_COMMAND);
         String regex = getCommand(actuator, CommandType.ACTUATOR_READ_REGEX);
-        if (command != null && regex != null) {
-            command = substituteVariable(command, "Id", actuator.getId());
-            command = substituteVariable(command, "Name", actuator.getName());
-            if (actuator instanceof ReferenceActuator) {
-                command = substituteVariable(command, "Index", ((ReferenceActuator)actuator).getIndex());
-            }
+        if (template != null && regex != null) {
+            Map<String, Object> variables = getActuatorVariables(actuator);
             if (parameter != null) {
                 if (parameter instanceof Double) { // Backwards compatibility
                     Double doubleParameter = (Double) parameter;
-                    command = substituteVariable(command, "DoubleValue", doubleParameter);
-                    command = substituteVariable(command, "IntegerValue", (int) doubleParameter.doubleValue());
+                    variables.put("DoubleValue", doubleParameter);
+                    variables.put("IntegerValue", (int) doubleParameter.doubleValue());
                 }
 
-                command = substituteVariable(command, "Value", parameter);
+                variables.put("Value", parameter);
             }
-            sendGcode(command);
+            sendGcode(template.substitute(variables));
             List<Line> responses = receiveResponses(regex, timeoutMilliseconds, (r) -> {
                 throw new Exception(String.format("Actuator \"%s\" read error: No matching responses found.", actuator.getName()));
             });
@@ -1075,7 +1150,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         receivedConfirmationsQueue.clear();
         try {
             // Send the command.
-            getCommunications().writeLine(command);
+            writeCommandLine(command);
         }
         catch (IOException ex) {
             Logger.error(ex, "{} failed to write command {}", getCommunications().getConnectionName(), command);
@@ -1090,7 +1165,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
 
     protected Line waitForConfirmation(String command, long timeout)
             throws Exception {
-        if (getCommand(null, CommandType.COMMAND_CONFIRM_REGEX) == null) {
+        if (getResponsePatterns().confirmPattern == null) {
            Logger.warn(getName()+" configuration error: COMMAND_CONFIRM_REGEX missing. Not waiting for confirmation.");
            return null;
         }
@@ -1245,25 +1320,6 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         if (backslashEscapedCharactersEnabled) {
             command = unescape(command);
         }
-        if (isLoggingGcode()) {
-
-            if (gcodeLogger == null) { 
-                File file;
-                try {
-                    file = Configuration.get().createResourceFile(getClass(), "log", ".g");
-                    gcodeLogger = new PrintWriter(file.getAbsolutePath());
-                }
-                catch (IOException e) {
-                    Logger.warn(e, "Cannot open Gcode log");
-                }
-            }
-            if (gcodeLogger != null) {
-                gcodeLogger.println(command);
-            }
-        }
-        else {
-            closeGcodeLogger();
-        }
         return command;
     }
 
@@ -1303,6 +1359,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                     }
                 }
                 Line line = new Line(receivedLine);
+                traceGcode(GcodeTrace.Direction.Received, receivedLine);
                 Logger.trace("[{}] << {}", getCommunications().getConnectionName(), line);
                 // Process the response.
                 processResponse(line);
@@ -1316,51 +1373,72 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         }
     }
 
+    /**
+     * @return The compiled response regexes, compiled on first use after the commands were changed. 
+     */
+    protected ResponsePatterns getResponsePatterns() {
+        ResponsePatterns patterns = responsePatterns;
+        if (patterns == null) {
+            patterns = new ResponsePatterns(
+                    getCommand(null, CommandType.COMMAND_CONFIRM_REGEX),
+                    getCommand(null, CommandType.COMMAND_ERROR_REGEX),
+                    getCommand(null, CommandType.POSITION_REPORT_REGEX));
+            responsePatterns = patterns;
+        }
+        return patterns;
+    }
+
     /**
      * Process a received response immediately. 
      *  
      * @param line
      */
     protected void processResponse(Line line) {
-        String regex = getCommand(null, CommandType.COMMAND_CONFIRM_REGEX);
-        if (regex != null && line.getLine().matches(regex)) {
+        ResponsePatterns patterns = getResponsePatterns();
+        if (patterns.confirmPattern != null 
+                && patterns.confirmPattern.matcher(line.getLine()).matches()) {
             receivedConfirmationsQueue.add(line);
         }
-        regex = getCommand(null, CommandType.COMMAND_ERROR_REGEX);
-        if (regex != null && line.getLine().matches(regex)) {
+        if (patterns.errorPattern != null 
+                && patterns.errorPattern.matcher(line.getLine()).matches()) {
             errorResponse = line;
         }
         processPositionReport(line);
     }
 
     protected boolean processPositionReport(Line line) {
-        String regex = getCommand(null, CommandType.POSITION_REPORT_REGEX); 
-        if (regex == null) {
+        Pattern pattern = getResponsePatterns().positionReportPattern; 
+        if (pattern == null) {
             return false;
         }
 
-        if (!line.getLine().matches(regex)) {
+        Matcher matcher = pattern.matcher(line.getLine());
+        if (!matcher.matches()) {
             return false;
         }
 
         Logger.trace("Position report: {}", line);
         ReferenceMachine machine = ((ReferenceMachine) Configuration.get().getMachine());
-        Matcher matcher =
-                Pattern.compile(regex).matcher(line.getLine());
-        matcher.matches();
-        AxesLocation position = AxesLocation.zero;
-        for (ControllerAxis axis : new AxesLocation(machine).getAxes(this)) {
+        List<ControllerAxis> axes = getAxes(machine);
+        ControllerAxis[] reportedAxes = new ControllerAxis[axes.size()];
+        double[] coordinates = new double[axes.size()];
+        int count = 0;
+        double unitsToAxesLocationUnits = new Length(1, getUnits())
+                .convertToUnits(AxesLocation.getUnits()).getValue();
+        for (ControllerAxis axis : axes) {
             try {
                 String variable = axis.getLetter(); 
                 String s = matcher.group(variable);
-                Double d = Double.valueOf(s);
+                double d = Double.parseDouble(s);
+                reportedAxes[count] = axis;
                 if (axis.getType() == Type.Rotation) {
                     // Rotation axis is not converted from driver units.
-                    position = position.put(new AxesLocation(axis, new Length(d, AxesLocation.getUnits())));
+                    coordinates[count] = d;
                 }
                 else {
-                    position = position.put(new AxesLocation(axis, new Length(d, getUnits())));
+                    coordinates[count] = d*unitsToAxesLocationUnits;
                 }
+                count++;
             }
             catch (IllegalArgumentException e) {
                 // Axis is not present in pattern. That's a warning, but might not be supported by controller, so we let it go. 
@@ -1370,6 +1448,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 Logger.warn("Error processing position report for axis {}: {}", axis.getName(), e);
             }
         }
+        AxesLocation position = new AxesLocation(reportedAxes, coordinates, count);
         // Store the latest momentary position.
         reportedLocationsQueue.add(position);
 
@@ -1587,10 +1666,58 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
     public void setFirmwareConfiguration(String configuredAxes) {
     }
 
+    /**
+     * Record a sent or received line into the Gcode trace, if logging is enabled. 
+     * 
+     * @param direction
+     * @param line
+     */
+    protected void traceGcode(GcodeTrace.Direction direction, String line) {
+        if (!isLoggingGcode()) {
+            return;
+        }
+        GcodeTrace trace;
+        synchronized (gcodeTraceLock) {
+            if (gcodeTraceUnavailable) {
+                return;
+            }
+            if (gcodeTrace == null) {
+                try {
+                    File file = Configuration.get().createResourceFile(getClass(), "trace", ".txt");
+                    gcodeTrace = new GcodeTrace(file, gcodeTraceCapacity);
+                }
+                catch (IOException e) {
+                    Logger.warn(e, "Cannot open Gcode trace");
+                    // Do not try again, until the trace is closed.
+                    gcodeTraceUnavailable = true;
+                    return;
+                }
+            }
+            trace = gcodeTrace;
+        }
+        trace.record(direction, line);
+    }
+
+    /**
+     * Write the command to the controller, recording it in the Gcode trace.
+     * 
+     * @param command
+     * @throws IOException
+     */
+    protected void writeCommandLine(String command) throws IOException {
+        getCommunications().writeLine(command);
+        traceGcode(GcodeTrace.Direction.Sent, command);
+    }
+
     protected void closeGcodeLogger() {
-        if (gcodeLogger != null) {
-            gcodeLogger.close();
-            gcodeLogger = null;
+        GcodeTrace trace;
+        synchronized (gcodeTraceLock) {
+            trace = gcodeTrace;
+            gcodeTrace = null;
+            gcodeTraceUnavailable = false;
+        }
+        if (trace != null) {
+            trace.close();
         }
     }
 
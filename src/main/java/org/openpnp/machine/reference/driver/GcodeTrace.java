@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.machine.reference.driver;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openpnp.util.NanosecondTime;
+import org.pmw.tinylog.Logger;
+
+/**
+ * Records the Gcode sent to and the responses received from a controller, with nanosecond timestamps.
+ *
+ * Recording only stores the line and time into a ring buffer, the trace file is written
+ * asynchronously by a background thread. The calling threads are therefore never blocked by file IO.
+ * If the background thread cannot keep up and the ring buffer is full, entries are dropped and the
+ * number of dropped entries is noted in the trace file.
+ *
+ * The trace file has one line per entry, with the nanoseconds since the start of the trace, the
+ * direction (">" sent, "<" received) and the line. Lines starting with "#" are comments. Use
+ * {@link #read(File)} to read it back and {@link GcodeTraceReplay} to replay it.
+ */
+public class GcodeTrace implements Closeable {
+    public enum Direction {
+        Sent('>'),
+        Received('<');
+
+        private final char mark;
+
+        private Direction(char mark) {
+            this.mark = mark;
+        }
+
+        public char getMark() {
+            return mark;
+        }
+
+        public static Direction fromMark(char mark) {
+            for (Direction direction : values()) {
+                if (direction.mark == mark) {
+                    return direction;
+                }
+            }
+            return null;
+        }
+    }
+
+    public static class Entry {
+        final long time;
+        final Direction direction;
+        final String line;
+
+        public Entry(long time, Direction direction, String line) {
+            this.time = time;
+            this.direction = direction;
+            this.line = line;
+        }
+
+        /**
+         * @return The time in nanoseconds since the start of the trace.
+         */
+        public long getTime() {
+            return time;
+        }
+
+        public Direction getDirection() {
+            return direction;
+        }
+
+        public String getLine() {
+            return line;
+        }
+
+        @Override
+        public String toString() {
+            return time+" "+direction.getMark()+" "+line;
+        }
+    }
+
+    private static final long flushIntervalMilliseconds = 100;
+
+    private final File file;
+    private final long startTime;
+
+    // The ring buffer.
+    private final long[] times;
+    private final Direction[] directions;
+    private final String[] lines;
+    private int head;
+    private int count;
+    private long dropped;
+
+    private volatile boolean closed;
+    private final Thread writerThread;
+
+    /**
+     * Create a trace recording into the given file.
+     *
+     * @param file
+     * @param capacity Capacity of the ring buffer in entries.
+     * @throws IOException
+     */
+    public GcodeTrace(File file, int capacity) throws IOException {
+        this.file = file;
+        this.times = new long[capacity];
+        this.directions = new Direction[capacity];
+        this.lines = new String[capacity];
+        this.startTime = NanosecondTime.getRuntime();
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        writer.write("# OpenPnP Gcode trace, started "+NanosecondTime.get()+" ns epoch time\n");
+        writerThread = new Thread(() -> writeEntries(writer), "GcodeTrace "+file.getName());
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Record a line. Never blocks on IO.
+     *
+     * @param direction
+     * @param line
+     */
+    public void record(Direction direction, String line) {
+        long time = NanosecondTime.getRuntime() - startTime;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (count == lines.length) {
+                dropped++;
+                return;
+            }
+            int index = (head + count) % lines.length;
+            times[index] = time;
+            directions[index] = direction;
+            lines[index] = line;
+            count++;
+            if (count == lines.length/2) {
+                // Getting full, wake up the writer.
+                notify();
+            }
+        }
+    }
+
+    /**
+     * @return The number of entries dropped, because the ring buffer was full.
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    private void writeEntries(BufferedWriter writer) {
+        long[] writeTimes = new long[times.length];
+        Direction[] writeDirections = new Direction[times.length];
+        String[] writeLines = new String[times.length];
+        long writtenDropped = 0;
+        try {
+            while (true) {
+                int n;
+                long droppedNow;
+                synchronized (this) {
+                    if (count == 0 && !closed) {
+                        wait(flushIntervalMilliseconds);
+                    }
+                    if (count == 0 && closed) {
+                        break;
+                    }
+                    n = count;
+                    for (int i = 0; i < n; i++) {
+                        int index = (head + i) % lines.length;
+                        writeTimes[i] = times[index];
+                        writeDirections[i] = directions[index];
+                        writeLines[i] = lines[index];
+                        lines[index] = null;
+                    }
+                    head = (head + n) % lines.length;
+                    count = 0;
+                    droppedNow = dropped;
+                }
+                if (droppedNow > writtenDropped) {
+                    writer.write("# dropped "+(droppedNow - writtenDropped)+" entries\n");
+                    writtenDropped = droppedNow;
+                }
+                for (int i = 0; i < n; i++) {
+                    writer.write(Long.toString(writeTimes[i]));
+                    writer.write(' ');
+                    writer.write(writeDirections[i].getMark());
+                    writer.write(' ');
+                    writer.write(writeLines[i]);
+                    writer.write('\n');
+                    writeLines[i] = null;
+                }
+                writer.flush();
+            }
+        }
+        catch (InterruptedException e) {
+            Logger.warn(e, "Gcode trace interrupted.");
+        }
+        catch (IOException e) {
+            Logger.warn(e, "Cannot write Gcode trace.");
+        }
+        finally {
+            try {
+                writer.close();
+            }
+            catch (IOException e) {
+            }
+        }
+    }
+
+    /**
+     * Close the trace, the remaining entries are written.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notify();
+        }
+        try {
+            writerThread.join(3000);
+        }
+        catch (InterruptedException e) {
+        }
+    }
+
+    /**
+     * Read a trace file.
+     *
+     * @param file
+     * @return The list of entries.
+     * @throws IOException
+     */
+    public static List<Entry> read(File file) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String s;
+            while ((s = reader.readLine()) != null) {
+                if (s.isEmpty() || s.startsWith("#")) {
+                    continue;
+                }
+                int space = s.indexOf(' ');
+                if (space < 0 || s.length() < space + 3) {
+                    throw new IOException("Invalid Gcode trace line: "+s);
+                }
+                Direction direction = Direction.fromMark(s.charAt(space + 1));
+                if (direction == null) {
+                    throw new IOException("Invalid Gcode trace direction: "+s);
+                }
+                long time = Long.parseLong(s.substring(0, space));
+                String line = s.length() > space + 3 ? s.substring(space + 3) : "";
+                entries.add(new Entry(time, direction, line));
+            }
+        }
+        return entries;
+    }
+}
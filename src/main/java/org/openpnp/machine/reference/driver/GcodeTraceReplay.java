@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.machine.reference.driver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import org.openpnp.machine.reference.driver.GcodeTrace.Direction;
+import org.openpnp.machine.reference.driver.GcodeTrace.Entry;
+import org.openpnp.model.Configuration;
+import org.openpnp.spi.Driver;
+import org.pmw.tinylog.Logger;
+
+/**
+ * Replays a recorded {@link GcodeTrace} through a dedicated communications channel, typically a new
+ * SimulatedCommunications (i.e. into its own GcodeServer), or a new TcpCommunications to a controller.
+ *
+ * The replay connects and disconnects the communications, so it must never be given the communications
+ * of a driver, as this would tear down the driver's link under its reader and writer threads. These are 
+ * rejected. 
+ *
+ * The sent lines are written with the recorded timing, the responses are recorded into a new trace,
+ * so the two traces can be compared. Example use from a script:
+ *
+ * <pre>
+ * var communications = new org.openpnp.machine.reference.driver.SimulatedCommunications();
+ * communications.setDriver(driver);
+ * var replay = new org.openpnp.machine.reference.driver.GcodeTraceReplay(traceFile);
+ * replay.replay(communications, replayFile);
+ * </pre>
+ */
+public class GcodeTraceReplay {
+    private final List<Entry> entries;
+    private double timeScale = 1.0;
+    private long responseWaitMilliseconds = 1000;
+
+    public GcodeTraceReplay(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    public GcodeTraceReplay(File file) throws IOException {
+        this(GcodeTrace.read(file));
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public double getTimeScale() {
+        return timeScale;
+    }
+
+    /**
+     * @param timeScale Factor applied to the recorded times of sent lines. 1.0 reproduces the
+     * recorded timing, 0.0 sends as fast as possible.
+     */
+    public void setTimeScale(double timeScale) {
+        this.timeScale = timeScale;
+    }
+
+    public long getResponseWaitMilliseconds() {
+        return responseWaitMilliseconds;
+    }
+
+    /**
+     * @param responseWaitMilliseconds Time to wait for the remaining responses after the last line
+     * was sent.
+     */
+    public void setResponseWaitMilliseconds(long responseWaitMilliseconds) {
+        this.responseWaitMilliseconds = responseWaitMilliseconds;
+    }
+
+    /**
+     * Replay the sent lines of the trace, recording sent lines and responses into the given file.
+     * The communications are connected and disconnected by the replay.
+     *
+     * @param communications A dedicated communications instance, not the one of a driver.
+     * @param replayFile
+     * @return The replay duration in nanoseconds, including the final response wait.
+     * @throws Exception
+     */
+    public long replay(ReferenceDriverCommunications communications, File replayFile) throws Exception {
+        checkDedicated(communications);
+        try (GcodeTrace trace = new GcodeTrace(replayFile,
+                Math.max(1024, entries.size()*2))) {
+            communications.connect();
+            Thread readerThread = new Thread(() -> {
+                while (true) {
+                    try {
+                        String line = communications.readLine();
+                        if (line == null) {
+                            return;
+                        }
+                        trace.record(Direction.Received, line.trim());
+                    }
+                    catch (TimeoutException e) {
+                        continue;
+                    }
+                    catch (IOException e) {
+                        return;
+                    }
+                }
+            }, "GcodeTraceReplay reader");
+            readerThread.setDaemon(true);
+            readerThread.start();
+            long t0 = System.nanoTime();
+            Long firstTime = null;
+            try {
+                for (Entry entry : entries) {
+                    if (entry.getDirection() != Direction.Sent) {
+                        continue;
+                    }
+                    if (firstTime == null) {
+                        firstTime = entry.getTime();
+                    }
+                    long due = t0 + Math.round((entry.getTime() - firstTime)*timeScale);
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        Thread.sleep(wait/1000000, (int) (wait % 1000000));
+                    }
+                    communications.writeLine(entry.getLine());
+                    trace.record(Direction.Sent, entry.getLine());
+                }
+                Thread.sleep(responseWaitMilliseconds);
+            }
+            finally {
+                try {
+                    communications.disconnect();
+                }
+                catch (Exception e) {
+                    Logger.warn(e, "GcodeTraceReplay disconnect");
+                }
+                readerThread.join(3000);
+            }
+            long duration = System.nanoTime() - t0;
+            Logger.debug("GcodeTraceReplay replayed {} lines in {} ms, dropped {}.", entries.size(),
+                    duration/1000000, trace.getDropped());
+            return duration;
+        }
+    }
+
+    private static void checkDedicated(ReferenceDriverCommunications communications) {
+        if (!Configuration.isInstanceInitialized() || Configuration.get().getMachine() == null) {
+            return;
+        }
+        for (Driver driver : Configuration.get().getMachine().getDrivers()) {
+            if (driver instanceof AbstractReferenceDriver 
+                    && ((AbstractReferenceDriver) driver).isOwningCommunications(communications)) {
+                throw new IllegalArgumentException("The communications of driver "+driver.getName()
+                +" cannot be used for a replay. Use a dedicated communications instance.");
+            }
+        }
+    }
+}
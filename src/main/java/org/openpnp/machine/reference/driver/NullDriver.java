@@ -131,13 +131,26 @@ public class NullDriver extends AbstractDriver {
         return motionPending;
     }
 
+    @Override
+    public boolean isMotionCompletionConfirmed() {
+        // The simulated motion ends exactly as planned.
+        return true;
+    }
+
     @Override
     public void waitForCompletion(HeadMountable hm, CompletionType completionType) throws Exception {
         ReferenceMachine machine = (ReferenceMachine) Configuration.get().getMachine();
-        while (! machine.getMotionPlanner()
-                .getMomentaryMotion(NanosecondTime.getRuntimeSeconds())
+        Motion motion;
+        while (! (motion = machine.getMotionPlanner()
+                .getMomentaryMotion(NanosecondTime.getRuntimeSeconds()))
                 .hasOption(Motion.MotionOption.Stillstand)) {
-            Thread.sleep(1);
+            if (NanosecondTime.isVirtualTime()) {
+                // Skip to the end of the momentary motion.
+                NanosecondTime.sleepUntil(motion.getPlannedTime1());
+            }
+            else {
+                Thread.sleep(1);
+            }
         }
         motionPending = false;
     }
@@ -172,7 +185,7 @@ public class NullDriver extends AbstractDriver {
         Logger.debug("actuate({}, {})", actuator, value);
         checkEnabled();
         if (feedRateMmPerMinute > 0) {
-            Thread.sleep(10);
+            NanosecondTime.sleep(10);
         }
     }
 
@@ -22,6 +22,7 @@
 package org.openpnp.machine.reference.driver;
 
 import java.awt.Color;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -50,11 +51,17 @@ import org.openpnp.spi.HeadMountable;
 import org.openpnp.util.MovableUtils;
 import org.openpnp.util.NanosecondTime;
 import org.openpnp.util.SimpleGraph;
+import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
 
 /**
  * The Advanced Motion Planner applies any optimizing to the planned path. 
+ * 
+ * With continuous motion, the pending motion commands form a lookahead queue that is solved as a whole path 
+ * when it is flushed in waitForCompletion(). The queue is bounded by lookaheadMotions: once it is full, the 
+ * oldest motions are planned and executed up to the last junction where the path comes to a stillstand anyway,
+ * so the bound costs no extra stops in typical pick and place motion chains. 
  *
  */
 public class ReferenceAdvancedMotionPlanner extends AbstractMotionPlanner {
@@ -67,6 +74,8 @@ public class ReferenceAdvancedMotionPlanner extends AbstractMotionPlanner {
     private boolean diagnosticsEnabled = false;
     @Attribute(required = false)
     private boolean interpolationRetiming = true;
+    @Attribute(required = false)
+    private int lookaheadMotions = 32;
 
     @Attribute(required = false)
     private boolean showApproximation = true;
@@ -117,6 +126,7 @@ public class ReferenceAdvancedMotionPlanner extends AbstractMotionPlanner {
     private boolean interpolationFailed;
     private boolean recordingInterpolationFailed;
     private boolean recordingMotionLocked;
+    private String solverCacheStatistics;
 
     public boolean isAllowContinuousMotion() {
         return allowContinuousMotion;
@@ -143,6 +153,16 @@ public class ReferenceAdvancedMotionPlanner extends AbstractMotionPlanner {
         this.interpolationRetiming = interpolationRetiming;
     }
 
+    public int getLookaheadMotions() {
+        return lookaheadMotions;
+    }
+
+    public void setLookaheadMotions(int lookaheadMotions) {
+        Object oldValue = this.lookaheadMotions;
+        this.lookaheadMotions = lookaheadMotions;
+        firePropertyChange("lookaheadMotions", oldValue, lookaheadMotions);
+    }
+
     public boolean isDiagnosticsEnabled() {
         return diagnosticsEnabled;
     }
@@ -293,6 +313,16 @@ public class ReferenceAdvancedMotionPlanner extends AbstractMotionPlanner {
         firePropertyChange("moveTimeActual", oldValue, moveTimeActual);
     }
 
+    public String getSolverCacheStatistics() {
+        return solverCacheStatistics;
+    }
+
+    public void setSolverCacheStatistics(String solverCacheStatistics) {
+        Object oldValue = this.solverCacheStatistics;
+        this.solverCacheStatistics = solverCacheStatistics;
+        firePropertyChange("solverCacheStatistics", oldValue, solverCacheStatistics);
+    }
+
     public boolean isInterpolationFailed() {
         return interpolationFailed;
     }
@@ -322,6 +352,55 @@ public class ReferenceAdvancedMotionPlanner extends AbstractMotionPlanner {
                             CompletionType.CommandJog 
                             : CompletionType.WaitForStillstand);
         }
+        else if (lookaheadMotions > 0 && motionCommands.size() >= lookaheadMotions) {
+            executeLookaheadMotionPlan();
+        }
+    }
+
+    /**
+     * The lookahead queue is full. Plan and execute the oldest motions up to the last stillstand junction, 
+     * keep the rest queued, so they can still be optimized together with the motions that follow.  
+     * 
+     * @throws Exception
+     */
+    protected synchronized void executeLookaheadMotionPlan() throws Exception {
+        if (motionCommands.size() < 2) {
+            // Already flushed.
+            return;
+        }
+        int split = motionCommands.size() - 1;
+        for (int i = split; i > 0; i--) {
+            if (isStillstandJunction(motionCommands.get(i - 1), motionCommands.get(i))) {
+                split = i;
+                break;
+            }
+        }
+        // If there was no stillstand junction, we split before the last motion, which costs one extra stop.
+        List<Motion> executionPlan = new ArrayList<>(motionCommands.subList(0, split));
+        motionCommands.subList(0, split).clear();
+        Logger.trace("Lookahead executes {} motions, keeps {} queued.", executionPlan.size(), motionCommands.size());
+        executeMotionPlan(executionPlan, CompletionType.CommandStillstand);
+    }
+
+    /**
+     * @param motion0
+     * @param motion1
+     * @return True if the path solver always comes to a stillstand in the junction between the two motions, i.e.
+     * if both motions are coordinated and they form a corner. 
+     */
+    protected boolean isStillstandJunction(Motion motion0, Motion motion1) {
+        MotionProfile[] profiles0 = motion0.getAxesProfiles();
+        MotionProfile[] profiles1 = motion1.getAxesProfiles();
+        if (profiles0.length == 0 || profiles0.length != profiles1.length 
+                || !MotionProfile.isCoordinated(profiles0) 
+                || !MotionProfile.isCoordinated(profiles1)) {
+            return false;
+        }
+        double junctionCosine = MotionProfile.dotProduct(
+                MotionProfile.getUnitVector(profiles0), 
+                MotionProfile.getUnitVector(profiles1));
+        // Co-linear moves may be blended.
+        return junctionCosine < 1.0 - 1e-6;
     }
 
     protected class PlannerPath extends AbstractMotionPath {
@@ -366,6 +445,10 @@ public class ReferenceAdvancedMotionPlanner extends AbstractMotionPlanner {
             CompletionType completionType) throws Exception {
         PlannerPath path = new PlannerPath(executionPlan);
         path.solve();
+        long hits = MotionProfile.getSolverCacheHits();
+        long misses = MotionProfile.getSolverCacheMisses();
+        setSolverCacheStatistics(String.format("%d hits, %d misses (%.1f%%)", 
+                hits, misses, hits*100.0/Math.max(1, hits + misses)));
     }
 
     protected void startNewMotionGraph() {
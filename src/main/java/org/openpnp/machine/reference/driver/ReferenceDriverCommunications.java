@@ -30,8 +30,30 @@ import org.simpleframework.xml.Attribute;
  *
  * This Driver interface is intended to model the minimum required functions to transfer
  * data from OpenPnP to a hardware controller.
+ * 
+ * Implementations that can read whole blocks of bytes at once, should implement the BlockReading
+ * interface. Lines are then framed from a byte buffer, instead of reading them character by 
+ * character through read(). Note, read() and readLine() must then not be mixed on the same 
+ * connection, as bytes already buffered by readLine() are not seen by read().
  */
 public abstract class ReferenceDriverCommunications {
+    /**
+     * Implemented by communications that can read whole blocks of bytes at once.
+     */
+    public interface BlockReading {
+        /**
+         * Read as many bytes as are available into the buffer, blocking until at least one byte is 
+         * available. If the read times out a TimeoutException is thrown. Any other failure to read 
+         * results in an IOExeption.
+         * 
+         * @param buffer
+         * @return The number of bytes read or -1 if the end of the stream was reached.
+         * @throws TimeoutException
+         * @throws IOException
+         */
+        int readBlock(byte[] buffer) throws TimeoutException, IOException;
+    }
+
     public enum LineEndingType {
         CR("\r"),
         LF("\n"),
@@ -51,6 +73,11 @@ public abstract class ReferenceDriverCommunications {
     @Attribute(required=false)
     protected LineEndingType lineEndingType = LineEndingType.LF;
 
+    private final byte[] readBuffer = new byte[4096];
+    private int readPosition;
+    private int readLimit;
+    private final StringBuilder lineBuffer = new StringBuilder();
+
     abstract public void connect() throws Exception;
     abstract public void disconnect() throws Exception;
 
@@ -60,6 +87,15 @@ public abstract class ReferenceDriverCommunications {
 
     abstract public int read() throws TimeoutException, IOException;
 
+    /**
+     * Discard any buffered input. Must be called when a new connection is established.
+     */
+    protected void resetReadBuffer() {
+        readPosition = 0;
+        readLimit = 0;
+        lineBuffer.setLength(0);
+    }
+
     /**
      * Read a line from the input stream. Blocks for the default timeout. If the read times out a
      * TimeoutException is thrown. Any other failure to read results in an IOExeption;
@@ -73,8 +109,8 @@ public abstract class ReferenceDriverCommunications {
     }
 
     public void writeLine(String data) throws IOException {
-        writeBytes(data.getBytes());
-        writeBytes(getLineEndingType().getLineEnding().getBytes());
+        // Write the line in one go, so it is not split into separate packets.
+        writeBytes((data + getLineEndingType().getLineEnding()).getBytes());
     }
 
     /**
@@ -87,6 +123,9 @@ public abstract class ReferenceDriverCommunications {
      * @throws IOException
      */
     protected String readUntil(String characters) throws TimeoutException, IOException {
+        if (this instanceof BlockReading) {
+            return readBlockUntil((BlockReading) this, characters);
+        }
         StringBuffer line = new StringBuffer();
         while (true) {
             int ch = read();
@@ -104,6 +143,40 @@ public abstract class ReferenceDriverCommunications {
         }
     }
 
+    /**
+     * Like readUntil() but framing the line from the block read buffer. A partial line is kept 
+     * in the line buffer if the read times out, and completed with the next call.  
+     * 
+     * @param blockReading this
+     * @param characters list of ending characters
+     * @return
+     * @throws TimeoutException
+     * @throws IOException
+     */
+    private String readBlockUntil(BlockReading blockReading, String characters) throws TimeoutException, IOException {
+        while (true) {
+            while (readPosition < readLimit) {
+                char ch = (char) (readBuffer[readPosition++] & 0xFF);
+                if (characters.indexOf(ch) >= 0) {
+                    if (lineBuffer.length() > 0) {
+                        String line = lineBuffer.toString();
+                        lineBuffer.setLength(0);
+                        return line;
+                    }
+                }
+                else {
+                    lineBuffer.append(ch);
+                }
+            }
+            int length = blockReading.readBlock(readBuffer);
+            if (length == -1) {
+                return null;
+            }
+            readPosition = 0;
+            readLimit = length;
+        }
+    }
+
     public void write(int d) throws IOException {
         byte[] b = new byte[] { (byte) d };
         writeBytes(b);
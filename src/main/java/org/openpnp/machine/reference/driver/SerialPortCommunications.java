@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.concurrent.TimeoutException;
 
+import org.openpnp.machine.reference.driver.ReferenceDriverCommunications.BlockReading;
 import org.simpleframework.xml.Attribute;
 
 import com.fazecast.jSerialComm.SerialPort;
@@ -12,7 +13,7 @@ import com.fazecast.jSerialComm.SerialPort;
  * A class for SerialPort Communications. Includes functions for connecting,
  * disconnecting, reading and sending lines.
  */
-public class SerialPortCommunications extends ReferenceDriverCommunications {
+public class SerialPortCommunications extends ReferenceDriverCommunications implements BlockReading {
     public enum DataBits {
         Five(5),
         Six(6),
@@ -108,6 +109,7 @@ public class SerialPortCommunications extends ReferenceDriverCommunications {
         }
         serialPort.setComPortTimeouts(
                 SerialPort.TIMEOUT_READ_SEMI_BLOCKING | SerialPort.TIMEOUT_WRITE_BLOCKING, 0, 0);
+        resetReadBuffer();
     }
 
     public synchronized void disconnect() throws Exception {
@@ -152,6 +154,25 @@ public class SerialPortCommunications extends ReferenceDriverCommunications {
         return b[0];
     }
 
+    @Override
+    public int readBlock(byte[] buffer) throws TimeoutException, IOException {
+        int l;
+        try {
+            // Semi-blocking: returns as soon as at least one byte is available. 
+            l = serialPort.readBytes(buffer, buffer.length);
+        }
+        catch (NullPointerException e) {
+            throw new IOException("Trying to read from a unconnected serial.");
+        }
+        if (l == -1) {
+            throw new IOException("Read error.");
+        }
+        if (l == 0) {
+            throw new TimeoutException("Read timeout.");
+        }
+        return l;
+    }
+
     @Override
     public void writeBytes(byte[] data) throws IOException {
         int l = serialPort.writeBytes(data, data.length);
@@ -3,11 +3,13 @@ package org.openpnp.machine.reference.driver;
 import java.io.BufferedReader;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.util.concurrent.TimeoutException;
 
+import org.openpnp.machine.reference.driver.ReferenceDriverCommunications.BlockReading;
 import org.openpnp.spi.Driver;
 import org.openpnp.util.GcodeServer;
 import org.pmw.tinylog.Logger;
@@ -16,8 +18,9 @@ import org.pmw.tinylog.Logger;
  * A base class for basic TCP based Drivers. Includes functions for connecting,
  * disconnecting, reading and sending lines.
  */
-public class SimulatedCommunications extends ReferenceDriverCommunications {
+public class SimulatedCommunications extends ReferenceDriverCommunications implements BlockReading {
     protected Socket clientSocket;
+    protected InputStream inputStream;
     protected BufferedReader input;
     protected DataOutputStream output;
 
@@ -39,8 +42,11 @@ public class SimulatedCommunications extends ReferenceDriverCommunications {
             gcodeServer.setDriver(driver);
         }
         clientSocket = new Socket("localhost", getGcodeServer().getListenerPort());
-        input = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
+        clientSocket.setTcpNoDelay(true);
+        inputStream = clientSocket.getInputStream();
+        input = new BufferedReader(new InputStreamReader(inputStream));
         output = new DataOutputStream(clientSocket.getOutputStream());
+        resetReadBuffer();
     }
 
     @Override
@@ -50,6 +56,7 @@ public class SimulatedCommunications extends ReferenceDriverCommunications {
             input.close();
             output.close();
             input = null;
+            inputStream = null;
             output = null;
             clientSocket = null;
         }
@@ -86,6 +93,22 @@ public class SimulatedCommunications extends ReferenceDriverCommunications {
         }
     }
 
+    @Override
+    public int readBlock(byte[] buffer) throws TimeoutException, IOException {
+        try {
+            return inputStream.read(buffer);
+        }
+        catch (NullPointerException ex) {
+            throw new IOException("Trying to read from a unconnected socket.");
+        }
+        catch (IOException ex) {
+            if (ex.getCause() instanceof SocketTimeoutException) {
+                throw new TimeoutException(ex.getMessage());
+            }
+            throw ex;
+        }
+    }
+
     @Override
     public void write(int d) throws IOException {
         output.write(d);
@@ -3,19 +3,28 @@ package org.openpnp.machine.reference.driver;
 import java.io.BufferedReader;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
 import java.util.concurrent.TimeoutException;
 
+import org.openpnp.machine.reference.driver.ReferenceDriverCommunications.BlockReading;
 import org.openpnp.util.GcodeServer;
 import org.simpleframework.xml.Attribute;
 
 /**
  * A base class for basic TCP based Drivers. Includes functions for connecting,
  * disconnecting, reading and sending lines.
+ * 
+ * Optionally, the connection can be made through a NIO SocketChannel, reading lines 
+ * directly into the block read buffer. 
  */
-public class TcpCommunications extends ReferenceDriverCommunications {
+public class TcpCommunications extends ReferenceDriverCommunications implements BlockReading {
     @Attribute(required = false)
     protected String ipAddress = "127.0.0.1";
 
@@ -25,27 +34,44 @@ public class TcpCommunications extends ReferenceDriverCommunications {
     @Attribute(required = false)
     protected String name = "TcpCommunications";
 
+    @Attribute(required = false)
+    protected boolean socketChannel = false;
+
 
     protected Socket clientSocket;
+    protected SocketChannel channel;
+    protected InputStream inputStream;
     protected BufferedReader input;
     protected DataOutputStream output;
+    private ByteBuffer readByteBuffer;
     protected GcodeServer gcodeServer;
     protected AbstractReferenceDriver driver;
 
     @Override
     public synchronized void connect() throws Exception {
         disconnect();
+        String host = ipAddress;
         if (ipAddress.equals("GcodeServer")) {
             gcodeServer = new GcodeServer();
             gcodeServer.setDriver(driver);
             port = gcodeServer.getListenerPort();
-            clientSocket = new Socket("localhost", port);
+            host = "localhost";
+        }
+        if (socketChannel) {
+            channel = SocketChannel.open(new InetSocketAddress(host, port));
+            clientSocket = channel.socket();
+            inputStream = Channels.newInputStream(channel);
+            output = new DataOutputStream(Channels.newOutputStream(channel));
         }
         else {
-            clientSocket = new Socket(ipAddress,port);
+            clientSocket = new Socket(host, port);
+            inputStream = clientSocket.getInputStream();
+            output = new DataOutputStream(clientSocket.getOutputStream());
         }
-        input = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-        output = new DataOutputStream(clientSocket.getOutputStream());
+        // Commands and responses are small and latency critical, do not delay them. 
+        clientSocket.setTcpNoDelay(true);
+        input = new BufferedReader(new InputStreamReader(inputStream));
+        resetReadBuffer();
     }
 
     @Override
@@ -53,8 +79,10 @@ public class TcpCommunications extends ReferenceDriverCommunications {
         if (clientSocket != null && clientSocket.isBound()) {
             clientSocket.close();
             input = null;
+            inputStream = null;
             output = null;
             clientSocket = null;
+            channel = null;
         }
         if (gcodeServer != null) {
             gcodeServer.shutdown();
@@ -83,6 +111,29 @@ public class TcpCommunications extends ReferenceDriverCommunications {
         }
     }
 
+    @Override
+    public int readBlock(byte[] buffer) throws TimeoutException, IOException {
+        try {
+            if (channel != null) {
+                if (readByteBuffer == null || readByteBuffer.array() != buffer) {
+                    readByteBuffer = ByteBuffer.wrap(buffer);
+                }
+                readByteBuffer.clear();
+                return channel.read(readByteBuffer);
+            }
+            return inputStream.read(buffer);
+        }
+        catch (NullPointerException ex) {
+            throw new IOException("Trying to read from a unconnected socket.");
+        }
+        catch (IOException ex) {
+            if (ex.getCause() instanceof SocketTimeoutException) {
+                throw new TimeoutException(ex.getMessage());
+            }
+            throw ex;
+        }
+    }
+
     @Override
     public void write(int d) throws IOException {
         output.write(d);
@@ -105,6 +156,14 @@ public class TcpCommunications extends ReferenceDriverCommunications {
         return port;
     }
 
+    public boolean isSocketChannel() {
+        return socketChannel;
+    }
+
+    public void setSocketChannel(boolean socketChannel) {
+        this.socketChannel = socketChannel;
+    }
+
     public void setPort(int port) {
         this.port = port;
     }
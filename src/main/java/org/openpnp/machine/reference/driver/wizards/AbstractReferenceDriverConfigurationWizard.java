@@ -43,6 +43,7 @@ public class AbstractReferenceDriverConfigurationWizard extends AbstractConfigur
     private ButtonGroup commsMethodButtonGroup;
     private JPanel panelSerial;
     private JPanel panelTcp;
+    private JCheckBox socketChannelCheckbox;
     private JCheckBox connectionKeepAlive;
     private JPanel panelController;
     private JLabel lblName;
@@ -278,6 +279,8 @@ public class AbstractReferenceDriverConfigurationWizard extends AbstractConfigur
                 FormSpecs.RELATED_GAP_COLSPEC,
                 FormSpecs.DEFAULT_COLSPEC,},
             new RowSpec[] {
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
@@ -300,6 +303,15 @@ public class AbstractReferenceDriverConfigurationWizard extends AbstractConfigur
         portTextField = new JTextField(17);
         panelTcp.add(portTextField, "4, 4, fill, default");
         portTextField.setColumns(10);
+
+        JLabel lblSocketChannel = new JLabel(Translations.getString(
+                "AbstractReferenceDriverConfigurationWizard.TCPPanel.SocketChannelLabel.text")); //$NON-NLS-1$
+        lblSocketChannel.setToolTipText(Translations.getString(
+                "AbstractReferenceDriverConfigurationWizard.TCPPanel.SocketChannelLabel.toolTipText")); //$NON-NLS-1$
+        panelTcp.add(lblSocketChannel, "2, 6, right, default");
+
+        socketChannelCheckbox = new JCheckBox("");
+        panelTcp.add(socketChannelCheckbox, "4, 6");
     }
 
     private void setPanelEnabled(JPanel panel, Boolean isEnabled) {
@@ -349,6 +361,7 @@ public class AbstractReferenceDriverConfigurationWizard extends AbstractConfigur
         
         addWrappedBinding(driver, "ipAddress", ipAddressTextField, "text");
         addWrappedBinding(driver, "port", portTextField, "text", integerConverter);
+        addWrappedBinding(driver, "socketChannel", socketChannelCheckbox, "selected");
 
         ComponentDecorators.decorateWithAutoSelect(driverName);
 
@@ -32,7 +32,13 @@ public class GcodeAsyncDriverSettings extends AbstractConfigurationWizard {
     private JTextField interpolationMaxSteps;
     private JTextField junctionDeviation;
     private JTextField interpolationJerkSteps;
+    private JTextField interpolationVelocityTolerance;
+    private JTextField interpolationLineRate;
+    private JTextField interpolationMaxVelocityError;
     private JCheckBox reportedLocationConfirmation;
+    private JCheckBox streamingFlowControl;
+    private JTextField streamingBufferCharacters;
+    private JTextField streamingBufferLines;
 
     public GcodeAsyncDriverSettings(GcodeAsyncDriver driver) {
         this.driver = driver;
@@ -50,6 +56,12 @@ public class GcodeAsyncDriverSettings extends AbstractConfigurationWizard {
                 FormSpecs.RELATED_GAP_COLSPEC,
                 FormSpecs.DEFAULT_COLSPEC,},
             new RowSpec[] {
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
@@ -128,6 +140,30 @@ public class GcodeAsyncDriverSettings extends AbstractConfigurationWizard {
         interpolationPanel.add(junctionDeviation, "4, 10, fill, default");
         junctionDeviation.setColumns(10);
 
+        JLabel lblInterpolationVelocityTolerance = new JLabel("Merge Velocity Tolerance [mm/s]");
+        lblInterpolationVelocityTolerance.setToolTipText("<html>\r\n<p>Adjacent interpolation steps are merged into one constant acceleration step, if the <br/>\r\nvelocity error at the eliminated way-point is within this tolerance.</p>\r\n<p>Fewer steps reduce the load on the communications link and controller queue.</p>\r\n<p>Set to 0 to disable merging.</p>\r\n</html>");
+        interpolationPanel.add(lblInterpolationVelocityTolerance, "2, 12, right, default");
+
+        interpolationVelocityTolerance = new JTextField();
+        interpolationPanel.add(interpolationVelocityTolerance, "4, 12, fill, default");
+        interpolationVelocityTolerance.setColumns(10);
+
+        JLabel lblInterpolationLineRate = new JLabel("Link Line Rate [1/s]");
+        lblInterpolationLineRate.setToolTipText("<html>\r\n<p>Number of move commands per second the communications link can transmit.</p>\r\n<p>Interpolation steps are merged until a move can be transmitted in its own duration, <br/>\r\nbut only within the Maximum Velocity Error.</p>\r\n<p>Set to 0 to disable, or to -1 to estimate it from the serial baud rate.</p>\r\n</html>");
+        interpolationPanel.add(lblInterpolationLineRate, "2, 14, right, default");
+
+        interpolationLineRate = new JTextField();
+        interpolationPanel.add(interpolationLineRate, "4, 14, fill, default");
+        interpolationLineRate.setColumns(10);
+
+        JLabel lblInterpolationMaxVelocityError = new JLabel("Maximum Velocity Error [mm/s]");
+        lblInterpolationMaxVelocityError.setToolTipText("<html>\r\n<p>The maximum velocity error at an eliminated way-point, when interpolation steps are <br/>\r\nmerged to meet the Link Line Rate.</p>\r\n</html>");
+        interpolationPanel.add(lblInterpolationMaxVelocityError, "2, 16, right, default");
+
+        interpolationMaxVelocityError = new JTextField();
+        interpolationPanel.add(interpolationMaxVelocityError, "4, 16, fill, default");
+        interpolationMaxVelocityError.setColumns(10);
+
         JLabel lblConfirmationFlowControl = new JLabel("Confimation Flow Control?");
         lblConfirmationFlowControl.setToolTipText("<html>\r\n<p>The communication with the controller is flow-controlled by awaiting the \"ok\"<br/>\r\nbefore sending the next command. </p>\r\n<p>This is slower than other types of flow control such as RTS/CTS on a serial connection, so <br/>\r\nthe latter should be preferred.</p>\r\n</html>");
         settingsPanel.add(lblConfirmationFlowControl, "2, 2, right, default");
@@ -138,6 +174,7 @@ public class GcodeAsyncDriverSettings extends AbstractConfigurationWizard {
                 if (!confirmationFlowControl.isSelected()) {
                     reportedLocationConfirmation.setSelected(true);
                 }
+                adaptDialog();
             }
         });
         settingsPanel.add(confirmationFlowControl, "4, 2");
@@ -156,6 +193,40 @@ public class GcodeAsyncDriverSettings extends AbstractConfigurationWizard {
         });
         settingsPanel.add(reportedLocationConfirmation, "4, 4");
 
+        JLabel lblStreamingFlowControl = new JLabel("Streaming Flow Control?");
+        lblStreamingFlowControl.setToolTipText("<html>\r\n<p>Stream commands to the controller using character-counting flow control.</p>\r\n<p>Commands are sent ahead as long as they fit into the controller's receive buffer <br/>\r\nand queue, each \"ok\" received releases the oldest command in flight.</p>\r\n<p>Requires Confirmation Flow Control.</p>\r\n</html>");
+        settingsPanel.add(lblStreamingFlowControl, "2, 6, right, default");
+
+        streamingFlowControl = new JCheckBox("");
+        streamingFlowControl.addItemListener(new ItemListener() {
+            public void itemStateChanged(ItemEvent e) {
+                adaptDialog();
+            }
+        });
+        settingsPanel.add(streamingFlowControl, "4, 6");
+
+        JLabel lblStreamingBufferCharacters = new JLabel("Buffer Size [Characters]");
+        lblStreamingBufferCharacters.setToolTipText("<html>\r\n<p>Size of the controller's receive buffer in characters, including line endings.</p>\r\n<p>Use the serial receive buffer size, minus one for safety, e.g. 127 for GRBL.</p>\r\n</html>");
+        settingsPanel.add(lblStreamingBufferCharacters, "2, 8, right, default");
+
+        streamingBufferCharacters = new JTextField();
+        settingsPanel.add(streamingBufferCharacters, "4, 8");
+        streamingBufferCharacters.setColumns(10);
+
+        JLabel lblStreamingBufferLines = new JLabel("Buffer Size [Lines]");
+        lblStreamingBufferLines.setToolTipText("<html>\r\n<p>Maximum number of commands in flight, i.e. sent but not yet confirmed.</p>\r\n<p>Use a portion of your controller's queue depth.</p>\r\n</html>");
+        settingsPanel.add(lblStreamingBufferLines, "2, 10, right, default");
+
+        streamingBufferLines = new JTextField();
+        settingsPanel.add(streamingBufferLines, "4, 10");
+        streamingBufferLines.setColumns(10);
+    }
+
+    protected void adaptDialog() {
+        boolean streaming = confirmationFlowControl.isSelected() && streamingFlowControl.isSelected();
+        streamingFlowControl.setEnabled(confirmationFlowControl.isSelected());
+        streamingBufferCharacters.setEnabled(streaming);
+        streamingBufferLines.setEnabled(streaming);
     }
 
     @Override
@@ -167,16 +238,29 @@ public class GcodeAsyncDriverSettings extends AbstractConfigurationWizard {
 
         addWrappedBinding(driver, "confirmationFlowControl", confirmationFlowControl, "selected");
         addWrappedBinding(driver, "reportedLocationConfirmation", reportedLocationConfirmation, "selected");
+        addWrappedBinding(driver, "streamingFlowControl", streamingFlowControl, "selected");
+        addWrappedBinding(driver, "streamingBufferCharacters", streamingBufferCharacters, "text", intConverter);
+        addWrappedBinding(driver, "streamingBufferLines", streamingBufferLines, "text", intConverter);
         addWrappedBinding(driver, "interpolationMaxSteps", interpolationMaxSteps, "text", intConverter);
         addWrappedBinding(driver, "interpolationJerkSteps", interpolationJerkSteps, "text", intConverter);
         addWrappedBinding(driver, "interpolationTimeStep", interpolationTimeStep, "text", doubleConverterFine);
         addWrappedBinding(driver, "interpolationMinStep", interpolationMinStep, "text", intConverter);
         addWrappedBinding(driver, "junctionDeviation", junctionDeviation, "text", lengthConverter);
+        addWrappedBinding(driver, "interpolationVelocityTolerance", interpolationVelocityTolerance, "text", doubleConverterFine);
+        addWrappedBinding(driver, "interpolationLineRateSetting", interpolationLineRate, "text", doubleConverterFine);
+        addWrappedBinding(driver, "interpolationMaxVelocityError", interpolationMaxVelocityError, "text", doubleConverterFine);
 
         ComponentDecorators.decorateWithAutoSelect(interpolationMaxSteps);
         ComponentDecorators.decorateWithAutoSelect(interpolationJerkSteps);
         ComponentDecorators.decorateWithAutoSelect(interpolationTimeStep);
         ComponentDecorators.decorateWithAutoSelect(interpolationMinStep);
         ComponentDecorators.decorateWithAutoSelect(junctionDeviation);
+        ComponentDecorators.decorateWithAutoSelect(interpolationVelocityTolerance);
+        ComponentDecorators.decorateWithAutoSelect(interpolationLineRate);
+        ComponentDecorators.decorateWithAutoSelect(interpolationMaxVelocityError);
+        ComponentDecorators.decorateWithAutoSelect(streamingBufferCharacters);
+        ComponentDecorators.decorateWithAutoSelect(streamingBufferLines);
+
+        adaptDialog();
     }
 }
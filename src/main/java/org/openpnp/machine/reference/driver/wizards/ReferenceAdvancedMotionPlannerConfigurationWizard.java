@@ -38,6 +38,7 @@ import org.openpnp.gui.components.LocationButtonsPanel;
 import org.openpnp.gui.support.AbstractConfigurationWizard;
 import org.openpnp.gui.support.ActuatorsComboBoxModel;
 import org.openpnp.gui.support.DoubleConverter;
+import org.openpnp.gui.support.IntegerConverter;
 import org.openpnp.gui.support.LengthConverter;
 import org.openpnp.gui.support.MutableLocationProxy;
 import org.openpnp.machine.reference.driver.ReferenceAdvancedMotionPlanner;
@@ -105,6 +106,8 @@ public class ReferenceAdvancedMotionPlannerConfigurationWizard extends AbstractC
     private JTextField textFieldEndRotation;
     private JLabel lblRetime;
     private JCheckBox interpolationRetiming;
+    private JCheckBox parallelDriverDispatch;
+    private JTextField lookaheadMotions;
     private JPanel panel_1;
     private JCheckBox startLocationEnabled;
     private JCheckBox mid1LocationEnabled;
@@ -155,6 +158,8 @@ public class ReferenceAdvancedMotionPlannerConfigurationWizard extends AbstractC
                         FormSpecs.RELATED_GAP_ROWSPEC,
                         FormSpecs.PREF_ROWSPEC,
                         FormSpecs.RELATED_GAP_ROWSPEC,
+                        FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC,
                         FormSpecs.DEFAULT_ROWSPEC,}));
 
         JLabel lblContinuousMotion = new JLabel("Allow continous motion?");
@@ -164,6 +169,14 @@ public class ReferenceAdvancedMotionPlannerConfigurationWizard extends AbstractC
         allowContinuousMotion = new JCheckBox("");
         panelSettings.add(allowContinuousMotion, "4, 2");
 
+        JLabel lblLookaheadMotions = new JLabel("Lookahead [Motions]");
+        lblLookaheadMotions.setToolTipText("<html>\r\nWith continuous motion, the number of pending motions that are planned together as<br/>\r\none path. Once the lookahead is full, the oldest motions are executed up to the last<br/>\r\ncorner, where the machine comes to a stillstand anyway. Set to 0 for unlimited lookahead,<br/>\r\ni.e. the motions are only executed when OpenPnP waits for completion.\r\n</html>");
+        panelSettings.add(lblLookaheadMotions, "6, 2, right, default");
+
+        lookaheadMotions = new JTextField();
+        panelSettings.add(lookaheadMotions, "8, 2, fill, default");
+        lookaheadMotions.setColumns(5);
+
         JLabel lblAllowUncoordinated = new JLabel("Allow uncoordinated?");
         lblAllowUncoordinated.setToolTipText("<html>\r\nAllowing uncoordinated motion, will enable the planner to use advanced features<br/>\r\nsuch as overshooting, motion blending etc. This requires a driver that supports<br/>\r\nsimulated or true 3rd-order motion control (with these features on the controller).\r\n</html>");
         panelSettings.add(lblAllowUncoordinated, "2, 4, right, default");
@@ -178,6 +191,13 @@ public class ReferenceAdvancedMotionPlannerConfigurationWizard extends AbstractC
         interpolationRetiming = new JCheckBox("");
         panelSettings.add(interpolationRetiming, "4, 6, right, top");
 
+        JLabel lblParallelDriverDispatch = new JLabel("Parallel Driver Dispatch?");
+        lblParallelDriverDispatch.setToolTipText("<html>\r\nOn machines with multiple controllers (drivers), send each driver's share of a move<br/>\r\nconcurrently, with one sender per driver. The send and confirmation round-trips of<br/>\r\nthe controllers then overlap rather than add up.\r\n</html>");
+        panelSettings.add(lblParallelDriverDispatch, "2, 8, right, default");
+
+        parallelDriverDispatch = new JCheckBox("");
+        panelSettings.add(parallelDriverDispatch, "4, 8");
+
         panel = new JPanel();
         panel.setBorder(new TitledBorder(UIManager.getBorder("TitledBorder.border"), "Test Motion", TitledBorder.LEADING, TitledBorder.TOP, null));
         contentPanel.add(panel);
@@ -426,9 +446,13 @@ public class ReferenceAdvancedMotionPlannerConfigurationWizard extends AbstractC
         LengthConverter lengthConverter = new LengthConverter();
         DoubleConverter doubleConverter = new DoubleConverter(Configuration.get().getLengthDisplayFormat());
 
+        IntegerConverter intConverter = new IntegerConverter();
+
         addWrappedBinding(motionPlanner, "allowContinuousMotion", allowContinuousMotion, "selected");
+        addWrappedBinding(motionPlanner, "lookaheadMotions", lookaheadMotions, "text", intConverter);
         addWrappedBinding(motionPlanner, "allowUncoordinated", allowUncoordinated, "selected");
         addWrappedBinding(motionPlanner, "interpolationRetiming", interpolationRetiming, "selected");
+        addWrappedBinding(motionPlanner, "parallelDriverDispatch", parallelDriverDispatch, "selected");
 
         addWrappedBinding(motionPlanner, "startLocationEnabled", startLocationEnabled, "selected");
         addWrappedBinding(motionPlanner, "mid1LocationEnabled", mid1LocationEnabled, "selected");
@@ -495,6 +519,7 @@ public class ReferenceAdvancedMotionPlannerConfigurationWizard extends AbstractC
         addWrappedBinding(endLocation, "rotation", textFieldEndRotation, "text",
                 doubleConverter);
 
+        ComponentDecorators.decorateWithAutoSelect(lookaheadMotions);
         ComponentDecorators.decorateWithAutoSelectAndLengthConversion(textFieldStartX);
         ComponentDecorators.decorateWithAutoSelectAndLengthConversion(textFieldStartY);
         ComponentDecorators.decorateWithAutoSelectAndLengthConversion(textFieldStartZ);
@@ -92,6 +92,7 @@ public class ReferenceAdvancedMotionPlannerDiagnosticsWizard extends AbstractCon
     private JTextField moveTimePlanned;
     private JTextField moveTimeActual;
     private JLabel interpolationFailed;
+    private JTextField solverCacheStatistics;
 
 
     public ReferenceAdvancedMotionPlannerDiagnosticsWizard(ReferenceAdvancedMotionPlanner motionPlanner) {
@@ -134,6 +135,8 @@ public class ReferenceAdvancedMotionPlannerDiagnosticsWizard extends AbstractCon
                 FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,}));
         
         lblDiagnostics = new JLabel("Diagnostics?");
@@ -179,6 +182,15 @@ public class ReferenceAdvancedMotionPlannerDiagnosticsWizard extends AbstractCon
             }
         });
         motionGraph.setFont(new Font("Dialog", Font.PLAIN, 11));
+
+        JLabel lblSolverCache = new JLabel("Solver Cache");
+        lblSolverCache.setToolTipText("Motion profiles served from the solver cache (hits) vs. solved (misses), since startup.");
+        contentPanel.add(lblSolverCache, "2, 16, right, default");
+
+        solverCacheStatistics = new JTextField();
+        solverCacheStatistics.setEditable(false);
+        contentPanel.add(solverCacheStatistics, "4, 16, 7, 1, fill, default");
+        solverCacheStatistics.setColumns(20);
     }
 
     @Override
@@ -190,6 +202,7 @@ public class ReferenceAdvancedMotionPlannerDiagnosticsWizard extends AbstractCon
         addWrappedBinding(motionPlanner, "diagnosticsEnabled", diagnosticsEnabled, "selected");
         addWrappedBinding(motionPlanner, "motionGraph", motionGraph, "graph");
         addWrappedBinding(motionPlanner, "interpolationFailed", interpolationFailed, "visible");
+        addWrappedBinding(motionPlanner, "solverCacheStatistics", solverCacheStatistics, "text");
         
         ComponentDecorators.decorateWithAutoSelectAndLengthConversion(moveTimePlanned);
         ComponentDecorators.decorateWithAutoSelectAndLengthConversion(moveTimeActual);
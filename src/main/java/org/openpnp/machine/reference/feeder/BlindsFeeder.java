@@ -2103,7 +2103,7 @@ public class BlindsFeeder extends ReferenceFeeder {
         try {
             CvPipeline pipeline = getPipeline();
             if (clone) {
-                pipeline = pipeline.clone();
+                pipeline = pipeline.borrowCopy();
             }
             pipeline.setProperty("camera", camera);
             pipeline.setProperty("feeder", this);
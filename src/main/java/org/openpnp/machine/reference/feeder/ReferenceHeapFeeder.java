@@ -32,6 +32,7 @@ import org.openpnp.util.MovableUtils;
 import org.openpnp.util.OpenCvUtils;
 import org.openpnp.util.VisionUtils;
 import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvPipeline.ExecutionMode;
 import org.openpnp.vision.pipeline.CvStage.Result;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
@@ -978,6 +979,7 @@ public class ReferenceHeapFeeder extends ReferenceFeeder {
             pipeline.setProperty("camera", camera);
             pipeline.setProperty("nozzle", nozzle);
             pipeline.setProperty("feeder", feeder);
+            pipeline.setExecutionMode(ExecutionMode.ParallelBranches);
             pipeline.process();
             // make sure we have a result
             Result visionResult = pipeline.getResult(VisionUtils.PIPELINE_RESULTS_NAME);
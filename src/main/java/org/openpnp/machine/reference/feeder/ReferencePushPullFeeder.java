@@ -1257,7 +1257,7 @@ public class ReferencePushPullFeeder extends ReferenceFeeder {
         try {
             CvPipeline pipeline = getPipeline();
             if (clone) {
-                pipeline = pipeline.clone();
+                pipeline = pipeline.borrowCopy();
             }
             pipeline.setProperty("camera", camera);
             pipeline.setProperty("feeder", this);
@@ -1034,7 +1034,7 @@ public class ReferenceStripFeederConfigurationWizard extends AbstractConfigurati
         try {
             CvPipeline pipeline = feeder.getPipeline();;
             if (clone) {
-                pipeline = pipeline.clone();
+                pipeline = pipeline.borrowCopy();
             }
             pipeline.setProperty("camera", camera);
             pipeline.setProperty("feeder", feeder);
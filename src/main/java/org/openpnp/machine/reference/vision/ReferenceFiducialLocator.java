@@ -52,6 +52,8 @@ import org.openpnp.util.TravellingSalesman;
 import org.openpnp.util.Utils2D;
 import org.openpnp.util.VisionUtils;
 import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvPipeline.ExecutionMode;
+import org.openpnp.vision.pipeline.CvPipeline.ResultRetention;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
@@ -458,6 +460,9 @@ public class ReferenceFiducialLocator extends AbstractPartSettingsHolder impleme
         List<Location> matchedLocations = new ArrayList<Location>();
 
         try(CvPipeline pipeline = getFiducialPipeline(camera, partSettingsHolder)) {
+            // Only the result is read back, the working image is displayed. 
+            pipeline.setResultRetention(ResultRetention.Referenced, VisionUtils.PIPELINE_RESULTS_NAME);
+            pipeline.setExecutionMode(ExecutionMode.ParallelBranches);
             for (int i = 0; i < repeatFiducialRecognition; i++) {
                 // Perform vision operation
                 pipeline.process();
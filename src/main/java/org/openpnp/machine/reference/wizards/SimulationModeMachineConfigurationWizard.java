@@ -62,6 +62,7 @@ public class SimulationModeMachineConfigurationWizard extends AbstractConfigurat
     private JComboBox simulationMode;
     private JTextField simulatedRunoutPhase;
     private JCheckBox pickAndPlaceChecking;
+    private JCheckBox virtualTime;
     private JTextField simulatedCameraLag;
     private JTextField machineTableZ;
     private JTextField simulatedVibrationDuration;
@@ -172,6 +173,13 @@ public class SimulationModeMachineConfigurationWizard extends AbstractConfigurat
         pickAndPlaceChecking = new JCheckBox("");
         panelLocations.add(pickAndPlaceChecking, "4, 12");
         
+        JLabel lblVirtualTime = new JLabel("Virtual Time?");
+        lblVirtualTime.setToolTipText("<html>\r\nRuns the simulation on a virtual clock: motion, camera settling, dwell times and actuator <br/>\r\ndelays advance the clock instead of taking real time. Use it to run Jobs much faster as benchmarks.\r\n</html>");
+        panelLocations.add(lblVirtualTime, "2, 14, right, default");
+        
+        virtualTime = new JCheckBox("");
+        panelLocations.add(virtualTime, "4, 14");
+        
         JLabel lblCameraLags = new JLabel("Camera Lag [s]");
         panelLocations.add(lblCameraLags, "2, 16, right, default");
         
@@ -269,6 +277,7 @@ public class SimulationModeMachineConfigurationWizard extends AbstractConfigurat
         addWrappedBinding(machine, "simulatedRunout", simulatedRunout, "text", lengthConverter);
         addWrappedBinding(machine, "simulatedRunoutPhase", simulatedRunoutPhase, "text", degreeConverter);
         addWrappedBinding(machine, "pickAndPlaceChecking", pickAndPlaceChecking, "selected");
+        addWrappedBinding(machine, "virtualTime", virtualTime, "selected");
 
         addWrappedBinding(machine, "simulatedVibrationAmplitude", simulatedVibrationAmplitude, "text", doubleConverter);
         addWrappedBinding(machine, "simulatedVibrationDuration", simulatedVibrationDuration, "text", doubleConverter);
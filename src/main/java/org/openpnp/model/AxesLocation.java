@@ -192,6 +192,20 @@ public class AxesLocation {
             }
         }
     }
+    /**
+     * Create an AxesLocation from the first count entries of the given axes and coordinates arrays. 
+     * The coordinates must be given in AxesLocation.getUnits(). 
+     * 
+     * @param axes
+     * @param coordinates
+     * @param count
+     */
+    public AxesLocation(Axis[] axes, double[] coordinates, int count) {
+        location = new LinkedHashMap<>(count*4/3 + 1);
+        for (int i = 0; i < count; i++) {
+            location.put(axes[i], coordinates[i]);
+        }
+    }
     /**
      * Using the given binary function, aggregate the given axesLocation argument list.  
      * 
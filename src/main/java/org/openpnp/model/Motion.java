@@ -116,6 +116,7 @@ public class Motion {
     private double effectiveSpeed;
     private double euclideanDistance;
     private double plannedTime1;
+    private double confirmedTime1 = Double.NaN;
 
     public static int optionFlags(MotionOption... options) {
         int optionFlags = 0;
@@ -182,6 +183,19 @@ public class Motion {
         this.plannedTime1 = plannedTime1;
     }
 
+    /**
+     * @return The time by which the drivers confirmed that the motion was complete, or NaN if not confirmed. 
+     * The planned end is only the host's estimate, the controller may finish later, but not later than 
+     * confirmed.
+     */
+    public double getConfirmedTime1() {
+        return confirmedTime1;
+    }
+
+    public void setConfirmedTime1(double confirmedTime1) {
+        this.confirmedTime1 = confirmedTime1;
+    }
+
     private MotionProfile getAxisProfile(ControllerAxis axis) {
         return axesProfiles[axisIndex.get(axis)];
     }
@@ -1223,14 +1237,17 @@ public class Motion {
         if (command1 != null) {
             list.add(command1);
         }
+        // Merge steps with small approximation error, or that the communications link could not transmit in time.
+        int interpolatedSteps = list.size();
+        mergeInterpolationSteps(driver, list, time, junctionDeviation);
 
         if (list.size() < 2 || !interpolationNeeded) {
             // Interpolation collapsed.
             return moderatedMoveTo(driver);
         }
         double compTime = NanosecondTime.getRuntimeSeconds() - compT0;
-        Logger.debug("Interpolation "+numSteps+" intervals, "+probeCount+" probes, "+list.size()
-        +" steps, comp time "+String.format(Locale.US, "%.3f", compTime*1000)+"ms");
+        Logger.debug("Interpolation "+numSteps+" intervals, "+probeCount+" probes, "+interpolatedSteps
+        +" steps merged to "+list.size()+", comp time "+String.format(Locale.US, "%.3f", compTime*1000)+"ms");
         // The interpolation will use constant acceleration to reach the way-points, i.e. it will be slightly faster. 
         // Re-time the whole path to match the planning time exactly.
         double timeEffective = 0;
@@ -1262,6 +1279,125 @@ public class Motion {
         return list;
     }
 
+    /**
+     * Adaptively merge adjacent interpolation steps into single constant acceleration steps. The pair with the 
+     * smallest velocity error at the eliminated way-point is merged first. Merging continues as long as the error 
+     * is within the driver's interpolation velocity tolerance. If the driver has a limiting line rate, merging 
+     * also continues as long as there are more steps than the communications link can transmit within the 
+     * duration of the move, but only up to the driver's maximum velocity error. The eliminated way-point must 
+     * always lie within the junction deviation of the merged step, so the path itself is not cut. 
+     * 
+     * @param driver
+     * @param list The interpolation steps, merged in place.
+     * @param time The duration of the move.
+     * @param junctionDeviation
+     */
+    protected void mergeInterpolationSteps(Driver driver, List<MoveToCommand> list, double time, 
+            double junctionDeviation) {
+        Double velocityTolerance = driver.getInterpolationVelocityTolerance();
+        if (velocityTolerance == null) {
+            velocityTolerance = 0.0;
+        }
+        Double lineRate = driver.getInterpolationLineRate();
+        Double maxVelocityError = driver.getInterpolationMaxVelocityError();
+        int maxLines = Integer.MAX_VALUE;
+        if (lineRate != null && lineRate > 0 && maxVelocityError != null && maxVelocityError > 0) {
+            maxLines = Math.max(2, (int) Math.floor(time*lineRate));
+        }
+        if (velocityTolerance <= 0 && list.size() <= maxLines) {
+            return;
+        }
+        while (list.size() >= 2) {
+            int bestIndex = -1;
+            double bestError = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < list.size() - 1; i++) {
+                double error = interpolationMergeError(driver, list.get(i), list.get(i + 1), junctionDeviation);
+                if (error < bestError) {
+                    bestError = error;
+                    bestIndex = i;
+                }
+            }
+            if (bestIndex < 0) {
+                // Nothing can be merged.
+                break;
+            }
+            boolean withinTolerance = (velocityTolerance > 0 && bestError <= velocityTolerance);
+            if (!withinTolerance) {
+                if (list.size() <= maxLines) {
+                    break;
+                }
+                if (bestError > maxVelocityError) {
+                    // The link will not keep up, but the path would be distorted too much.
+                    break;
+                }
+            }
+            list.set(bestIndex, mergedInterpolationStep(driver, list.get(bestIndex), list.get(bestIndex + 1)));
+            list.remove(bestIndex + 1);
+        }
+    }
+
+    /**
+     * @return The velocity error at the junction of the two interpolation steps, if they are merged into one 
+     * constant acceleration step, or infinity if they cannot be merged, because the junction deviates too much from 
+     * the straight merged step.
+     */
+    private double interpolationMergeError(Driver driver, MoveToCommand command0, MoveToCommand command1, 
+            double junctionDeviation) {
+        if (command0.v0 == null || command0.v1 == null || command1.v1 == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+        // Deviation of the junction from the merged step.
+        double uu = 0, uw = 0, ww = 0;
+        for (ControllerAxis axis : command0.location0.getAxes(driver)) {
+            double u = command0.location1.getCoordinate(axis) - command0.location0.getCoordinate(axis);
+            double w = command1.location1.getCoordinate(axis) - command0.location0.getCoordinate(axis);
+            uu += u*u;
+            uw += u*w;
+            ww += w*w;
+        }
+        if (ww == 0 || uw < 0 || uw > ww) {
+            // Null move or reversal. 
+            return Double.POSITIVE_INFINITY;
+        }
+        double deviation = Math.sqrt(Math.max(0, uu - uw*uw/ww));
+        if (deviation > junctionDeviation) {
+            return Double.POSITIVE_INFINITY;
+        }
+        // With constant acceleration, the square of the velocity changes linearly with distance.
+        double fraction = uw/ww;
+        double v0 = command0.v0;
+        double v2 = command1.v1;
+        double vJunction = Math.sqrt(Math.max(0, v0*v0 + (v2*v2 - v0*v0)*fraction));
+        return Math.abs(vJunction - command0.v1);
+    }
+
+    MoveToCommand mergedInterpolationStep(Driver driver, MoveToCommand command0, MoveToCommand command1) {
+        final AxesLocation segment = command0.location0.motionSegmentTo(command1.location1).drivenBy(driver);
+        double distance = segment.getRS274NGCMetric(driver, 
+                (axis) -> segment.getCoordinate(axis));
+        double v0 = command0.v0;
+        double v2 = command1.v1;
+        double avgVelocity = (v0 + v2)*0.5;
+        double dtNominal = avgVelocity > 0 ? distance/avgVelocity : command0.time + command1.time;
+        double acceleration = dtNominal > 0 ? Math.abs(v2 - v0)/dtNominal : 0;
+        Double velocity = null;
+        if (command0.feedRatePerSecond != null && command1.feedRatePerSecond != null) {
+            // Velocity governed steps.
+            velocity = Math.max(command0.feedRatePerSecond, command1.feedRatePerSecond);
+        }
+        if (command0.accelerationPerSecond2 != null && command1.accelerationPerSecond2 != null) {
+            acceleration = Math.max(acceleration, 
+                    Math.min(command0.accelerationPerSecond2, command1.accelerationPerSecond2));
+        }
+        return new MoveToCommand(
+                command0.location0, command1.location1,
+                command0.movedAxesLocation.put(command1.movedAxesLocation),
+                velocity,
+                acceleration,
+                null,
+                command0.t0, dtNominal, v0, v2);
+    }
+
     private double computeMaxDeltaA(Integer maxJerkSteps, ControllerAxis axis) {
         MotionProfile profile = axesProfiles[getAxisIndex(axis)]; 
         if (profile.isConstantAcceleration() || maxJerkSteps < 2) {
@@ -26,6 +26,8 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
@@ -94,6 +96,59 @@ public class MotionProfile {
 
     int profileOptions;
 
+    // The solver cache, see solve().
+    private static final int solverCacheSize = 4096;
+    private static final Map<SolverKey, MotionProfile> solverCache = 
+            new LinkedHashMap<SolverKey, MotionProfile>(solverCacheSize*4/3, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SolverKey, MotionProfile> eldest) {
+            return size() > solverCacheSize;
+        }
+    };
+    private static long solverCacheHits;
+    private static long solverCacheMisses;
+
+    /**
+     * The key of the solver cache, i.e. all the inputs of the solver. Locations are taken relative to s[0], 
+     * so the same move solved at another location is also a hit. The values are compared exactly: a profile 
+     * solved for even a slightly different displacement would not end on the exact target location.  
+     */
+    private static final class SolverKey {
+        final double [] values;
+        final int options;
+        final int hash;
+
+        SolverKey(MotionProfile profile) {
+            double s0 = profile.s[0];
+            values = new double[] {
+                    profile.s[segments] - s0,
+                    profile.v[0], profile.v[segments],
+                    profile.a[0], profile.a[segments],
+                    profile.sMin - s0, profile.sMax - s0,
+                    profile.vMax, profile.aMaxEntry, profile.aMaxExit, profile.jMax,
+                    profile.tMin, profile.tMax
+            };
+            options = profile.profileOptions & ~ProfileOption.Solved.flag();
+            hash = Arrays.hashCode(values)*31 + options;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof SolverKey)) {
+                return false;
+            }
+            SolverKey other = (SolverKey) obj;
+            return hash == other.hash 
+                    && options == other.options 
+                    && Arrays.equals(values, other.values);
+        }
+    }
+
     public enum ProfileOption {
         Coordinated, 
         SynchronizeEarlyBird, 
@@ -564,13 +619,89 @@ public class MotionProfile {
         return str.toString();
     }
 
+    /**
+     * Solve the profile. Identical moves are solved many times in a job (same feeder to board distances, 
+     * same Safe Z heights, same axis limits), therefore solutions are memoized in a cache and copied 
+     * from there. 
+     */
     public void solve() {
+        SolverKey key = new SolverKey(this);
+        MotionProfile solvedProfile;
+        synchronized (solverCache) {
+            solvedProfile = solverCache.get(key);
+            if (solvedProfile != null) {
+                solverCacheHits++;
+            }
+            else {
+                solverCacheMisses++;
+            }
+        }
+        if (solvedProfile != null) {
+            double tStart = NanosecondTime.getRuntimeSeconds();
+            copySolutionFrom(solvedProfile);
+            solvingTime = NanosecondTime.getRuntimeSeconds() - tStart;
+            return;
+        }
         // scale down tolerances for tiny moves
         double magnitude = Math.max(eps,  Math.min(1.0, 
                 0.01*(Math.abs(s[0]-s[segments])
                         +Math.abs(v[0])+Math.abs(v[segments])
                         +Math.abs(a[0])+Math.abs(a[segments]))));
         solve(iterations, vtol*Math.sqrt(magnitude), ttol*Math.sqrt(magnitude));
+        solvedProfile = new MotionProfile(this);
+        solvedProfile.copySolutionFrom(this);
+        synchronized (solverCache) {
+            solverCache.put(key, solvedProfile);
+        }
+    }
+
+    /**
+     * Copy the solution from a profile solved with the same inputs, but possibly at a different location. 
+     *  
+     * @param solvedProfile
+     */
+    protected void copySolutionFrom(MotionProfile solvedProfile) {
+        double s0 = s[0];
+        double s1 = s[segments];
+        copyProfileSolution(solvedProfile);
+        eval = solvedProfile.eval;
+        // Shift to this location.
+        double offset = s0 - solvedProfile.s[0];
+        for (int i = 0; i <= segments; i++) {
+            s[i] += offset;
+        }
+        sBound0 += offset;
+        sBound1 += offset;
+        // Keep the exact locations.
+        s[0] = s0;
+        s[segments] = s1;
+        setOption(ProfileOption.Solved);
+    }
+
+    /**
+     * @return The number of solve() calls served from the solver cache.
+     */
+    public static long getSolverCacheHits() {
+        synchronized (solverCache) {
+            return solverCacheHits;
+        }
+    }
+
+    /**
+     * @return The number of solve() calls that had to be solved.
+     */
+    public static long getSolverCacheMisses() {
+        synchronized (solverCache) {
+            return solverCacheMisses;
+        }
+    }
+
+    public static void clearSolverCache() {
+        synchronized (solverCache) {
+            solverCache.clear();
+            solverCacheHits = 0;
+            solverCacheMisses = 0;
+        }
     }
     public void solve(final int iterations, final double vtol, final double ttol) {
         double tStart = NanosecondTime.getRuntimeSeconds();
@@ -22,9 +22,11 @@ package org.openpnp.spi;
 import java.awt.image.BufferedImage;
 import java.io.Closeable;
 
+import org.opencv.core.Mat;
 import org.openpnp.CameraListener;
 import org.openpnp.model.Length;
 import org.openpnp.model.Location;
+import org.openpnp.util.OpenCvUtils;
 
 /**
  * Represents a Camera attached to the system and allows a caller to retrieve images from it.
@@ -120,6 +122,18 @@ public interface Camera extends HeadMountable, WizardConfigurable,
     
     public BufferedImage captureRaw();
 
+    /**
+     * Same as capture() but returns the image as an OpenCV Mat in BGR color space. Cameras that receive native 
+     * frame buffers hand them over without going through a BufferedImage. The caller owns the Mat and should 
+     * recycle it into the MatPool after use.
+     * 
+     * @return
+     * @throws Exception
+     */
+    public default Mat captureMat() throws Exception {
+        return OpenCvUtils.toMat(capture());
+    }
+
     public enum SettleOption {
         Skip,
         Settle,
@@ -144,6 +158,17 @@ public interface Camera extends HeadMountable, WizardConfigurable,
         return settleAndCapture(SettleOption.Settle);
     }
 
+    /**
+     * Same as captureMat() but settles the camera before capturing.
+     * @param settleOption Determines how thorough the settling is.
+     * 
+     * @return
+     * @throws Exception
+     */
+    public default Mat settleAndCaptureMat(SettleOption settleOption) throws Exception {
+        return OpenCvUtils.toMat(settleAndCapture(settleOption));
+    }
+
     /**
      * Same as capture(), but lights and settles the camera before capturing. Uses default lighting.
      * 
@@ -103,6 +103,15 @@ import org.openpnp.spi.MotionPlanner.CompletionType;
      */
     public boolean isMotionPending();
 
+    /**
+     * @return true if waitForCompletion() only returns once the controller has confirmed that the motion is 
+     * complete. The time it returns is then the latest the motion can have ended, whereas the planned end 
+     * of a motion is just a host-side estimate. 
+     */
+    public default boolean isMotionCompletionConfirmed() {
+        return false;
+    }
+
     /**
      * Perform a coordinated wait for completion. This must be issued before capturing camera frames etc.
      * 
@@ -296,6 +305,31 @@ import org.openpnp.spi.MotionPlanner.CompletionType;
         return null;
     }
 
+    /**
+     * @return The velocity error, in mm/s, that is tolerated when adjacent interpolation steps are merged into 
+     * one constant acceleration step. Zero or null disables merging. 
+     */
+    public default Double getInterpolationVelocityTolerance() {
+        return null;
+    }
+
+    /**
+     * @return The number of move commands per second the communications link can sustainably transmit, or null 
+     * if the link is not limiting. Interpolation steps are merged until the move can be transmitted in its own 
+     * duration, but only as long as the velocity error is within getInterpolationMaxVelocityError().
+     */
+    public default Double getInterpolationLineRate() {
+        return null;
+    }
+
+    /**
+     * @return The maximum velocity error, in mm/s, that is accepted when interpolation steps are merged to meet 
+     * the getInterpolationLineRate(). Zero or null disables these forced merges. 
+     */
+    public default Double getInterpolationMaxVelocityError() {
+        return null;
+    }
+
     /**
      * @return The minimum velocity the driver supports, in mm/s. Used to prevent "rounded to zero" errors caused in
      * interpolation. 
@@ -209,4 +209,11 @@ public interface MotionPlanner extends PropertySheetHolder, Solutions.Subject {
      * @return true if the location is valid, i.e. inside soft limits etc.
      */
     public boolean isValidLocation(HeadMountable hm, AxesLocation axesLocation);
+
+    /**
+     * Release resources held by the planner, such as threads. Called when the machine is disabled or closed, 
+     * or when the planner is replaced. The planner must remain usable, i.e. resources are recreated on demand.  
+     */
+    public default void releaseResources() {
+    }
 }
@@ -21,6 +21,7 @@ import org.openpnp.spi.Machine;
 import org.openpnp.spi.MachineListener;
 import org.openpnp.spi.Nozzle;
 import org.openpnp.util.IdentifiableList;
+import org.openpnp.util.NanosecondTime;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
@@ -430,7 +431,7 @@ public abstract class AbstractHead extends AbstractModelObject implements Head {
                     if (!isCarryingPartOtherThanOn(nozzle)) {
                         pump.actuate(on);
                         if (on) {
-                            Thread.sleep(getPumpOnWaitMilliseconds());
+                            NanosecondTime.sleep(getPumpOnWaitMilliseconds());
                         }
                     }
                     break;
@@ -440,7 +441,7 @@ public abstract class AbstractHead extends AbstractModelObject implements Head {
                     if (on) {
                         if (pump.isActuated() == null || !pump.isActuated()) {
                             pump.actuate(on);
-                            Thread.sleep(getPumpOnWaitMilliseconds());
+                            NanosecondTime.sleep(getPumpOnWaitMilliseconds());
                         }
                     }
                     break;
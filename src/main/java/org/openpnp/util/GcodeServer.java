@@ -1,5 +1,6 @@
 package org.openpnp.util;
 
+import java.io.BufferedInputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.ServerSocket;
@@ -167,7 +168,8 @@ public class GcodeServer extends Thread {
 
         public Worker(Socket socket) throws Exception {
             this.socket = socket;
-            input = socket.getInputStream();
+            socket.setTcpNoDelay(true);
+            input = new BufferedInputStream(socket.getInputStream());
             output = socket.getOutputStream();
         }
 
@@ -633,7 +635,7 @@ public class GcodeServer extends Thread {
                         dwellMilliseconds = maxDwellTimeMilliseconds;
                     }
                     Logger.trace("Waiting "+dwellMilliseconds+"ms");
-                    Thread.sleep(dwellMilliseconds);
+                    NanosecondTime.sleep(dwellMilliseconds);
 
                     // Remove old stuff.
                     double time = NanosecondTime.getRuntimeSeconds() - 30;
@@ -32,8 +32,11 @@ import java.math.BigInteger;
 public class NanosecondTime implements Comparable<NanosecondTime> {
 
     private static long nanosecondsLast = Long.MIN_VALUE;
+    private static volatile boolean virtualTime = false;
+    private static volatile long virtualTimeOffset = 0;
+
     public static long getRuntime() {
-        long nanoTime = System.nanoTime();
+        long nanoTime = System.nanoTime() + virtualTimeOffset;
         if (nanoTime <= nanosecondsLast) {
             // Make it unique even if the calls are more frequent than the underlying nanoTime timer resolution. 
             nanoTime = ++nanosecondsLast;
@@ -50,6 +53,64 @@ public class NanosecondTime implements Comparable<NanosecondTime> {
         return getRuntime()/1000000;
     }
 
+    /**
+     * @return True if the runtime is a virtual clock, see {@link #setVirtualTime(boolean)}.
+     */
+    public static boolean isVirtualTime() {
+        return virtualTime;
+    }
+
+    /**
+     * Switches the runtime to a virtual clock. The virtual clock still runs in real time, but 
+     * waiting with {@link #sleep(long)} or {@link #sleepUntil(double)} advances it, instead of actually
+     * waiting. Simulations can thereby skip over motion, settle and dwell times. The runtime stays 
+     * monotonic, when switching back, any time skipped remains added.   
+     * 
+     * @param virtualTime
+     */
+    public static void setVirtualTime(boolean virtualTime) {
+        NanosecondTime.virtualTime = virtualTime;
+    }
+
+    /**
+     * Waits for the given time, or just advances the virtual clock.
+     * 
+     * @param milliseconds
+     * @throws InterruptedException
+     */
+    public static void sleep(long milliseconds) throws InterruptedException {
+        if (virtualTime) {
+            advance(milliseconds*1000000L);
+        }
+        else {
+            Thread.sleep(milliseconds);
+        }
+    }
+
+    /**
+     * Waits until the runtime has reached the given time, or just advances the virtual clock to it.
+     * 
+     * @param runtimeSeconds Time in the {@link #getRuntimeSeconds()} base.
+     * @throws InterruptedException
+     */
+    public static void sleepUntil(double runtimeSeconds) throws InterruptedException {
+        long nanoseconds = (long) Math.ceil(runtimeSeconds*1e9) - getRuntime();
+        if (nanoseconds > 0) {
+            if (virtualTime) {
+                advance(nanoseconds);
+            }
+            else {
+                Thread.sleep(nanoseconds/1000000, (int) (nanoseconds % 1000000));
+            }
+        }
+    }
+
+    private static synchronized void advance(long nanoseconds) {
+        if (nanoseconds > 0) {
+            virtualTimeOffset += nanoseconds;
+        }
+    }
+
     private static NanosecondTime systemStartTime = null;
     public static NanosecondTime get() {
         if (systemStartTime == null) {
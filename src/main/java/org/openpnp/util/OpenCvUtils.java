@@ -31,6 +31,7 @@ import org.openpnp.model.Location;
 import org.openpnp.spi.Camera;
 import org.openpnp.vision.FluentCv.ColorCode;
 import org.openpnp.vision.FluentCv.ColorSpace;
+import org.openpnp.vision.MatPool;
 import org.pmw.tinylog.Logger;
 
 public class OpenCvUtils {
@@ -88,7 +89,7 @@ public class OpenCvUtils {
             img = ImageUtils.convertBufferedImage(img, BufferedImage.TYPE_3BYTE_BGR);
             type = CvType.CV_8UC3;
         }
-        Mat mat = new Mat(img.getHeight(), img.getWidth(), type);
+        Mat mat = MatPool.get().borrow(img.getHeight(), img.getWidth(), type);
         mat.put(0, 0, ((DataBufferByte) img.getRaster().getDataBuffer()).getData());
         return mat;
     }
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.util;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent samples of a measurement, such as a latency, and provides their distribution
+ * over that rolling window. Thread-safe, so it can be recorded from one thread and inspected from
+ * another, e.g. from the GUI or scripts.
+ */
+public class RollingHistogram {
+    private final double[] samples;
+    private int size;
+    private int next;
+    private long totalCount;
+
+    /**
+     * @param capacity The number of most recent samples kept.
+     */
+    public RollingHistogram(int capacity) {
+        samples = new double[capacity];
+    }
+
+    public synchronized void add(double value) {
+        samples[next] = value;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+        totalCount++;
+    }
+
+    /**
+     * @return The number of samples in the window.
+     */
+    public synchronized int getCount() {
+        return size;
+    }
+
+    /**
+     * @return The number of samples added since created or cleared, including those that have dropped out
+     * of the window.
+     */
+    public synchronized long getTotalCount() {
+        return totalCount;
+    }
+
+    public synchronized double getMean() {
+        if (size == 0) {
+            return Double.NaN;
+        }
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += samples[i];
+        }
+        return sum/size;
+    }
+
+    public synchronized double getMax() {
+        if (size == 0) {
+            return Double.NaN;
+        }
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, samples[i]);
+        }
+        return max;
+    }
+
+    /**
+     * @param percentile From 0 to 100.
+     * @return The sample at the given percentile (nearest rank), or NaN if the window is empty.
+     */
+    public synchronized double getPercentile(double percentile) {
+        if (size == 0) {
+            return Double.NaN;
+        }
+        double[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile/100*size);
+        return sorted[Math.max(0, Math.min(size - 1, rank - 1))];
+    }
+
+    /**
+     * @param upperBounds Ascending upper bounds (inclusive) of the bins.
+     * @return The number of samples in each bin, with one more bin at the end for the samples above the
+     * last bound.
+     */
+    public synchronized int[] getHistogram(double... upperBounds) {
+        int[] counts = new int[upperBounds.length + 1];
+        for (int i = 0; i < size; i++) {
+            int bin = 0;
+            while (bin < upperBounds.length && samples[i] > upperBounds[bin]) {
+                bin++;
+            }
+            counts[bin]++;
+        }
+        return counts;
+    }
+
+    public synchronized void clear() {
+        size = 0;
+        next = 0;
+        totalCount = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        if (size == 0) {
+            return "-";
+        }
+        return String.format("n=%d mean=%.1f p50=%.1f p95=%.1f max=%.1f",
+                size, getMean(), getPercentile(50), getPercentile(95), getMax());
+    }
+}
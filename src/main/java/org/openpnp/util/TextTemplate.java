@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.util;
+
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+
+/**
+ * A text template with variables in the format {Name:Format}, parsed once and then substituted
+ * in a single pass. The substitution is equivalent to calling
+ * {@link TextUtils#substituteVar(String, String, Object)} for each of the given variables: a
+ * variable is replaced with its value, formatted using String.format with the specified Format
+ * (defaults to %s). A null value replaces the variable with "". Variables not given are left
+ * in the text as is.
+ */
+public class TextTemplate {
+    private final String template;
+    private final List<Object> segments = new ArrayList<>();
+    private final Set<String> variableNames = new HashSet<>();
+
+    private final StringBuilder text = new StringBuilder();
+    private final Formatter formatter = new Formatter(text, (Locale) null);
+
+    private static class Variable {
+        final String name;
+        final String format;
+        final String source;
+
+        Variable(String name, String format, String source) {
+            this.name = name;
+            this.format = (format == null ? "%s" : format);
+            this.source = source;
+        }
+    }
+
+    public TextTemplate(String template) {
+        this.template = template;
+        Matcher matcher = TextUtils.variablePattern.matcher(template);
+        int position = 0;
+        while (matcher.find()) {
+            if (matcher.start() > position) {
+                segments.add(template.substring(position, matcher.start()));
+            }
+            Variable variable = new Variable(matcher.group(1), matcher.group(2), matcher.group());
+            segments.add(variable);
+            variableNames.add(variable.name);
+            position = matcher.end();
+        }
+        if (position < template.length()) {
+            segments.add(template.substring(position));
+        }
+    }
+
+    /**
+     * @return The template text this was compiled from.
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * @param name
+     * @return True if the template contains the variable.
+     */
+    public boolean hasVariable(String name) {
+        return variableNames.contains(name);
+    }
+
+    /**
+     * Substitute the given variables into the template.
+     *
+     * @param variables Map of variable names to values. A name mapped to null deletes the variable.
+     * @return The resulting text.
+     */
+    public synchronized String substitute(Map<String, Object> variables) {
+        text.setLength(0);
+        for (Object segment : segments) {
+            if (segment instanceof Variable) {
+                Variable variable = (Variable) segment;
+                if (!variables.containsKey(variable.name)) {
+                    text.append(variable.source);
+                    continue;
+                }
+                Object value = variables.get(variable.name);
+                if (value != null) {
+                    formatter.format((Locale) null, variable.format, value);
+                }
+            }
+            else {
+                text.append((String) segment);
+            }
+        }
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+}
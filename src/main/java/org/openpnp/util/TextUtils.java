@@ -24,6 +24,8 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class TextUtils {
+    static final Pattern variablePattern = Pattern.compile("\\{(\\w+)(?::(.+?))?\\}");
+
     /**
      * Find matches of variables in the format {Name:Format} and replace them with the specified
      * value formatted using String.format with the specified Format. Format is optional and
@@ -34,7 +36,7 @@ public class TextUtils {
             return template;
         }
         StringBuffer sb = new StringBuffer();
-        Matcher matcher = Pattern.compile("\\{(\\w+)(?::(.+?))?\\}").matcher(template);
+        Matcher matcher = variablePattern.matcher(template);
         while (matcher.find()) {
             String n = matcher.group(1);
             if (!n.equals(name)) {
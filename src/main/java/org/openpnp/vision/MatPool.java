@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.vision;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+import org.opencv.core.Mat;
+
+/**
+ * A pool of native Mat buffers, keyed by size and type. Vision code borrows Mats from the pool instead of
+ * allocating new ones and recycles them when done, instead of releasing them. Over the thousands of vision
+ * operations in a job, the same few buffer sizes are used over and over, so the native allocator is mostly
+ * bypassed.
+ *
+ * A borrowed Mat is owned by the borrower, the pool does not track it. If it is never recycled, it is simply
+ * released by the garbage collector, as any other Mat. A recycled Mat must no longer be used by anyone.
+ *
+ * The pool holds at most maxBytes of idle buffers, the least recently recycled sizes are released first.
+ */
+public class MatPool {
+    private static final MatPool instance = new MatPool(256L*1024*1024);
+
+    private static class Key {
+        final int rows;
+        final int cols;
+        final int type;
+
+        Key(int rows, int cols, int type) {
+            this.rows = rows;
+            this.cols = cols;
+            this.type = type;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rows, cols, type);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return rows == other.rows && cols == other.cols && type == other.type;
+        }
+    }
+
+    // Access ordered, i.e. the least recently used size comes first.
+    private final LinkedHashMap<Key, ArrayDeque<Mat>> pool = new LinkedHashMap<>(16, 0.75f, true);
+    private long maxBytes;
+    private long pooledBytes;
+    private int pooledMats;
+
+    private long borrowed;
+    private long reused;
+    private long recycled;
+    private long discarded;
+
+    public MatPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return The pool shared by the vision pipelines and cameras.
+     */
+    public static MatPool get() {
+        return instance;
+    }
+
+    /**
+     * Borrow a Mat of the given size and type. The content is undefined.
+     *
+     * @param rows
+     * @param cols
+     * @param type
+     * @return
+     */
+    public Mat borrow(int rows, int cols, int type) {
+        synchronized (this) {
+            borrowed++;
+            ArrayDeque<Mat> mats = pool.get(new Key(rows, cols, type));
+            if (mats != null && !mats.isEmpty()) {
+                Mat mat = mats.pop();
+                pooledMats--;
+                pooledBytes -= byteSize(mat);
+                reused++;
+                return mat;
+            }
+        }
+        return new Mat(rows, cols, type);
+    }
+
+    /**
+     * Borrow a Mat with the size and type of the given Mat and copy its content.
+     *
+     * @param mat
+     * @return
+     */
+    public Mat borrowClone(Mat mat) {
+        Mat clone = borrow(mat.rows(), mat.cols(), mat.type());
+        mat.copyTo(clone);
+        return clone;
+    }
+
+    /**
+     * Recycle a Mat into the pool. Mats that cannot be reused, such as sub-matrices, and Mats that exceed
+     * the pool capacity are released instead.
+     *
+     * @param mat
+     */
+    public void recycle(Mat mat) {
+        if (mat == null) {
+            return;
+        }
+        if (mat.empty() || mat.isSubmatrix() || !mat.isContinuous()) {
+            mat.release();
+            return;
+        }
+        long bytes = byteSize(mat);
+        synchronized (this) {
+            if (bytes > maxBytes) {
+                discarded++;
+                mat.release();
+                return;
+            }
+            recycled++;
+            pool.computeIfAbsent(new Key(mat.rows(), mat.cols(), mat.type()), (k) -> new ArrayDeque<>())
+                .push(mat);
+            pooledMats++;
+            pooledBytes += bytes;
+            trim(maxBytes);
+        }
+    }
+
+    /**
+     * Release idle buffers, the least recently used sizes first, until no more than the given bytes are pooled.
+     *
+     * @param bytes
+     */
+    public synchronized void trim(long bytes) {
+        Iterator<Map.Entry<Key, ArrayDeque<Mat>>> iterator = pool.entrySet().iterator();
+        while (pooledBytes > bytes && iterator.hasNext()) {
+            ArrayDeque<Mat> mats = iterator.next().getValue();
+            while (pooledBytes > bytes && !mats.isEmpty()) {
+                // Release the oldest one.
+                Mat mat = mats.removeLast();
+                pooledMats--;
+                pooledBytes -= byteSize(mat);
+                discarded++;
+                mat.release();
+            }
+            if (mats.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Release all idle buffers.
+     */
+    public void clear() {
+        trim(0);
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trim(maxBytes);
+    }
+
+    public synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    public synchronized int getPooledMats() {
+        return pooledMats;
+    }
+
+    public synchronized long getBorrowed() {
+        return borrowed;
+    }
+
+    public synchronized long getReused() {
+        return reused;
+    }
+
+    public synchronized long getRecycled() {
+        return recycled;
+    }
+
+    public synchronized long getDiscarded() {
+        return discarded;
+    }
+
+    public synchronized void resetStatistics() {
+        borrowed = 0;
+        reused = 0;
+        recycled = 0;
+        discarded = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "borrowed %d, reused %d (%.1f%%), recycled %d, discarded %d, pooled %d Mats/%.1f MB",
+                borrowed, reused, borrowed == 0 ? 0.0 : 100.0*reused/borrowed, recycled, discarded,
+                pooledMats, pooledBytes/1024.0/1024.0);
+    }
+
+    private static long byteSize(Mat mat) {
+        return mat.total()*mat.elemSize();
+    }
+}
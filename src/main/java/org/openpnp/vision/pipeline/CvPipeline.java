@@ -4,11 +4,23 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import org.opencv.core.CvType;
@@ -16,8 +28,17 @@ import org.opencv.core.Mat;
 import org.opencv.core.Point;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
+import org.openpnp.util.OpenCvUtils;
 import org.openpnp.vision.FluentCv.ColorSpace;
+import org.openpnp.vision.MatPool;
 import org.openpnp.vision.pipeline.CvStage.Result;
+import org.openpnp.vision.pipeline.stages.ActuatorWrite;
+import org.openpnp.vision.pipeline.stages.AffineUnwarp;
+import org.openpnp.vision.pipeline.stages.ImageCapture;
+import org.openpnp.vision.pipeline.stages.ImageRead;
+import org.openpnp.vision.pipeline.stages.ImageRecall;
+import org.openpnp.vision.pipeline.stages.ScriptRun;
+import org.openpnp.vision.pipeline.stages.SizeCheck;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.ElementList;
 import org.simpleframework.xml.Root;
@@ -53,26 +74,126 @@ public class CvPipeline implements AutoCloseable {
         nu.pattern.OpenCV.loadShared();
     }
 
+    /**
+     * Determines which stage result images are retained by {@link CvPipeline#process()}.
+     */
+    public enum ResultRetention {
+        /**
+         * The result images of all stages are retained, as needed in the pipeline editor.
+         */
+        Full,
+        /**
+         * Only the result images of stages that are referenced by other stages, of stages requested by 
+         * the caller and of the last stage are retained. The others are released right away. The models are always 
+         * retained.
+         */
+        Referenced
+    }
+
+    /**
+     * Determines how {@link CvPipeline#process()} executes the stages.
+     */
+    public enum ExecutionMode {
+        /**
+         * The stages are processed one after the other, in list order.
+         */
+        Sequential,
+        /**
+         * The pipeline is split into branches, each starting with an ImageRecall stage. Branches that do not 
+         * reference each other's stages are processed concurrently. The results are the same as in Sequential 
+         * mode. Pipelines with scripts or with references to later stages are always processed sequentially.
+         */
+        ParallelBranches
+    }
+
+    /**
+     * The working image, model and color space, handed from stage to stage.
+     */
+    private static class WorkingState {
+        Mat image;
+        Object model;
+        ColorSpace colorSpace;
+    }
+
+    /**
+     * A branch of the pipeline, processed sequentially with its own working state.
+     */
+    private static class Branch {
+        final Branch previous;
+        final List<CvStage> stages = new ArrayList<>();
+        final Set<Branch> dependencies = new HashSet<>();
+        final WorkingState working = new WorkingState();
+        boolean orderDependent;
+        CompletableFuture<Void> done;
+
+        Branch(Branch previous) {
+            this.previous = previous;
+        }
+    }
+
     @ElementList
     private ArrayList<CvStage> stages = new ArrayList<>();
 
-    private Map<CvStage, Result> results = new HashMap<CvStage, Result>();
+    private Map<CvStage, Result> results = new ConcurrentHashMap<CvStage, Result>();
 
     private Map<String, Object> properties = new HashMap<String, Object>();
 
     private ArrayList<PipelineShot> compositeShots = new ArrayList<>();
 
-    private Mat workingImage;
-    private Object workingModel;
+    private WorkingState working = new WorkingState();
+    private final ThreadLocal<WorkingState> branchWorking = new ThreadLocal<>();
     private Exception terminalException;
-    private ColorSpace workingColorSpace;
 
     private long totalProcessingTimeNs;
 
     private BufferedImage lastCapturedImage;
+    private Mat lastCapturedMat;
 
     private int currentShot;
 
+    private ResultRetention resultRetention = ResultRetention.Full;
+
+    private Set<String> retainedResultNames = Collections.emptySet();
+
+    private ExecutionMode executionMode = ExecutionMode.Sequential;
+
+    private static ExecutorService branchExecutor;
+
+    private boolean captureFrozen;
+
+    /**
+     * The stages, their XML and the pipeline properties, as of the last {@link #processIncrementally(boolean)}. 
+     * Null if the results were not produced incrementally.
+     */
+    private List<CvStage> processedStages;
+    private List<String> processedStageXml;
+    private Map<String, Object> processedProperties;
+
+    /**
+     * Counts the modifications of the stages, see {@link #setStagesModified()}.
+     */
+    private volatile int modificationCount;
+
+    /**
+     * The copies handed back by the callers of {@link #borrowCopy()}, ready for reuse.
+     */
+    private final Deque<CvPipeline> idleCopies = new ArrayDeque<>();
+    private int idleCopiesModificationCount;
+
+    /**
+     * If this pipeline is a borrowed copy, the pipeline it was copied from, and its modification count at the time.
+     */
+    private CvPipeline copySource;
+    private int copyModificationCount;
+    private boolean copyIdle;
+
+    private static final int maxIdleCopies = 4;
+
+    /**
+     * The fields of each CvStage class that reference other stages by name.
+     */
+    private static final Map<Class<?>, List<Field>> stageReferenceFields = new ConcurrentHashMap<>();
+
     public CvPipeline() {
         
     }
@@ -99,6 +220,7 @@ public class CvPipeline implements AutoCloseable {
         }
         stage.setName(name);
         stages.add(stage);
+        setStagesModified();
     }
 
     /**
@@ -117,6 +239,7 @@ public class CvPipeline implements AutoCloseable {
         }
         stage.setName(name);
         stages.add(index, stage);
+        setStagesModified();
     }
 
     public void insert(CvStage stage, int index) {
@@ -129,6 +252,7 @@ public class CvPipeline implements AutoCloseable {
 
     public void remove(CvStage stage) {
         stages.remove(stage);
+        setStagesModified();
     }
 
     public List<CvStage> getStages() {
@@ -219,25 +343,34 @@ public class CvPipeline implements AutoCloseable {
      * @return
      */
     public Mat getWorkingImage() {
-        if (workingImage == null || (workingImage.cols() == 0 && workingImage.rows() == 0)) {
-            workingImage = new Mat(480, 640, CvType.CV_8UC3, new Scalar(0, 0, 0));
-            Imgproc.line(workingImage, new Point(0, 0), new Point(640, 480), new Scalar(0, 0, 255));
-            Imgproc.line(workingImage, new Point(640, 0), new Point(0, 480), new Scalar(0, 0, 255));
-            workingColorSpace = ColorSpace.Bgr;
+        WorkingState working = getWorking();
+        if (working.image == null || (working.image.cols() == 0 && working.image.rows() == 0)) {
+            working.image = new Mat(480, 640, CvType.CV_8UC3, new Scalar(0, 0, 0));
+            Imgproc.line(working.image, new Point(0, 0), new Point(640, 480), new Scalar(0, 0, 255));
+            Imgproc.line(working.image, new Point(640, 0), new Point(0, 480), new Scalar(0, 0, 255));
+            working.colorSpace = ColorSpace.Bgr;
         }
-        return workingImage;
+        return working.image;
     }
 
     public Object getWorkingModel() {
-      return workingModel;
+      return getWorking().model;
     }
     
     public ColorSpace getWorkingColorSpace() {
-        return workingColorSpace;
+        return getWorking().colorSpace;
     }
     
     public void setWorkingColorSpace(ColorSpace colorSpace) {
-        workingColorSpace = colorSpace;
+        getWorking().colorSpace = colorSpace;
+    }
+
+    /**
+     * @return The working state of the branch processed on this thread, or the pipeline working state.
+     */
+    private WorkingState getWorking() {
+        WorkingState branchState = branchWorking.get();
+        return (branchState != null ? branchState : working);
     }
 
     Exception getTerminalException() {
@@ -248,91 +381,598 @@ public class CvPipeline implements AutoCloseable {
         this.terminalException = exception;
     }
 
-    public long getTotalProcessingTimeNs() {
+    public synchronized long getTotalProcessingTimeNs() {
       return totalProcessingTimeNs;
     }
 
-    public void setTotalProcessingTimeNs(long totalProcessingTimeNs) {
+    public synchronized void setTotalProcessingTimeNs(long totalProcessingTimeNs) {
       this.totalProcessingTimeNs = totalProcessingTimeNs;
     }
 
+    private synchronized void addProcessingTimeNs(long processingTimeNs) {
+        totalProcessingTimeNs += processingTimeNs;
+    }
+
+    public ResultRetention getResultRetention() {
+        return resultRetention;
+    }
+
+    /**
+     * Set the result retention for the following {@link #process()} calls.
+     * 
+     * @param resultRetention
+     * @param retainedResultNames The names of the stages whose results the caller wants to read after processing, 
+     * in addition to those referenced inside the pipeline.
+     */
+    public void setResultRetention(ResultRetention resultRetention, String... retainedResultNames) {
+        this.resultRetention = resultRetention;
+        this.retainedResultNames = new HashSet<>(Arrays.asList(retainedResultNames));
+    }
+
+    /**
+     * @return The stages whose result images must be retained, or null if all must be retained.
+     */
+    protected Set<CvStage> getRetainedStages() {
+        if (resultRetention == ResultRetention.Full) {
+            return null;
+        }
+        Set<CvStage> retainedStages = new HashSet<>();
+        for (String name : retainedResultNames) {
+            CvStage stage = getStage(name);
+            if (stage != null) {
+                retainedStages.add(stage);
+            }
+        }
+        if (!stages.isEmpty()) {
+            retainedStages.add(stages.get(stages.size() - 1));
+        }
+        for (CvStage stage : stages) {
+            if (!stage.isEnabled()) {
+                continue;
+            }
+            if (stage instanceof ScriptRun) {
+                // Scripts may read any result.
+                return null;
+            }
+            for (Field field : getStageReferenceFields(stage.getClass())) {
+                try {
+                    CvStage referencedStage = getStage((String) field.get(stage));
+                    if (referencedStage != null) {
+                        retainedStages.add(referencedStage);
+                    }
+                }
+                catch (IllegalAccessException e) {
+                    // Cannot determine the reference, retain all.
+                    Logger.warn(e);
+                    return null;
+                }
+            }
+        }
+        return retainedStages;
+    }
+
+    /**
+     * Stages reference other stages by String properties named like "modelStageName" or "imageStageName".
+     *  
+     * @param stageClass
+     * @return The reference fields of the stage class, made accessible.
+     */
+    private static List<Field> getStageReferenceFields(Class<?> stageClass) {
+        return stageReferenceFields.computeIfAbsent(stageClass, (cls) -> {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = cls; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (field.getType() == String.class && field.getName().endsWith("StageName")) {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                }
+            }
+            return fields;
+        });
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * Set the execution mode for the following {@link #process()} calls.
+     * 
+     * @param executionMode
+     */
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    public boolean isCaptureFrozen() {
+        return captureFrozen;
+    }
+
+    /**
+     * Freeze the image capture for {@link #processIncrementally(boolean)}. A frozen ImageCapture stage keeps its 
+     * last captured image, unless its properties are changed or a recapture is requested.
+     * 
+     * @param captureFrozen
+     */
+    public void setCaptureFrozen(boolean captureFrozen) {
+        this.captureFrozen = captureFrozen;
+    }
+
     public void process() throws Exception {
         terminalException = null;
-        totalProcessingTimeNs = 0;
+        setTotalProcessingTimeNs(0);
         release();
         for (CvStage stage : stages) {
             stage.processPrepare(this);
         }
-        for (CvStage stage : stages) {
-            // Process and time the stage and get the result.
-            long processingTimeNs = System.nanoTime();
-            Result result = null;
-            try {
-                if (!stage.isEnabled()) {
-                    throw new Exception(String.format("Stage \"%s\"not enabled.", stage.getName()));
+        Set<CvStage> retainedStages = getRetainedStages();
+        List<Branch> branches = (executionMode == ExecutionMode.ParallelBranches ? getBranches() : null);
+        if (branches == null || branches.size() < 2) {
+            for (CvStage stage : stages) {
+                Exception e = processStage(stage, retainedStages, working);
+                if (e != null) {
+                    terminalException = e;
                 }
-                result = stage.process(this);
             }
-            catch (TerminalException e) {
-                result = new Result(null, e.getOriginalException());
-                setTerminalException(e.getOriginalException());
-                Logger.debug("Stage \""+stage.getName()+"\" throws "+e.getOriginalException());
+        }
+        else {
+            processBranches(branches, retainedStages);
+        }
+        if (terminalException != null) {
+            throw (terminalException);
+        }
+    }
+
+    /**
+     * Process the pipeline, reusing the results of the previous processIncrementally() call up to the first stage 
+     * that was modified, inserted or removed since. Only that stage and the ones after it are processed again. This 
+     * is intended for the pipeline editor, where one property is tuned at a time.
+     * 
+     * Stages with side effects or outside inputs, such as scripts, actuators and image captures that are not frozen, 
+     * are always processed again. A change in the pipeline properties processes the whole pipeline. Parameter stages 
+     * are always applied, so the stages they control are compared with their parameter values assigned. 
+     * 
+     * The results are always fully retained and the stages processed sequentially. 
+     * 
+     * @param recapture Capture a new image, even if the capture is frozen.
+     * @throws Exception
+     */
+    public void processIncrementally(boolean recapture) throws Exception {
+        boolean reusable = (processedStages != null && properties.equals(processedProperties));
+        List<CvStage> lastStages = processedStages;
+        List<String> lastStageXml = processedStageXml;
+        // Invalidate, in case processing is interrupted.
+        processedStages = null;
+        terminalException = null;
+        setTotalProcessingTimeNs(0);
+        Serializer serializer = createSerializer();
+        List<String> stageXml = new ArrayList<>();
+        int start = 0;
+        if (reusable) {
+            for (; start < stages.size() && start < lastStages.size(); start++) {
+                CvStage stage = stages.get(start);
+                String xml = toXmlString(serializer, stage);
+                if (!isReusable(stage, start, recapture, lastStages.get(start), xml, lastStageXml.get(start))) {
+                    break;
+                }
+                if (stage.isEnabled() && stage instanceof CvAbstractParameterStage) {
+                    // Assign the parameter value to the controlled stage, which may come later.
+                    try {
+                        stage.process(this);
+                    }
+                    catch (Exception e) {
+                        break;
+                    }
+                }
+                stageXml.add(xml);
             }
-            catch (Exception e) {
-                result = new Result(null, e);
-                if (stage.isEnabled()) {
+            if (start == stages.size() && start == lastStages.size()) {
+                // Nothing changed.
+                processedStages = lastStages;
+                processedStageXml = lastStageXml;
+                processedProperties = new HashMap<>(properties);
+                return;
+            }
+        }
+        releaseFrom(start);
+        for (CvStage stage : stages.subList(start, stages.size())) {
+            stage.processPrepare(this);
+        }
+        for (CvStage stage : stages.subList(0, start)) {
+            if (stage.isEnabled() && stage instanceof CvAbstractParameterStage) {
+                // Record the overrides on the prepared stages again.
+                try {
+                    stage.process(this);
+                }
+                catch (Exception e) {
                     Logger.debug("Stage \""+stage.getName()+"\" throws "+e);
                 }
             }
-            processingTimeNs = System.nanoTime() - processingTimeNs;
-            totalProcessingTimeNs += processingTimeNs;
+        }
+        for (CvStage stage : stages.subList(start, stages.size())) {
+            stageXml.add(toXmlString(serializer, stage));
+            Exception e = processStage(stage, null, working);
+            if (e != null) {
+                terminalException = e;
+            }
+        }
+        processedStages = new ArrayList<>(stages);
+        processedStageXml = stageXml;
+        processedProperties = new HashMap<>(properties);
+        if (terminalException != null) {
+            throw (terminalException);
+        }
+    }
 
-            Mat image = null;
-            Object model = null;
-            ColorSpace colorSpace = null;
-            if (result != null) {
-                image = result.image;
-                model = result.model;
-                colorSpace = result.colorSpace;
+    /**
+     * @return True if the result of the given stage from the last processIncrementally() can be reused.
+     */
+    private boolean isReusable(CvStage stage, int index, boolean recapture, CvStage lastStage, String xml, 
+            String lastXml) {
+        if (stage != lastStage || xml == null || !xml.equals(lastXml)) {
+            // Modified, inserted or removed.
+            return false;
+        }
+        Result result = results.get(stage);
+        if (result == null || !stage.isEnabled()) {
+            return result != null;
+        }
+        if (result.model instanceof Exception) {
+            // May have been caused by outside conditions, retry.
+            return false;
+        }
+        if (stage instanceof ImageCapture) {
+            return captureFrozen && !recapture;
+        }
+        if (stage instanceof ScriptRun || stage instanceof ActuatorWrite) {
+            return false;
+        }
+        for (Field field : getStageReferenceFields(stage.getClass())) {
+            try {
+                CvStage referencedStage = getStage((String) field.get(stage));
+                if (referencedStage != null && stages.indexOf(referencedStage) >= index) {
+                    // Referencing a later stage, which may be processed again.
+                    return false;
+                }
             }
-            if(stage.isEnabled() && model != null) {
-                workingModel = model;
+            catch (IllegalAccessException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Release the results of the stages from the given index on, including those of removed stages, and restore 
+     * the working state as it was after processing the stages before. 
+     * 
+     * @param start
+     */
+    private void releaseFrom(int start) {
+        Set<CvStage> reusedStages = Collections.newSetFromMap(new IdentityHashMap<>());
+        reusedStages.addAll(stages.subList(0, start));
+        Set<Mat> reusedImages = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Mat> images = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Map.Entry<CvStage, Result> entry : results.entrySet()) {
+            if (entry.getValue().image != null) {
+                (reusedStages.contains(entry.getKey()) ? reusedImages : images).add(entry.getValue().image);
+            }
+        }
+        if (working.image != null) {
+            images.add(working.image);
+            working.image = null;
+        }
+        images.removeAll(reusedImages);
+        for (Mat image : images) {
+            MatPool.get().recycle(image);
+        }
+        results.keySet().retainAll(reusedStages);
+        Result result = (start > 0 ? results.get(stages.get(start - 1)) : null);
+        if (result != null && result.image != null) {
+            working.image = MatPool.get().borrowClone(result.image);
+        }
+        working.colorSpace = (result != null ? result.colorSpace : null);
+        working.model = getSequentialWorkingModel(start);
+    }
+
+    private static String toXmlString(Serializer serializer, CvStage stage) {
+        try {
+            StringWriter sw = new StringWriter();
+            serializer.write(stage, sw);
+            return sw.toString();
+        }
+        catch (Exception e) {
+            // Cannot compare, process again.
+            return null;
+        }
+    }
+
+    /**
+     * Process one stage on the given working state and store its result.
+     * 
+     * @param stage
+     * @param retainedStages
+     * @param working
+     * @return The terminal exception thrown by the stage, if any.
+     */
+    private Exception processStage(CvStage stage, Set<CvStage> retainedStages, WorkingState working) {
+        boolean retained = (retainedStages == null || retainedStages.contains(stage));
+        Exception terminal = null;
+        // Process and time the stage and get the result.
+        long processingTimeNs = System.nanoTime();
+        Result result = null;
+        try {
+            if (!stage.isEnabled()) {
+                throw new Exception(String.format("Stage \"%s\"not enabled.", stage.getName()));
             }
-            if(stage.isEnabled() && colorSpace != null) {
-                workingColorSpace = colorSpace;
+            result = stage.process(this);
+        }
+        catch (TerminalException e) {
+            result = new Result(null, e.getOriginalException());
+            terminal = e.getOriginalException();
+            Logger.debug("Stage \""+stage.getName()+"\" throws "+e.getOriginalException());
+        }
+        catch (Exception e) {
+            result = new Result(null, e);
+            if (stage.isEnabled()) {
+                Logger.debug("Stage \""+stage.getName()+"\" throws "+e);
             }
-            // If the result image is null and there is a working image,
-            // replace the result image with a clone of the working image.
-            if (image == null) {
-                if (workingImage != null) {
-                    image = workingImage.clone();
+        }
+        processingTimeNs = System.nanoTime() - processingTimeNs;
+        addProcessingTimeNs(processingTimeNs);
+
+        Mat image = null;
+        Object model = null;
+        ColorSpace colorSpace = null;
+        if (result != null) {
+            image = result.image;
+            model = result.model;
+            colorSpace = result.colorSpace;
+        }
+        if(stage.isEnabled() && model != null) {
+            working.model = model;
+        }
+        if(stage.isEnabled() && colorSpace != null) {
+            working.colorSpace = colorSpace;
+        }
+        // If the result image is null and there is a working image,
+        // replace the result image with a clone of the working image.
+        if (image == null) {
+            if (working.image != null && retained) {
+                image = MatPool.get().borrowClone(working.image);
+            }
+        }
+        // If the result image is not null:
+        // Recycle the working image if the result image is different.
+        // Replace the working image with the result image.
+        // Clone the result image for storage, unless it is not retained.
+        else {
+            if (working.image != null && working.image != image 
+                    && !isResultImage(working.image)) {
+                // Results (returned by a stage as is) are recycled on release(). 
+                MatPool.get().recycle(working.image);
+            }
+            working.image = image;
+            image = (retained ? MatPool.get().borrowClone(image) : null);
+        }
+
+        // If the result colorSpace is null and there is a working colorSpace,
+        // replace the result colorSpace with the working colorSpace.
+        if (colorSpace == null) {
+            if (working.colorSpace != null) {
+                colorSpace = working.colorSpace;
+            }
+        }
+
+        results.put(stage, new Result(image, colorSpace, model, processingTimeNs, stage));
+        return terminal;
+    }
+
+    /**
+     * Split the pipeline into branches for {@link ExecutionMode#ParallelBranches}. A new branch starts 
+     * with each ImageRecall stage. A branch depends on the branches containing the stages it references, and on 
+     * the branches containing parameter stages that control its stages. 
+     * Branches with stages that depend on the processing order, such as image capture, actuators or working model 
+     * readers, depend on all the preceding branches.  
+     * 
+     * @return The branches, or null if the pipeline must be processed sequentially. 
+     */
+    private List<Branch> getBranches() {
+        List<Branch> branches = new ArrayList<>();
+        Map<CvStage, Branch> stageBranches = new HashMap<>();
+        Map<CvStage, Integer> stageIndices = new HashMap<>();
+        Branch branch = null;
+        for (CvStage stage : stages) {
+            if (stage.isEnabled() && stage instanceof ScriptRun) {
+                // Scripts may do anything.
+                return null;
+            }
+            if (branch == null || isBranchStart(stage)) {
+                branch = new Branch(branch);
+                branches.add(branch);
+            }
+            branch.stages.add(stage);
+            stageBranches.put(stage, branch);
+            stageIndices.put(stage, stageIndices.size());
+        }
+        for (int i = 0; i < branches.size(); i++) {
+            branch = branches.get(i);
+            for (CvStage stage : branch.stages) {
+                if (!stage.isEnabled()) {
+                    continue;
+                }
+                for (Field field : getStageReferenceFields(stage.getClass())) {
+                    CvStage referencedStage;
+                    try {
+                        referencedStage = getStage((String) field.get(stage));
+                    }
+                    catch (IllegalAccessException e) {
+                        Logger.warn(e);
+                        return null;
+                    }
+                    if (referencedStage != null) {
+                        if (stageIndices.get(referencedStage) >= stageIndices.get(stage)) {
+                            // Referencing a later stage, results would depend on timing.
+                            return null;
+                        }
+                        if (stageBranches.get(referencedStage) != branch) {
+                            branch.dependencies.add(stageBranches.get(referencedStage));
+                        }
+                    }
+                }
+                if (stage instanceof CvAbstractParameterStage) {
+                    // The parameter stage sets a property of the controlled stage, which must therefore not be 
+                    // processed before or concurrently.
+                    CvStage controlledStage = getStage(((CvAbstractParameterStage) stage).getStageName());
+                    if (controlledStage != null) {
+                        if (stageIndices.get(controlledStage) < stageIndices.get(stage)) {
+                            return null;
+                        }
+                        Branch controlledBranch = stageBranches.get(controlledStage);
+                        if (controlledBranch != branch) {
+                            controlledBranch.dependencies.add(branch);
+                        }
+                    }
                 }
+                if (stage instanceof ImageCapture || stage instanceof ImageRead || stage instanceof ActuatorWrite
+                        || stage instanceof SizeCheck || stage instanceof AffineUnwarp) {
+                    branch.orderDependent = true;
+                }
+            }
+            if (branch.orderDependent) {
+                branch.dependencies.addAll(branches.subList(0, i));
             }
-            // If the result image is not null:
-            // Release the working image if the result image is different.
-            // Replace the working image with the result image.
-            // Clone the result image for storage.
-            else {
-                if (workingImage != null && workingImage != image) {
-                    workingImage.release();
+        }
+        return branches;
+    }
+
+    private static boolean isBranchStart(CvStage stage) {
+        if (stage.isEnabled() && stage instanceof ImageRecall) {
+            String imageStageName = ((ImageRecall) stage).getImageStageName();
+            return imageStageName != null && !imageStageName.trim().isEmpty();
+        }
+        return false;
+    }
+
+    private void processBranches(List<Branch> branches, Set<CvStage> retainedStages) throws Exception {
+        Map<CvStage, Exception> terminalExceptions = new ConcurrentHashMap<>();
+        for (Branch branch : branches) {
+            CompletableFuture<?>[] dependencies = branch.dependencies.stream()
+                    .map(b -> b.done)
+                    .toArray(CompletableFuture<?>[]::new);
+            branch.done = CompletableFuture.allOf(dependencies)
+                    .thenRunAsync(() -> processBranch(branch, retainedStages, terminalExceptions), 
+                            getBranchExecutor());
+        }
+        try {
+            CompletableFuture.allOf(branches.stream()
+                    .map(b -> b.done)
+                    .toArray(CompletableFuture<?>[]::new))
+            .join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+        finally {
+            // Take over the final working state, as if processed sequentially.
+            Branch lastBranch = branches.get(branches.size() - 1);
+            for (Branch branch : branches) {
+                if (branch != lastBranch && branch.working.image != null 
+                        && !isResultImage(branch.working.image)) {
+                    MatPool.get().recycle(branch.working.image);
                 }
-                workingImage = image;
-                image = image.clone();
             }
+            working.image = lastBranch.working.image;
+            working.colorSpace = lastBranch.working.colorSpace;
+            working.model = getSequentialWorkingModel(stages.size());
+        }
+        for (CvStage stage : stages) {
+            Exception e = terminalExceptions.get(stage);
+            if (e != null) {
+                terminalException = e;
+            }
+        }
+    }
 
-            // If the result colorSpace is null and there is a working colorSpace,
-            // replace the result colorSpace with the working colorSpace.
-            if (colorSpace == null) {
-                if (workingColorSpace != null) {
-                    colorSpace = workingColorSpace;
+    private void processBranch(Branch branch, Set<CvStage> retainedStages, 
+            Map<CvStage, Exception> terminalExceptions) {
+        WorkingState working = branch.working;
+        if (branch.previous != null && !isRecallable(branch.stages.get(0))) {
+            // The recall will not replace the working image or color space, so the branch continues from the
+            // previous one.
+            branch.previous.done.join();
+            working.image = branch.previous.working.image;
+            working.colorSpace = branch.previous.working.colorSpace;
+            branch.previous.working.image = null;
+        }
+        if (branch.orderDependent) {
+            // All the preceding stages are processed.
+            working.model = getSequentialWorkingModel(stages.indexOf(branch.stages.get(0)));
+        }
+        WorkingState previousWorking = branchWorking.get();
+        branchWorking.set(working);
+        try {
+            for (CvStage stage : branch.stages) {
+                Exception e = processStage(stage, retainedStages, working);
+                if (e != null) {
+                    terminalExceptions.put(stage, e);
                 }
             }
+        }
+        finally {
+            branchWorking.set(previousWorking);
+        }
+    }
 
-            results.put(stage, new Result(image, colorSpace, model, processingTimeNs, stage));
+    /**
+     * @param stage
+     * @return True if the ImageRecall stage will replace the working image and color space. 
+     */
+    private boolean isRecallable(CvStage stage) {
+        Result result = getResult(((ImageRecall) stage).getImageStageName());
+        return result != null 
+                && !(result.model instanceof Exception) 
+                && result.image != null 
+                && result.colorSpace != null;
+    }
+
+    /**
+     * @param stageCount
+     * @return The working model as it would be after sequentially processing the given number of stages.
+     */
+    private Object getSequentialWorkingModel(int stageCount) {
+        Object model = null;
+        for (CvStage stage : stages.subList(0, stageCount)) {
+            Result result = results.get(stage);
+            if (stage.isEnabled() && result != null && result.model != null) {
+                model = result.model;
+            }
         }
-        if (terminalException != null) {
-            throw (terminalException);
+        return model;
+    }
+
+    private static synchronized ExecutorService getBranchExecutor() {
+        if (branchExecutor == null) {
+            branchExecutor = Executors.newCachedThreadPool((runnable) -> {
+                Thread thread = new Thread(runnable, "CvPipeline branch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return branchExecutor;
+    }
+
+    private boolean isResultImage(Mat image) {
+        for (Result result : results.values()) {
+            if (result.image == image) {
+                return true;
+            }
         }
+        return false;
     }
 
     /**
@@ -348,25 +988,35 @@ public class CvPipeline implements AutoCloseable {
     /**
      * Release any temporary resources associated with the processing of the pipeline. Should be
      * called when the pipeline is no longer needed. This is primarily to release retained native
-     * resources from OpenCV.
+     * resources from OpenCV. The images are recycled into the {@link MatPool}, so they must no 
+     * longer be used. 
      */
     public void release() {
-        if (workingImage != null) {
-            workingImage.release();
-            workingImage = null;
+        // A stage may return the image of another stage, so make sure each is only recycled once.  
+        Set<Mat> images = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (working.image != null) {
+            images.add(working.image);
+            working.image = null;
         }
         for (Result result : results.values()) {
             if (result.image != null) {
-                result.image.release();
+                images.add(result.image);
             }
         }
-        workingModel = null;
+        for (Mat image : images) {
+            MatPool.get().recycle(image);
+        }
+        working.model = null;
         results.clear();
+        processedStages = null;
     }
     
     @Override
     public void close() throws IOException {
         release();
+        if (copySource != null) {
+            copySource.recycleCopy(this);
+        }
     }
     
     @Override
@@ -440,6 +1090,69 @@ public class CvPipeline implements AutoCloseable {
             throw new CloneNotSupportedException(e.getMessage());
         }
     }
+
+    /**
+     * Indicate that the properties of the stages were modified, so {@link #borrowCopy()} no longer hands out 
+     * copies made before. Adding, inserting or removing stages does this implicitly, the pipeline editor calls it 
+     * after each edit. 
+     */
+    public void setStagesModified() {
+        modificationCount++;
+    }
+
+    /**
+     * Borrow a copy of this pipeline, for processing it without affecting this one. The copy must be closed after 
+     * use, which hands it back for reuse by the next call, unless this pipeline was modified in the meantime. 
+     * Only the first copy (and concurrently used ones) is cloned through XML. The callers may set pipeline 
+     * properties on the copy, but must not modify its stages. 
+     * 
+     * @return
+     * @throws CloneNotSupportedException
+     */
+    public CvPipeline borrowCopy() throws CloneNotSupportedException {
+        int modificationCount = this.modificationCount;
+        synchronized (idleCopies) {
+            if (idleCopiesModificationCount != modificationCount) {
+                idleCopies.clear();
+                idleCopiesModificationCount = modificationCount;
+            }
+            CvPipeline copy = idleCopies.pollFirst();
+            if (copy != null) {
+                copy.copyIdle = false;
+                return copy;
+            }
+        }
+        CvPipeline copy = clone();
+        copy.copySource = this;
+        copy.copyModificationCount = modificationCount;
+        return copy;
+    }
+
+    /**
+     * Take back a closed copy, reset to its original state. 
+     * 
+     * @param copy
+     */
+    private void recycleCopy(CvPipeline copy) {
+        synchronized (idleCopies) {
+            if (copy.copyIdle
+                    || copy.copyModificationCount != modificationCount 
+                    || idleCopiesModificationCount != modificationCount
+                    || idleCopies.size() >= maxIdleCopies) {
+                return;
+            }
+            copy.resetToDefaults();
+            copy.resetReusedPipeline();
+            copy.setLastCapturedImage((BufferedImage) null);
+            copy.currentShot = 0;
+            copy.resultRetention = ResultRetention.Full;
+            copy.retainedResultNames = Collections.emptySet();
+            copy.executionMode = ExecutionMode.Sequential;
+            copy.captureFrozen = false;
+            copy.copyIdle = true;
+            idleCopies.push(copy);
+        }
+    }
     
     public Object getProperty(String name) {
         return properties.get(name);
@@ -456,6 +1169,7 @@ public class CvPipeline implements AutoCloseable {
     }
 
     public void resetReusedPipeline() {
+        release();
         properties = new HashMap<>();
         compositeShots = new ArrayList<>();
     }
@@ -469,13 +1183,30 @@ public class CvPipeline implements AutoCloseable {
     }
 
     public BufferedImage getLastCapturedImage() {
+        if (lastCapturedImage == null && lastCapturedMat != null) {
+            lastCapturedImage = OpenCvUtils.toBufferedImage(lastCapturedMat);
+        }
         return lastCapturedImage;
     }
 
     public void setLastCapturedImage(BufferedImage lastCapturedImage) {
+        if (lastCapturedMat != null) {
+            MatPool.get().recycle(lastCapturedMat);
+            lastCapturedMat = null;
+        }
         this.lastCapturedImage = lastCapturedImage;
     }
 
+    /**
+     * Set the last captured image as a Mat, which is only converted to a BufferedImage if requested.
+     * 
+     * @param lastCapturedImage The Mat, which is copied.
+     */
+    public void setLastCapturedImage(Mat lastCapturedImage) {
+        setLastCapturedImage((BufferedImage) null);
+        lastCapturedMat = MatPool.get().borrowClone(lastCapturedImage);
+    }
+
     public abstract class PipelineShot {
         private Map<String, Object> properties;
         private final int index; 
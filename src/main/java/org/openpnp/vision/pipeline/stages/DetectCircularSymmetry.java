@@ -24,6 +24,9 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 import org.opencv.core.Mat;
 import org.openpnp.model.Length;
@@ -324,6 +327,13 @@ public class DetectCircularSymmetry extends CvStage {
                 n++;
             }
         }
+        void add(ScoreRange other) {
+            minScore = Math.min(minScore, other.minScore);
+            maxScore = Math.max(maxScore, other.maxScore);
+            finalScore = Math.max(finalScore, other.finalScore);
+            sumScore += other.sumScore;
+            n += other.n;
+        }
         private double scoreHeat(double score) {
             double range = maxScore - minScore;
             double avg = (sumScore/n - minScore)/range;
@@ -380,6 +390,243 @@ public class DetectCircularSymmetry extends CvStage {
      * The candidate targets kept for iteration, as a factor of the requested target count.
      */
     private static final int iterationTargetsFactor = 2;
+    /**
+     * The minimum number of pixel samples a candidate scan task must handle, before it is split in two.
+     */
+    private static final long parallelSamplesThreshold = 1L<<18;
+
+    /**
+     * Scans a band of candidate center rows for circular symmetry. Splits itself across the ForkJoinPool,
+     * if the band is large enough. Each task has its own histograms, the results are merged in row order,
+     * so the outcome is the same as with a single-threaded scan.
+     */
+    private static class CandidateScan extends RecursiveTask<CandidateScan> {
+        /**
+         * The read-only data of one sampling pass, shared by all the tasks.
+         */
+        static class Pass {
+            byte[] pixelSamples;
+            int width;
+            int channels;
+            int x0SearchRange;
+            int y0SearchRange;
+            int wSearchRange;
+            int xSearch;
+            int ySearch;
+            int rSearchSq;
+            int subSampling;
+            int r;
+            int minDiameter;
+            int rDim;
+            int angleDim;
+            int histogramDim;
+            int [] rRing;
+            int samples;
+            int [] idxPixelData;
+            int [] idxHistogram;
+            int [] histogramN;
+            double [] histogramFactor;
+            SymmetryScore symmetryScore;
+            double xOffset;
+            double yOffset;
+            // Optional maps, each task writes its own rows.
+            double [] scoreMap;
+            int [] radiusMap;
+            double [] xOffsetMap;
+            double [] yOffsetMap;
+            int wSearchRangeMap;
+        }
+
+        private final Pass pass;
+        private final int yis0;
+        private final int yis1;
+
+        double scoreBest = Double.NEGATIVE_INFINITY;
+        double xBest = 0;
+        double yBest = 0;
+        int rContrastBest = 0;
+        final ScoreRange scoreRange = new ScoreRange();
+
+        CandidateScan(Pass pass, int yis0, int yis1) {
+            this.pass = pass;
+            this.yis0 = yis0;
+            this.yis1 = yis1;
+        }
+
+        @Override
+        protected CandidateScan compute() {
+            long rowSamples = (long)pass.samples*((pass.wSearchRange + pass.subSampling - 1)/pass.subSampling);
+            if (yis1 - yis0 > 1 && (yis1 - yis0)*rowSamples >= parallelSamplesThreshold*2) {
+                int yisSplit = (yis0 + yis1)/2;
+                CandidateScan upper = new CandidateScan(pass, yis0, yisSplit);
+                CandidateScan lower = new CandidateScan(pass, yisSplit, yis1);
+                lower.fork();
+                upper.compute();
+                lower.join();
+                merge(upper);
+                merge(lower);
+            }
+            else {
+                scan();
+            }
+            return this;
+        }
+
+        private void merge(CandidateScan other) {
+            scoreRange.add(other.scoreRange);
+            // Strictly better only, so the first best in row order wins, as in a single-threaded scan.
+            if (scoreBest < other.scoreBest) {
+                scoreBest = other.scoreBest;
+                xBest = other.xBest;
+                yBest = other.yBest;
+                rContrastBest = other.rContrastBest;
+            }
+        }
+
+        private void scan() {
+            final Pass p = pass;
+            final int channels = p.channels;
+            final int rDim = p.rDim;
+            final int angleDim = p.angleDim;
+            final int[] histogramN = p.histogramN;
+            final double[] histogramFactor = p.histogramFactor;
+            long [] histogramSum = new long[p.histogramDim];
+            long [] histogramSumSq = new long[p.histogramDim];
+            double [] segmentValues = new double[angleDim];
+            double [] sumAcross = new double[channels];
+            double [] sumSqAcross = new double[channels];
+            double [] lastAvg = new double[channels];
+            int [] nAcross = new int[channels];
+            for (int yis = yis0, yi = yis0*p.subSampling; yis < yis1; yi += p.subSampling, yis++) {
+                for (int xi = 0, xis = 0, idxOffset = (yi*p.width + p.x0SearchRange) * channels;
+                        xi < p.wSearchRange;
+                        xi += p.subSampling, xis++, idxOffset += channels*p.subSampling) {
+                    int distSq = (xi - p.xSearch)*(xi - p.xSearch) + (yi - p.ySearch)*(yi - p.ySearch);
+                    if (distSq <= p.rSearchSq) {
+                        Arrays.fill(histogramSum, 0);
+                        Arrays.fill(histogramSumSq, 0);
+                        for (int i = 0; i < p.samples; i++) {
+                            int idxPixel = p.idxPixelData[i];
+                            int idxHisto = p.idxHistogram[i];
+                            int pixel = Byte.toUnsignedInt(p.pixelSamples[idxOffset + idxPixel]);
+                            histogramSum[idxHisto] += pixel;
+                            histogramSumSq[idxHisto] += pixel*pixel;
+                        }
+
+                        // Analyze the ring sums to find the circular symmetry score, which is ratio between radial
+                        // and circular variance.
+                        // We use the naive formula
+                        //    Var = (SumSq − (Sum × Sum) / n) / (n − 1),
+                        // See https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#Na%C3%AFve_algorithm
+                        // But we weigh all our variances by the pixel count, so we do not divide by (n - 1).
+                        final double div0Guard = 0.1;
+                        double score;
+                        double contrastBest = Double.NEGATIVE_INFINITY;
+                        int riContrastBest = 0;
+                        double varianceRing = 0;
+                        Arrays.fill(sumAcross, 0);
+                        Arrays.fill(sumSqAcross, 0);
+                        Arrays.fill(lastAvg, 0);
+                        Arrays.fill(nAcross, 0);
+                        for (int idxR = 0; idxR < rDim; idxR++) {
+                            double contrast = 0;
+                            for (int ch = 0; ch < channels; ch++) {
+                                double sumRing = 0;
+                                double sumSqRing = 0;
+
+                                int nRing = 0;
+                                switch (p.symmetryScore) {
+                                    case OverallVarianceVsRingVarianceSum:
+                                    {
+                                        int idxHisto = (idxR*angleDim + 0)*channels + ch;
+                                        sumRing += histogramSum[idxHisto];
+                                        sumSqRing += histogramSumSq[idxHisto];
+                                        nRing += histogramN[idxHisto];
+                                        double variance = (sumSqRing - Math.pow(sumRing, 2)/nRing);
+                                        varianceRing += variance;
+                                        sumAcross[ch] += sumRing;
+                                        sumSqAcross[ch] += sumSqRing;
+                                    }
+                                    break;
+                                    case RingAvgeragesVarianceVsRingVarianceSum:
+                                    {
+                                        for (int idxAngle = 0; idxAngle < angleDim; idxAngle++) {
+                                            int idxHisto = (idxR*angleDim + idxAngle)*channels + ch;
+                                            int n = histogramN[idxHisto];
+                                            double segmentAvg = histogramSum[idxHisto]*histogramFactor[idxHisto];
+                                            double segmentAvgSq = Math.pow(segmentAvg, 2);
+                                            sumRing += histogramSum[idxHisto];
+                                            sumSqRing += histogramSumSq[idxHisto];
+                                            sumSqAcross[ch] += segmentAvgSq*n;
+                                            nRing += n;
+                                        }
+                                        sumAcross[ch] += sumRing;
+                                        double variance = (sumSqRing - Math.pow(sumRing, 2)/nRing);
+                                        varianceRing += variance;
+                                    }
+                                    break;
+                                    case RingMedianVarianceVsRingVarianceSum:
+                                    {
+                                        int slotAngle = 0;
+                                        for (int idxAngle = 0; idxAngle < angleDim; idxAngle++) {
+                                            int idxHisto = (idxR*angleDim + idxAngle)*channels + ch;
+                                            int n = histogramN[idxHisto];
+                                            if (n > 0) {
+                                                double segmentAvg = histogramSum[idxHisto]*histogramFactor[idxHisto];
+                                                segmentValues[slotAngle++] = segmentAvg;
+                                                sumRing += histogramSum[idxHisto];
+                                                sumSqRing += histogramSumSq[idxHisto];
+                                                nRing += n;
+                                            }
+                                        }
+                                        Arrays.sort(segmentValues, 0, slotAngle);
+                                        double median = (segmentValues[Math.max(0, slotAngle/2 - 1)] + segmentValues[slotAngle/2])*0.5;
+                                        double medianSq = Math.pow(median, 2);
+                                        sumAcross[ch] += median*nRing;
+                                        sumSqAcross[ch] += medianSq*nRing;
+                                        double variance = (sumSqRing - Math.pow(sumRing, 2)/nRing);
+                                        varianceRing += variance;
+                                    }
+                                    break;
+                                }
+                                nAcross[ch] += nRing;
+                                double avg1 = sumRing/nRing;
+                                contrast += Math.pow(lastAvg[ch] - avg1, 2);
+                                lastAvg[ch] = avg1;
+                            }
+                            if (p.rRing[idxR]*2 >= p.minDiameter) {
+                                if (contrastBest < contrast) {
+                                    contrastBest = contrast;
+                                    riContrastBest = p.rRing[idxR];
+                                }
+                            }
+                        }
+                        double varianceAcross = 0;
+                        for (int ch = 0; ch < channels; ch++) {
+                            varianceAcross += (sumSqAcross[ch] - Math.pow(sumAcross[ch], 2) / nAcross[ch]);
+                        }
+                        score = (varianceAcross + div0Guard)/(varianceRing + div0Guard);
+                        scoreRange.add(score);
+                        if (scoreBest < score) {
+                            scoreBest = score;
+                            xBest = xi + p.x0SearchRange + p.r + 0.5 + p.xOffset;
+                            yBest = yi + p.y0SearchRange + p.r + 0.5 + p.yOffset;
+                            rContrastBest = riContrastBest;
+                        }
+                        if (p.scoreMap != null) {
+                            int idx = yis*p.wSearchRangeMap + xis;
+                            if (p.scoreMap[idx] < score) {
+                                p.scoreMap[idx] = score;
+                                p.radiusMap[idx] = riContrastBest;
+                                p.xOffsetMap[idx] = p.xOffset;
+                                p.yOffsetMap[idx] = p.yOffset;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
 
     /**
      * Find the circle that has its center at the greatest circular symmetry in the given image,
@@ -498,14 +745,38 @@ public class DetectCircularSymmetry extends CvStage {
         int [] idxPixelData = new int[maxPixelDataDim]; // Index into the pixel data, relative from the left upper corner.
         int [] idxHistogram = new int[maxPixelDataDim]; // Index into the result histogram.
         int [] rRing = new int [rDim];
-        double [] segmentValues = new double[angleDim]; 
         for (int ri = 0; ri < rDim; ri++) {
             rRing[ri] = r0 + ri*subSamplingEff;
         }
         int [] histogramN = new int[histogramDim];
         double [] histogramFactor = new double[histogramDim];
-        long [] histogramSum = new long[histogramDim]; 
-        long [] histogramSumSq = new long[histogramDim]; 
+        CandidateScan.Pass scan = new CandidateScan.Pass();
+        scan.pixelSamples = pixelSamples;
+        scan.width = width;
+        scan.channels = channels;
+        scan.x0SearchRange = x0SearchRange;
+        scan.y0SearchRange = y0SearchRange;
+        scan.wSearchRange = wSearchRange;
+        scan.xSearch = xSearch;
+        scan.ySearch = ySearch;
+        scan.rSearchSq = rSearchSq;
+        scan.subSampling = subSamplingEff;
+        scan.r = r;
+        scan.minDiameter = minDiameter;
+        scan.rDim = rDim;
+        scan.angleDim = angleDim;
+        scan.histogramDim = histogramDim;
+        scan.rRing = rRing;
+        scan.idxPixelData = idxPixelData;
+        scan.idxHistogram = idxHistogram;
+        scan.histogramN = histogramN;
+        scan.histogramFactor = histogramFactor;
+        scan.symmetryScore = symmetryScore;
+        scan.scoreMap = scoreMap;
+        scan.radiusMap = radiusMap;
+        scan.xOffsetMap = xOffsetMap;
+        scan.yOffsetMap = yOffsetMap;
+        scan.wSearchRangeMap = wSearchRangeMap;
 
         // Outer super-sampling loop. 
         for (double xOffset : superSamplingOffsets) {
@@ -545,139 +816,23 @@ public class DetectCircularSymmetry extends CvStage {
                     histogramFactor[i] = histogramN[i] > 0 ? 1.0/histogramN[i] : 0;
                 }
 
-                // Now iterate through all the pixel offsets and find the maximum circular symmetry.
-                for (int yi = 0, yis = 0; yi < hSearchRange; yi += subSamplingEff, yis++) {
-                    for (int xi = 0, xis = 0, idxOffset = (yi*width + x0SearchRange) * channels; 
-                            xi < wSearchRange; 
-                            xi += subSamplingEff, xis++, idxOffset += channels*subSamplingEff) {
-                        int distSq = (xi - xSearch)*(xi - xSearch) + (yi - ySearch)*(yi - ySearch);
-                        if (distSq <= rSearchSq) {
-                            Arrays.fill(histogramSum, 0);
-                            Arrays.fill(histogramSumSq, 0);
-                            for (int i = 0; i < samples; i++) {
-                                int idxPixel = idxPixelData[i];
-                                int idxHisto = idxHistogram[i];
-                                int pixel = Byte.toUnsignedInt(pixelSamples[idxOffset + idxPixel]);
-                                histogramSum[idxHisto] += pixel;
-                                histogramSumSq[idxHisto] += pixel*pixel;
-                            }
-
-                            // Analyze the ring sums to find the circular symmetry score, which is ratio between radial 
-                            // and circular variance.
-                            // We use the naive formula
-                            //    Var = (SumSq − (Sum × Sum) / n) / (n − 1), 
-                            // See https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#Na%C3%AFve_algorithm
-                            // But we weigh all our variances by the pixel count, so we do not divide by (n - 1).
-                            final double div0Guard = 0.1;
-                            double score;
-                            double contrastBest = Double.NEGATIVE_INFINITY;
-                            int riContrastBest = 0;
-                            double varianceRing = 0;
-                            double [] sumAcross = new double[channels];
-                            double [] sumSqAcross = new double[channels];
-                            double [] lastAvg = new double[channels];
-                            int [] nAcross = new int[channels];
-                            for (int idxR = 0; idxR < rDim; idxR++) {
-                                double contrast = 0;
-                                for (int ch = 0; ch < channels; ch++) {
-                                    double sumRing = 0;
-                                    double sumSqRing = 0;
-
-                                    int nRing = 0;
-                                    switch (symmetryScore) { 
-                                        case OverallVarianceVsRingVarianceSum:
-                                        {
-                                            int idxHisto = (idxR*angleDim + 0)*channels + ch;
-                                            sumRing += histogramSum[idxHisto];
-                                            sumSqRing += histogramSumSq[idxHisto];
-                                            nRing += histogramN[idxHisto];
-                                            double variance = (sumSqRing - Math.pow(sumRing, 2)/nRing);
-                                            varianceRing += variance;
-                                            sumAcross[ch] += sumRing;
-                                            sumSqAcross[ch] += sumSqRing;
-                                        }
-                                        break;
-                                        case RingAvgeragesVarianceVsRingVarianceSum:
-                                        {
-                                            for (int idxAngle = 0; idxAngle < angleDim; idxAngle++) {
-                                                int idxHisto = (idxR*angleDim + idxAngle)*channels + ch;
-                                                int n = histogramN[idxHisto];
-                                                double segmentAvg = histogramSum[idxHisto]*histogramFactor[idxHisto];
-                                                double segmentAvgSq = Math.pow(segmentAvg, 2);
-                                                sumRing += histogramSum[idxHisto];
-                                                sumSqRing += histogramSumSq[idxHisto];
-                                                sumSqAcross[ch] += segmentAvgSq*n;
-                                                nRing += n;
-                                            }
-                                            sumAcross[ch] += sumRing;
-                                            double variance = (sumSqRing - Math.pow(sumRing, 2)/nRing);
-                                            varianceRing += variance;
-                                        }
-                                        break;
-                                        case RingMedianVarianceVsRingVarianceSum: 
-                                        {
-                                            int slotAngle = 0; 
-                                            for (int idxAngle = 0; idxAngle < angleDim; idxAngle++) {
-                                                int idxHisto = (idxR*angleDim + idxAngle)*channels + ch;
-                                                int n = histogramN[idxHisto];
-                                                if (n > 0) {
-                                                    double segmentAvg = histogramSum[idxHisto]*histogramFactor[idxHisto];
-                                                    //double segmentAvgSq = Math.pow(segmentAvg, 2);
-                                                    segmentValues[slotAngle++] = segmentAvg;
-                                                    sumRing += histogramSum[idxHisto];
-                                                    sumSqRing += /*segmentAvgSq*n;*/histogramSumSq[idxHisto];
-                                                    nRing += n;
-                                                }
-                                            }
-                                            Arrays.sort(segmentValues, 0, slotAngle);
-                                            double median = (segmentValues[Math.max(0, slotAngle/2 - 1)] + segmentValues[slotAngle/2])*0.5;
-                                            double medianSq = Math.pow(median, 2);
-                                            sumAcross[ch] += median*nRing;
-                                            sumSqAcross[ch] += medianSq*nRing;
-                                            double variance = (sumSqRing - Math.pow(sumRing, 2)/nRing);
-                                            varianceRing += variance;
-                                        }
-                                        break;
-                                    }
-                                    nAcross[ch] += nRing;
-                                    double avg1 = sumRing/nRing;
-                                    contrast += Math.pow(lastAvg[ch] - avg1, 2);
-                                    lastAvg[ch] = avg1;
-                                }
-                                if (rRing[idxR]*2 >= minDiameter) {
-                                    if (contrastBest < contrast) {
-                                        contrastBest = contrast;
-                                        riContrastBest = rRing[idxR];
-                                    }
-                                }
-                            }
-                            double varianceAcross = 0;
-                            for (int ch = 0; ch < channels; ch++) {
-                                varianceAcross += (sumSqAcross[ch] - Math.pow(sumAcross[ch], 2) / nAcross[ch]);
-                            }
-                            score = (varianceAcross + div0Guard)/(varianceRing + div0Guard);
-                            scoreRange.add(score);
-                            if (scoreBestSampling < score) {
-                                scoreBestSampling = score;
-                                xBestSampling = xi + x0SearchRange + r + 0.5 + xOffset;
-                                yBestSampling = yi + y0SearchRange + r + 0.5 + yOffset;
-                                if (scoreBest < score) {
-                                    scoreBest = score;
-                                    xBest = xBestSampling;
-                                    yBest = yBestSampling;
-                                    rContrastBest = riContrastBest;
-                                }
-                            }
-                            if (scoreMap != null) {
-                                int idx = yis*wSearchRangeMap + xis;
-                                if (scoreMap[idx] < score) {
-                                    scoreMap[idx] = score;
-                                    radiusMap[idx] = riContrastBest;
-                                    xOffsetMap[idx] = xOffset;
-                                    yOffsetMap[idx] = yOffset;
-                                }
-                            }
-                        }
+                // Now iterate through all the pixel offsets and find the maximum circular symmetry. The candidate rows
+                // are split across the ForkJoinPool, each task using its own histograms.
+                scan.xOffset = xOffset;
+                scan.yOffset = yOffset;
+                scan.samples = samples;
+                CandidateScan result = ForkJoinPool.commonPool().invoke(
+                        new CandidateScan(scan, 0, (hSearchRange + subSamplingEff - 1)/subSamplingEff));
+                scoreRange.add(result.scoreRange);
+                if (scoreBestSampling < result.scoreBest) {
+                    scoreBestSampling = result.scoreBest;
+                    xBestSampling = result.xBest;
+                    yBestSampling = result.yBest;
+                    if (scoreBest < result.scoreBest) {
+                        scoreBest = result.scoreBest;
+                        xBest = result.xBest;
+                        yBest = result.yBest;
+                        rContrastBest = result.rContrastBest;
                     }
                 }
                 if (DEBUG >= 1) {
@@ -756,15 +911,43 @@ public class DetectCircularSymmetry extends CvStage {
                 if (finalSamplingPass) {
                     samplingFiltered.addAll(maximaFiltered);
                 }
-                else {
+                else if (diagnostics || heatMap) {
                     // For each local maxima...
                     for (SymmetryCircle localBest : maximaFiltered) {
                         // ... recursion into finer subSampling and local search.
                         int localSearchRange = subSamplingEff*iterationRadius;
-                        List<CvStage.Result.Circle> localRet = findCircularSymmetry(image, (int)localBest.x, (int)localBest.y, minDiameter, maxDiameter, 
+                        List<CvStage.Result.Circle> localRet = findCircularSymmetry(image, (int)localBest.x, (int)localBest.y, minDiameter, maxDiameter,
                                 localSearchRange, localSearchRange, localSearchRange, 1,
                                 minSymmetry, corrSymmetry, subSamplingEff/iterationDivision, superSampling, symmetryScore, diagnostics, heatMap, scoreRange);
-                        if (localRet.size() > 0) { 
+                        if (localRet.size() > 0) {
+                            samplingFiltered.add((SymmetryCircle) localRet.get(0));
+                        }
+                    }
+                }
+                else {
+                    // Without diagnostics painting into the image, the local searches are independent and can
+                    // run concurrently, each with its own score range.
+                    final int localSearchRange = subSamplingEff*iterationRadius;
+                    final int minDiameterLocal = minDiameter;
+                    final int maxDiameterLocal = maxDiameter;
+                    final int subSamplingLocal = subSamplingEff/iterationDivision;
+                    final int superSamplingLocal = superSampling;
+                    List<ForkJoinTask<List<CvStage.Result.Circle>>> localSearches = new ArrayList<>();
+                    List<ScoreRange> localScoreRanges = new ArrayList<>();
+                    for (SymmetryCircle localBest : maximaFiltered) {
+                        ScoreRange localScoreRange = new ScoreRange();
+                        localScoreRange.finalScore = scoreRange.finalScore;
+                        localScoreRanges.add(localScoreRange);
+                        localSearches.add(ForkJoinPool.commonPool().submit(() ->
+                            findCircularSymmetry(image, (int)localBest.x, (int)localBest.y, minDiameterLocal, maxDiameterLocal,
+                                localSearchRange, localSearchRange, localSearchRange, 1,
+                                minSymmetry, corrSymmetry, subSamplingLocal, superSamplingLocal, symmetryScore, false, false,
+                                localScoreRange)));
+                    }
+                    for (int i = 0; i < localSearches.size(); i++) {
+                        List<CvStage.Result.Circle> localRet = localSearches.get(i).join();
+                        scoreRange.add(localScoreRanges.get(i));
+                        if (localRet.size() > 0) {
                             samplingFiltered.add((SymmetryCircle) localRet.get(0));
                         }
                     }
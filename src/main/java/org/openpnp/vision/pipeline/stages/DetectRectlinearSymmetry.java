@@ -23,6 +23,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import org.opencv.core.Mat;
 import org.opencv.core.RotatedRect;
@@ -486,6 +488,213 @@ public class DetectRectlinearSymmetry extends CvStage {
      * Some extra debugging stuff used for development, that might be useful again in the future. DEBUG has levels 1 and 2.  
      */
     static final int DEBUG = 0;
+    /**
+     * The minimum number of pixel samples an angle scan task must handle, before it is split in two.
+     */
+    private static final long parallelSamplesThreshold = 1L<<16;
+
+    /**
+     * Scans a range of trial angles for rectlinear cross-section contrast. Splits itself across the ForkJoinPool, 
+     * if the range is large enough. Each task has its own cross-section buffers, the results are merged in angle 
+     * order, so the outcome is the same as with a single-threaded scan. 
+     */
+    private static class AngleScan extends RecursiveTask<AngleScan> {
+        /**
+         * The read-only data of the scan, shared by all the tasks.
+         */
+        static class Pass {
+            Mat image;
+            int channels;
+            double [] samples;
+            boolean [] samplesMasked;
+            int wSamples;
+            int hSamples;
+            int x0Pixels;
+            int y0Pixels;
+            int cxPixels;
+            int cyPixels;
+            int subSampling;
+            int superSampling;
+            int wCross;
+            int hCross;
+            double cxCross;
+            double cyCross;
+            double [] kernel;
+            double [] angles;
+            // Each task writes its own angles.
+            double [] angleContrast;
+            double angleStep;
+            double a0;
+            double a1;
+        }
+
+        private final Pass pass;
+        private final int i0;
+        private final int i1;
+
+        double scoreBest = Double.NEGATIVE_INFINITY;
+        double angleBest = Double.NaN;
+        double [] xBestCrossSection;
+        double [] yBestCrossSection;
+        double [] xBestCrossSectionMasked;
+        double [] yBestCrossSectionMasked;
+
+        AngleScan(Pass pass, int i0, int i1) {
+            this.pass = pass;
+            this.i0 = i0;
+            this.i1 = i1;
+        }
+
+        @Override
+        protected AngleScan compute() {
+            long angleSamples = (long)pass.wSamples*pass.hSamples;
+            if (i1 - i0 > 1 && (i1 - i0)*angleSamples >= parallelSamplesThreshold*2) {
+                int iSplit = (i0 + i1)/2;
+                AngleScan lower = new AngleScan(pass, i0, iSplit);
+                AngleScan upper = new AngleScan(pass, iSplit, i1);
+                upper.fork();
+                lower.compute();
+                upper.join();
+                merge(lower);
+                merge(upper);
+            }
+            else {
+                scan();
+            }
+            return this;
+        }
+
+        private void merge(AngleScan other) {
+            // Strictly better only, so the first best in angle order wins, as in a single-threaded scan.
+            if (scoreBest < other.scoreBest) {
+                scoreBest = other.scoreBest;
+                angleBest = other.angleBest;
+                xBestCrossSection = other.xBestCrossSection;
+                yBestCrossSection = other.yBestCrossSection;
+                xBestCrossSectionMasked = other.xBestCrossSectionMasked;
+                yBestCrossSectionMasked = other.yBestCrossSectionMasked;
+            }
+        }
+
+        private void scan() {
+            final Pass p = pass;
+            final int channels = p.channels;
+            final int subSampling = p.subSampling;
+            final int wCross = p.wCross;
+            final int hCross = p.hCross;
+            double [] xCrossSection = new double[wCross*channels];
+            double [] yCrossSection = new double[hCross*channels];
+            double [] xCrossSectionN = new double[wCross];
+            double [] yCrossSectionN = new double[hCross];
+            double [] xCrossSectionMasked = new double[wCross];
+            double [] yCrossSectionMasked = new double[hCross];
+            double [] xCrossSectionFiltered = new double[wCross*channels];
+            double [] yCrossSectionFiltered = new double[hCross*channels];
+            for (int i = i0; i < i1; i++) {
+                double angle = p.angles[i];
+                // Note, this is the reverse rotation, i.e. angle is negative.
+                double s = p.superSampling*Math.sin(-angle)/subSampling;
+                double c = p.superSampling*Math.cos(-angle)/subSampling;
+                // Reset cross-sections. 
+                Arrays.fill(xCrossSection, 0);
+                Arrays.fill(yCrossSection, 0);
+                Arrays.fill(xCrossSectionN, 0);
+                Arrays.fill(yCrossSectionN, 0);
+                Arrays.fill(xCrossSectionMasked, 0);
+                Arrays.fill(yCrossSectionMasked, 0);
+                // Calculate the cross-sections from the pixel samples.
+                for (int ys = 0, dy = -p.cyPixels, is = 0; ys < p.hSamples; ys++, dy += subSampling) {
+                    double sy = s*dy;
+                    double cy = c*dy;
+                    for (int xs = 0, dx = -p.cxPixels; xs < p.wSamples; xs++, dx += subSampling, is++) {
+                        double sx = s*dx;
+                        double cx = c*dx;
+                        // Note: this is a left-handed coordinate system, i.e. y pointing down.
+                        double xCross = cx + sy + p.cxCross;
+                        double yCross = -sx + cy + p.cyCross;
+                        int ixCross = (int) Math.round(xCross);
+                        int iyCross = (int) Math.round(yCross);
+                        double xWeight1 = xCross + 0.5 - ixCross;
+                        double xWeight0 = 1 - xWeight1;
+                        double yWeight1 = yCross + 0.5 - iyCross;
+                        double yWeight0 = 1 - yWeight1;
+                        if (iyCross > 1 && iyCross < hCross) {
+                            if (ixCross > 1 && ixCross < wCross) {
+                                for (int ch = 0; ch < channels; ch++) {
+                                    int xai = ixCross*channels + ch;
+                                    int yai = iyCross*channels + ch;
+                                    double pixel = p.samples[is*channels + ch];
+                                    xCrossSection[xai] += pixel*xWeight1;
+                                    xCrossSection[xai - channels] += pixel*xWeight0;
+                                    yCrossSection[yai] += pixel*yWeight1;
+                                    yCrossSection[yai - channels] += pixel*yWeight0;
+                                    if (DEBUG >= 2) {
+                                        if (Math.abs(angle - (p.a0+p.a1)/2) < p.angleStep) {
+                                            byte [] pixelData = new byte[channels];
+                                            p.image.get(p.y0Pixels + ys*subSampling, p.x0Pixels + xs*subSampling, pixelData);
+                                            if (ch == 2) {
+                                                pixelData[ch] = (byte)(127.0*ixCross/wCross + pixelData[ch]/2);
+                                            }
+                                            else if (ch == 1) {
+                                                pixelData[ch] = (byte)(127.0*iyCross/hCross + pixelData[ch]/2);
+                                            }
+                                            p.image.put(p.y0Pixels + ys*subSampling, p.x0Pixels + xs*subSampling, pixelData);
+                                        }
+                                    }
+                                }
+                                xCrossSectionN[ixCross] += xWeight1;
+                                xCrossSectionN[ixCross - 1] += xWeight0;
+                                yCrossSectionN[iyCross] += yWeight1;
+                                yCrossSectionN[iyCross - 1] += yWeight0;
+                                if (p.samplesMasked[is]) {
+                                    xCrossSectionMasked[ixCross] += xWeight1;
+                                    xCrossSectionMasked[ixCross - 1] += xWeight0;
+                                    yCrossSectionMasked[iyCross] += yWeight1;
+                                    yCrossSectionMasked[iyCross - 1] += yWeight0;
+                                }
+                            }
+                        }
+                    }
+                }
+                // Normalize
+                for (int x = 0; x < wCross; x++) {
+                    if (xCrossSectionN[x] > 0) {
+                        for (int ch = 0; ch < channels; ch++) {
+                            xCrossSection[x*channels + ch] /= xCrossSectionN[x];
+                        }
+                    }
+                }
+                for (int y = 0; y < hCross; y++) {
+                    if (yCrossSectionN[y] > 0) {
+                        for (int ch = 0; ch < channels; ch++) {
+                            yCrossSection[y*channels + ch] /= yCrossSectionN[y];
+                        }
+                    }
+                }
+                // We're using a gaussian kernel to get rid of sampling interferences especially at the 45° step angles.
+                KernelUtils.applyKernel(channels, wCross, xCrossSection, p.kernel, xCrossSectionFiltered); 
+                KernelUtils.applyKernel(channels, hCross, yCrossSection, p.kernel, yCrossSectionFiltered); 
+                // Analyze cross-sections contrast.
+                double sumContrast = 
+                        sumContrast(channels, wCross, xCrossSectionFiltered, xCrossSectionN)
+                        + sumContrast(channels, hCross, yCrossSectionFiltered, yCrossSectionN);
+                if (DEBUG >= 1) {
+                    System.out.println("subSampling "+subSampling+(p.superSampling > 1 ? " superSampling "+p.superSampling : "")
+                            +" angle "+Math.toDegrees(angle)+"° contrast "+sumContrast);
+                }
+                p.angleContrast[i] = sumContrast;
+                // Take the best:
+                if (scoreBest < sumContrast) {
+                    scoreBest = sumContrast;
+                    angleBest = angle;
+                    xBestCrossSection = xCrossSectionFiltered.clone();
+                    yBestCrossSection = yCrossSectionFiltered.clone();
+                    xBestCrossSectionMasked = xCrossSectionMasked.clone();
+                    yBestCrossSectionMasked = yCrossSectionMasked.clone();
+                }
+            }
+        }
+    }
 
     /**
      * Find the angle, location and bounds of the subject with largest rectlinear symmetry. 
@@ -564,16 +773,7 @@ public class DetectRectlinearSymmetry extends CvStage {
         final double cyCross = hCross/2; 
         final double rSq = (int)Math.pow(Math.min(wPixels, hPixels), 2)/4;
         // Running best results.
-        double scoreBest = Double.NEGATIVE_INFINITY;
         double angleBest = Double.NaN;
-        double [] xCrossSection = new double[wCross*channels];
-        double [] yCrossSection = new double[hCross*channels];
-        double [] xCrossSectionN = new double[wCross];
-        double [] yCrossSectionN = new double[hCross];
-        double [] xCrossSectionMasked = new double[wCross];
-        double [] yCrossSectionMasked = new double[hCross];
-        double [] xCrossSectionFiltered = new double[wCross*channels];
-        double [] yCrossSectionFiltered = new double[hCross*channels];
         double [] xBestCrossSection = new double[wCross*channels];
         double [] yBestCrossSection = new double[hCross*channels];
         double [] xBestCrossSectionMasked = new double[wCross];
@@ -589,122 +789,69 @@ public class DetectRectlinearSymmetry extends CvStage {
         double[] kernel = KernelUtils.getGaussianKernel(superSamplingEff, 0, (gaussianSmoothing*superSamplingEff)|1);
         double thresholdLuminance = Math.pow(threshold, gamma)*channels;
 
-        // Determine the angle with the largest rectlinear cross-section contrast.
-        for (double angle = a0; angle <= a1; angle += angleStep) {
-            // Note, this is the reverse rotation, i.e. angle is negative.
-            double s = superSamplingEff*Math.sin(-angle)/subSamplingEff;
-            double c = superSamplingEff*Math.cos(-angle)/subSamplingEff;
-            // Reset cross-sections. 
-            Arrays.fill(xCrossSection, 0);
-            Arrays.fill(yCrossSection, 0);
-            Arrays.fill(xCrossSectionN, 0);
-            Arrays.fill(yCrossSectionN, 0);
-            Arrays.fill(xCrossSectionMasked, 0);
-            Arrays.fill(yCrossSectionMasked, 0);
-            // Calculate the cross-sections from the pixels.
-            for (int y = 0, dy = -cyPixels, iy = 0; y < hPixels; y += subSamplingEff, dy += subSamplingEff, iy += width*channels*subSamplingEff) {
-                double sy = s*dy;
-                double cy = c*dy;
-                for (int x = 0, dx = -cxPixels, idx = iy + x0Pixels*channels; x < wPixels; x += subSamplingEff, dx += subSamplingEff, idx += channels*subSamplingEff) {
-                    double sx = s*dx;
-                    double cx = c*dx;
-                    // Note: this is a left-handed coordinate system, i.e. y pointing down.
-                    double xCross = cx + sy + cxCross;
-                    double yCross = -sx + cy + cyCross;
-                    int ixCross = (int) Math.round(xCross);
-                    int iyCross = (int) Math.round(yCross);
-                    double xWeight1 = xCross + 0.5 - ixCross;
-                    double xWeight0 = 1 - xWeight1;
-                    double yWeight1 = yCross + 0.5 - iyCross;
-                    double yWeight0 = 1 - yWeight1;
-                    if (iyCross > 1 && iyCross < hCross) {
-                        if (ixCross > 1 && ixCross < wCross) {
-                            /*int dSq = dx*dx + dy*dy;
-                            if (dSq < rSq)*/ {
-                                double luminance = 0;
-                                for (int ch = 0; ch < channels; ch++) {
-                                    int xai = ixCross*channels + ch;
-                                    int yai = iyCross*channels + ch;
-                                    double pixel = Math.pow(Byte.toUnsignedInt(pixelSamples[idx + ch]), gamma);
-                                    luminance += pixel;
-                                    xCrossSection[xai] += pixel*xWeight1;
-                                    xCrossSection[xai - channels] += pixel*xWeight0;
-                                    yCrossSection[yai] += pixel*yWeight1;
-                                    yCrossSection[yai - channels] += pixel*yWeight0;
-                                    if (DEBUG >= 2) {
-                                        if (Math.abs(angle - (a0+a1)/2) < angleStep) {
-                                            byte [] pixelData = new byte[channels];
-                                            image.get(y0Pixels + y, x0Pixels + x, pixelData);
-                                            if (ch == 2) {
-                                                pixelData[ch] = (byte)(127.0*ixCross/wCross + pixelData[ch]/2);
-                                            }
-                                            else if (ch == 1) {
-                                                pixelData[ch] = (byte)(127.0*iyCross/hCross + pixelData[ch]/2);
-                                            }
-                                            image.put(y0Pixels + y, x0Pixels + x, pixelData);
-                                        }
-                                    }
-                                }
-                                xCrossSectionN[ixCross] += xWeight1;
-                                xCrossSectionN[ixCross - 1] += xWeight0;
-                                yCrossSectionN[iyCross] += yWeight1;
-                                yCrossSectionN[iyCross - 1] += yWeight0;
-                                if (luminance > thresholdLuminance) {
-                                    xCrossSectionMasked[ixCross] += xWeight1;
-                                    xCrossSectionMasked[ixCross - 1] += xWeight0;
-                                    yCrossSectionMasked[iyCross] += yWeight1;
-                                    yCrossSectionMasked[iyCross - 1] += yWeight0;
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-            // Normalize
-            for (int x = 0; x < wCross; x++) {
-                if (xCrossSectionN[x] > 0) {
-                    for (int ch = 0; ch < channels; ch++) {
-                        xCrossSection[x*channels + ch] /= xCrossSectionN[x];
-                    }
-                }
-            }
-            for (int y = 0; y < hCross; y++) {
-                if (yCrossSectionN[y] > 0) {
-                    for (int ch = 0; ch < channels; ch++) {
-                        yCrossSection[y*channels + ch] /= yCrossSectionN[y];
-                    }
-                }
-            }
-            // We're using a gaussian kernel to get rid of sampling interferences especially at the 45° step angles.
-            KernelUtils.applyKernel(channels, wCross, xCrossSection, kernel, xCrossSectionFiltered); 
-            KernelUtils.applyKernel(channels, hCross, yCrossSection, kernel, yCrossSectionFiltered); 
-            // Analyze cross-sections contrast.
-            double sumContrast = 
-                    sumContrast(channels, wCross, xCrossSectionFiltered, xCrossSectionN)
-                    + sumContrast(channels, hCross, yCrossSectionFiltered, yCrossSectionN);
-            if (DEBUG >= 1) {
-                System.out.print("subSampling "+subSamplingEff+(superSamplingEff > 1 ? " superSampling "+superSamplingEff : "")
-                        +" angle "+Math.toDegrees(angle)+"° contrast "+sumContrast);
-            }
-            if (angleScore != null) {
-                angleScore.put(angle, sumContrast);
-            }
-            // Take the best:
-            if (scoreBest < sumContrast) {
-                scoreBest = sumContrast;
-                angleBest = angle;
-                xBestCrossSection = xCrossSectionFiltered.clone();
-                yBestCrossSection = yCrossSectionFiltered.clone();
-                xBestCrossSectionMasked = xCrossSectionMasked.clone();
-                yBestCrossSectionMasked = yCrossSectionMasked.clone();
-                if (DEBUG >= 1) {
-                    System.out.println(" * ");
+        // Apply the gamma and the luminance threshold to the sampled pixels only once, they are the same for all 
+        // the angles.
+        double [] gammaTable = new double[256];
+        for (int v = 0; v < gammaTable.length; v++) {
+            gammaTable[v] = Math.pow(v, gamma);
+        }
+        final int wSamples = (wPixels + subSamplingEff - 1)/subSamplingEff;
+        final int hSamples = (hPixels + subSamplingEff - 1)/subSamplingEff;
+        double [] samples = new double[wSamples*hSamples*channels];
+        boolean [] samplesMasked = new boolean[wSamples*hSamples];
+        for (int y = 0, iy = 0, is = 0; y < hPixels; y += subSamplingEff, iy += width*channels*subSamplingEff) {
+            for (int x = 0, idx = iy + x0Pixels*channels; x < wPixels; x += subSamplingEff, idx += channels*subSamplingEff, is++) {
+                double luminance = 0;
+                for (int ch = 0; ch < channels; ch++) {
+                    double pixel = gammaTable[Byte.toUnsignedInt(pixelSamples[idx + ch])];
+                    luminance += pixel;
+                    samples[is*channels + ch] = pixel;
                 }
+                samplesMasked[is] = (luminance > thresholdLuminance);
             }
-            else {
-                if (DEBUG >= 1) {
-                    System.out.println("");
-                }
+        }
+
+        // Determine the angle with the largest rectlinear cross-section contrast. The angles are evaluated in 
+        // parallel.
+        double [] angles = new double[Math.max(0, (int) Math.ceil((a1 - a0)/angleStep)) + 2];
+        int angleCount = 0;
+        for (double angle = a0; angle <= a1; angle += angleStep) {
+            angles[angleCount++] = angle;
+        }
+        AngleScan.Pass scan = new AngleScan.Pass();
+        scan.image = image;
+        scan.channels = channels;
+        scan.samples = samples;
+        scan.samplesMasked = samplesMasked;
+        scan.wSamples = wSamples;
+        scan.hSamples = hSamples;
+        scan.x0Pixels = x0Pixels;
+        scan.y0Pixels = y0Pixels;
+        scan.cxPixels = cxPixels;
+        scan.cyPixels = cyPixels;
+        scan.subSampling = subSamplingEff;
+        scan.superSampling = superSamplingEff;
+        scan.wCross = wCross;
+        scan.hCross = hCross;
+        scan.cxCross = cxCross;
+        scan.cyCross = cyCross;
+        scan.kernel = kernel;
+        scan.angles = angles;
+        scan.angleContrast = new double[angleCount];
+        scan.angleStep = angleStep;
+        scan.a0 = a0;
+        scan.a1 = a1;
+        AngleScan result = ForkJoinPool.commonPool().invoke(new AngleScan(scan, 0, angleCount));
+        if (result.xBestCrossSection != null) {
+            angleBest = result.angleBest;
+            xBestCrossSection = result.xBestCrossSection;
+            yBestCrossSection = result.yBestCrossSection;
+            xBestCrossSectionMasked = result.xBestCrossSectionMasked;
+            yBestCrossSectionMasked = result.yBestCrossSectionMasked;
+        }
+        if (angleScore != null) {
+            for (int i = 0; i < angleCount; i++) {
+                angleScore.put(angles[i], scan.angleContrast[i]);
             }
         }
 
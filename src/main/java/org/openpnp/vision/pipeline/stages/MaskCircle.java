@@ -10,6 +10,7 @@ import org.opencv.imgproc.Imgproc;
 import org.openpnp.model.Length;
 import org.openpnp.model.Location;
 import org.openpnp.vision.FluentCv;
+import org.openpnp.vision.MatPool;
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage;
 import org.openpnp.vision.pipeline.Property;
@@ -55,8 +56,8 @@ public class MaskCircle extends CvStage {
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         Mat mat = pipeline.getWorkingImage();
-        Mat mask = mat.clone();
-        Mat masked = mat.clone();
+        Mat mask = MatPool.get().borrow(mat.rows(), mat.cols(), mat.type());
+        Mat masked = MatPool.get().borrow(mat.rows(), mat.cols(), mat.type());
         Scalar color = FluentCv.colorToScalar(Color.black);
         mask.setTo(color);
         masked.setTo(color);
@@ -77,7 +78,7 @@ public class MaskCircle extends CvStage {
             Core.bitwise_not(mask,mask);
         }
         mat.copyTo(masked, mask);
-        mask.release();
+        MatPool.get().recycle(mask);
         return new Result(masked);
     }
 }
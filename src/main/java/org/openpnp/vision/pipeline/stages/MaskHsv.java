@@ -13,6 +13,7 @@ import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
 import org.openpnp.vision.FluentCv;
 import org.openpnp.vision.FluentCv.ColorSpace;
+import org.openpnp.vision.MatPool;
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage;
 import org.openpnp.vision.pipeline.Property;
@@ -207,9 +208,9 @@ public class MaskHsv extends CvStage {
         softFactor = Math.max(0, softFactor);
 
         Mat mat = pipeline.getWorkingImage();
-        Mat masked = mat.clone();
+        Mat masked = MatPool.get().borrow(mat.rows(), mat.cols(), mat.type());
         Scalar color = FluentCv.colorToScalar(Color.black);
-        Mat mask = mat.clone();
+        Mat mask = MatPool.get().borrow(mat.rows(), mat.cols(), mat.type());
         mask.setTo(color);
         masked.setTo(color);
 
@@ -287,14 +288,14 @@ public class MaskHsv extends CvStage {
                 pixelSamples[i+2] = (byte) value;
             }
             if (binaryMask) {
-                masked.release();
-                mask.release();
-                mask = new Mat(rows, cols, CvType.CV_8U);
+                MatPool.get().recycle(masked);
+                MatPool.get().recycle(mask);
+                mask = MatPool.get().borrow(rows, cols, CvType.CV_8U);
                 mask.put(0, 0, pixelMask);
                 return new Result(mask, ColorSpace.Gray);
             }
             else {
-                mask.release();
+                MatPool.get().recycle(mask);
                 masked.put(0, 0, pixelSamples);
                 return new Result(masked);
             }
@@ -316,14 +317,14 @@ public class MaskHsv extends CvStage {
                 max = new Scalar(255, saturationMax, valueMax);
                 Core.inRange(mat, min, max, mask);
 
-                Mat mask2 = mask.clone();
+                Mat mask2 = MatPool.get().borrow(mask.rows(), mask.cols(), mask.type());
                 mask2.setTo(color);
                 min = new Scalar(0, saturationMin, valueMin);
                 max = new Scalar(hueMax, saturationMax, valueMax);
                 Core.inRange(mat, min, max, mask2);
 
                 Core.bitwise_or(mask, mask2, mask);
-                mask2.release();
+                MatPool.get().recycle(mask2);
             }
 
             //The mask is normally inverted because it is used to copy the unmasked portions of the
@@ -334,11 +335,11 @@ public class MaskHsv extends CvStage {
             double fractionActuallyMasked = 1.0 - Core.countNonZero(mask) / (double) ( mat.rows() * mat.cols() ) ;
             Logger.trace( "Fraction actually masked = " + fractionActuallyMasked );
             if (binaryMask) {
-                masked.release();
+                MatPool.get().recycle(masked);
                 return new Result(mask, ColorSpace.Gray);
             } else {
                 mat.copyTo(masked, mask);
-                mask.release();
+                MatPool.get().recycle(mask);
                 return new Result(masked);
             }
         }
@@ -12,6 +12,7 @@ import org.opencv.core.RotatedRect;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
 import org.openpnp.vision.FluentCv;
+import org.openpnp.vision.MatPool;
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage;
 import org.openpnp.vision.pipeline.Property;
@@ -69,9 +70,9 @@ public class MaskModel extends CvStage {
             throw new Exception("Stage name for model must be specified.");
         }
         Mat mat = pipeline.getWorkingImage();
-        Mat mask = mat.clone();
+        Mat mask = MatPool.get().borrow(mat.rows(), mat.cols(), mat.type());
         mask.setTo(FluentCv.colorToScalar(color == null ? FluentCv.indexedColor(0) : color));
-        Mat masked = mask.clone();
+        Mat masked = MatPool.get().borrowClone(mask);
 
         ArrayList<MatOfPoint> poly = new ArrayList<MatOfPoint>();
 
@@ -134,7 +135,7 @@ public class MaskModel extends CvStage {
             Core.bitwise_not(mask, mask);
         }
         mat.copyTo(masked, mask);
-        mask.release();
+        MatPool.get().recycle(mask);
         return new Result(masked, result.model);
     }
 }
@@ -10,6 +10,7 @@ import org.opencv.core.Point;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
 import org.openpnp.vision.FluentCv;
+import org.openpnp.vision.MatPool;
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage;
 import org.openpnp.vision.pipeline.Property;
@@ -74,9 +75,9 @@ public class MaskPolygon extends CvStage {
          * X1,Y1 : X2,Y2 : X3,Y3 = triangle - etc
          */
         Mat mat = pipeline.getWorkingImage();
-        Mat mask = mat.clone();
+        Mat mask = MatPool.get().borrow(mat.rows(), mat.cols(), mat.type());
         mask.setTo(FluentCv.colorToScalar(color == null ? FluentCv.indexedColor(0) : color));
-        Mat masked = mask.clone();
+        Mat masked = MatPool.get().borrowClone(mask);
 
         String[] items = shapes.split("\\s*;\\s*"), atoms, coords;
         // we will be constructing an array of polygons
@@ -140,7 +141,7 @@ public class MaskPolygon extends CvStage {
             Core.bitwise_not(mask, mask);
         }
         mat.copyTo(masked, mask);
-        mask.release();
+        MatPool.get().recycle(mask);
         return new Result(masked, null);
     }
 }
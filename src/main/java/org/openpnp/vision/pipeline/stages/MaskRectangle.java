@@ -8,6 +8,7 @@ import org.opencv.core.Point;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
 import org.openpnp.vision.FluentCv;
+import org.openpnp.vision.MatPool;
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage;
 import org.simpleframework.xml.Attribute;
@@ -46,8 +47,8 @@ public class MaskRectangle extends CvStage {
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
         Mat mat = pipeline.getWorkingImage();
-        Mat mask = mat.clone();
-        Mat masked = mat.clone();
+        Mat mask = MatPool.get().borrow(mat.rows(), mat.cols(), mat.type());
+        Mat masked = MatPool.get().borrow(mat.rows(), mat.cols(), mat.type());
         Scalar color = FluentCv.colorToScalar(Color.black);
         mask.setTo(color);
         masked.setTo(color);
@@ -58,7 +59,7 @@ public class MaskRectangle extends CvStage {
             Core.bitwise_not(mask, mask);
         }
         mat.copyTo(masked, mask);
-        mask.release();
+        MatPool.get().recycle(mask);
         return new Result(masked);
     }
 }
@@ -12,6 +12,7 @@ import javax.swing.JSplitPane;
 
 import org.openpnp.util.UiUtils;
 import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvPipeline.ResultRetention;
 import org.openpnp.vision.pipeline.CvStage;
 import org.openpnp.vision.pipeline.stages.ActuatorWrite;
 import org.openpnp.vision.pipeline.stages.Add;
@@ -221,8 +222,26 @@ public class CvPipelineEditor extends JPanel {
         return pipeline;
     }
 
+    /**
+     * Process the pipeline, starting with the first stage that was modified since the last time. 
+     */
     public void process() {
-        UiUtils.messageBoxOnException(() -> getPipeline().process());
+        process(false);
+    }
+
+    /**
+     * Process the pipeline, including a new image capture, even if the capture is frozen.
+     */
+    public void reprocess() {
+        process(true);
+    }
+
+    private void process(boolean recapture) {
+        // Stages may have been edited, copies must be made afresh.
+        getPipeline().setStagesModified();
+        // The editor shows all the stage results.
+        getPipeline().setResultRetention(ResultRetention.Full);
+        UiUtils.messageBoxOnException(() -> getPipeline().processIncrementally(recapture));
         resultsPanel.refresh();
     }
 
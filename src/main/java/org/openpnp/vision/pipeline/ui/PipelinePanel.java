@@ -23,6 +23,7 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
 import javax.swing.JTable;
+import javax.swing.JToggleButton;
 import javax.swing.JToolBar;
 import javax.swing.ListSelectionModel;
 import javax.swing.SwingUtilities;
@@ -78,6 +79,10 @@ public class PipelinePanel extends JPanel {
         refreshButton.setHideActionText(true);
         toolbar.add(refreshButton);
 
+        JToggleButton freezeCaptureButton = new JToggleButton(freezeCaptureAction);
+        freezeCaptureButton.setHideActionText(true);
+        toolbar.add(freezeCaptureButton);
+
         if (editor.getPipeline() != null 
                 && editor.getPipeline().getPipelineShotsCount() > 1) {
             JButton stepNextButton = new JButton(stepNextShotAction);
@@ -360,7 +365,27 @@ public class PipelinePanel extends JPanel {
 
         @Override
         public void actionPerformed(ActionEvent arg0) {
-            editor.process();
+            editor.reprocess();
+        }
+    };
+
+    public final Action freezeCaptureAction = new AbstractAction() {
+        {
+            putValue(SMALL_ICON, Icons.pause);
+            putValue(NAME, "Freeze the picture.");
+            putValue(SHORT_DESCRIPTION, "<html>Freeze the picture while editing the pipeline.<br/>"
+                    + "Only the edited stage and the ones after it are processed again.<br/>"
+                    + "Use the update button to take a new picture.</html>");
+            putValue(SELECTED_KEY, false);
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent arg0) {
+            boolean frozen = Boolean.TRUE.equals(getValue(SELECTED_KEY));
+            editor.getPipeline().setCaptureFrozen(frozen);
+            if (!frozen) {
+                editor.reprocess();
+            }
         }
     };
 
@@ -19,6 +19,9 @@
  * For more information about OpenPnP visit http://openpnp.org
  */
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -460,4 +463,42 @@ public class AdvancedMotionTest {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Test that a profile solved at another location is served from the solver cache with the same 
+     * solution, translated to its location.
+     */
+    @Test 
+    public void testSolverCache() throws Exception {
+        MotionProfile.clearSolverCache();
+        MotionProfile profile = new MotionProfile(
+                100, 300, 0, 0, 0, 0,
+                0, 1000, 700, 2000, 2000, 15000, 0, Double.POSITIVE_INFINITY, 0);
+        profile.solve();
+        assertEquals(0, MotionProfile.getSolverCacheHits());
+        assertEquals(1, MotionProfile.getSolverCacheMisses());
+
+        MotionProfile profile2 = new MotionProfile(
+                150, 350, 0, 0, 0, 0,
+                50, 1050, 700, 2000, 2000, 15000, 0, Double.POSITIVE_INFINITY, 0);
+        profile2.solve();
+        assertEquals(1, MotionProfile.getSolverCacheHits());
+        assertNull(profile2.checkValidity());
+        assertEquals(profile.getTime(), profile2.getTime(), 1e-12);
+        assertEquals(150, profile2.getLocation(0));
+        assertEquals(350, profile2.getLocation(MotionProfile.segments));
+        for (int i = 0; i <= MotionProfile.segments; i++) {
+            assertEquals(profile.getLocation(i) + 50, profile2.getLocation(i), 1e-9);
+            assertEquals(profile.getVelocity(i), profile2.getVelocity(i));
+            assertEquals(profile.getAcceleration(i), profile2.getAcceleration(i));
+        }
+
+        // Different limits must miss.
+        MotionProfile profile3 = new MotionProfile(
+                100, 300, 0, 0, 0, 0,
+                0, 1000, 600, 2000, 2000, 15000, 0, Double.POSITIVE_INFINITY, 0);
+        profile3.solve();
+        assertEquals(1, MotionProfile.getSolverCacheHits());
+        assertEquals(2, MotionProfile.getSolverCacheMisses());
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ * 
+ * This file is part of OpenPnP.
+ * 
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ * 
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.openpnp.vision.FluentCv.ColorSpace;
+import org.openpnp.vision.MatPool;
+import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.CvPipeline.ExecutionMode;
+import org.openpnp.vision.pipeline.CvPipeline.ResultRetention;
+import org.openpnp.vision.pipeline.CvStage;
+import org.openpnp.vision.pipeline.stages.Add;
+import org.openpnp.vision.pipeline.stages.BlurGaussian;
+import org.openpnp.vision.pipeline.stages.ImageRecall;
+import org.openpnp.vision.pipeline.stages.ParameterNumeric;
+import org.openpnp.vision.pipeline.stages.Threshold;
+
+public class CvPipelineTest {
+    public static class TestImageStage extends CvStage {
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            return new Result(new Mat(48, 64, CvType.CV_8UC3, new Scalar(10, 20, 30)), ColorSpace.Bgr);
+        }
+    }
+
+    public static class TestModelStage extends CvStage {
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            return new Result(null, "model");
+        }
+    }
+
+    public static class TestNoiseStage extends CvStage {
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            Mat image = new Mat(48, 64, CvType.CV_8UC3);
+            byte[] pixels = new byte[48*64*3];
+            new Random(1).nextBytes(pixels);
+            image.put(0, 0, pixels);
+            return new Result(image, ColorSpace.Bgr);
+        }
+    }
+
+    /**
+     * Waits for the other stage, which only works if both are processed concurrently. 
+     */
+    public static class TestLatchStage extends CvStage {
+        private final CountDownLatch latch;
+        private final boolean wait;
+
+        public TestLatchStage(CountDownLatch latch, boolean wait) {
+            this.latch = latch;
+            this.wait = wait;
+        }
+
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            if (wait) {
+                return new Result(null, latch.await(5, TimeUnit.SECONDS));
+            }
+            latch.countDown();
+            return new Result(null, true);
+        }
+    }
+
+    public static class TestCountingStage extends CvStage {
+        int count;
+
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            count++;
+            return null;
+        }
+    }
+
+    public static class TestSleepStage extends CvStage {
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            Thread.sleep(200);
+            return null;
+        }
+    }
+
+    /**
+     * Returns its value property as the model. 
+     */
+    public static class TestPropertyStage extends CvStage {
+        private double value;
+
+        public double getValue() {
+            return value;
+        }
+
+        public void setValue(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public Result process(CvPipeline pipeline) throws Exception {
+            return new Result(null, value);
+        }
+    }
+
+    private static CvPipeline createPipeline() {
+        CvPipeline pipeline = new CvPipeline();
+        pipeline.add("image", new TestImageStage());
+        BlurGaussian blur = new BlurGaussian();
+        blur.setKernelSize(3);
+        pipeline.add("blur", blur);
+        pipeline.add("model", new TestModelStage());
+        ImageRecall recall = new ImageRecall();
+        recall.setImageStageName("image");
+        pipeline.add("recall", recall);
+        pipeline.add("results", new TestModelStage());
+        return pipeline;
+    }
+
+    @Test
+    public void testFullResultRetention() throws Exception {
+        try (CvPipeline pipeline = createPipeline()) {
+            pipeline.process();
+            for (CvStage stage : pipeline.getStages()) {
+                assertNotNull(pipeline.getResult(stage).image, stage.getName()+" image retained");
+            }
+        }
+    }
+
+    @Test
+    public void testReferencedResultRetention() throws Exception {
+        try (CvPipeline pipeline = createPipeline()) {
+            pipeline.setResultRetention(ResultRetention.Referenced, "model");
+            pipeline.process();
+            // Referenced by ImageRecall.
+            assertNotNull(pipeline.getResult("image").image);
+            // Not referenced.
+            assertNull(pipeline.getResult("blur").image);
+            assertNull(pipeline.getResult("recall").image);
+            // Requested by the caller.
+            assertNotNull(pipeline.getResult("model").image);
+            // Last stage.
+            assertNotNull(pipeline.getResult("results").image);
+            // Models are always retained.
+            assertEquals("model", pipeline.getResult("results").model);
+            // Recalled image is the working image.
+            assertEquals(30, pipeline.getWorkingImage().get(0, 0)[2], 0.5);
+        }
+    }
+
+    @Test
+    public void testMatPool() throws Exception {
+        MatPool pool = new MatPool(64*48*3*2);
+        Mat mat = pool.borrow(48, 64, CvType.CV_8UC3);
+        pool.recycle(mat);
+        assertEquals(1, pool.getPooledMats());
+        // Same size and type is reused.
+        assertSame(mat, pool.borrow(48, 64, CvType.CV_8UC3));
+        assertEquals(1, pool.getReused());
+        // Other type is not.
+        Mat gray = pool.borrow(48, 64, CvType.CV_8UC1);
+        assertEquals(CvType.CV_8UC1, gray.type());
+        assertEquals(1, pool.getReused());
+        // Capacity is enforced, the least recently used are released.
+        pool.recycle(mat);
+        pool.recycle(gray);
+        pool.recycle(new Mat(48, 64, CvType.CV_8UC3));
+        assertTrue(pool.getPooledBytes() <= pool.getMaxBytes());
+        assertEquals(2, pool.getPooledMats());
+        // Sub-matrices are never pooled.
+        pool.clear();
+        pool.recycle(new Mat(48, 64, CvType.CV_8UC3).rowRange(0, 10));
+        assertEquals(0, pool.getPooledMats());
+
+        // Pipeline images are reused over runs.
+        try (CvPipeline pipeline = createPipeline()) {
+            pipeline.process();
+            long reused = MatPool.get().getReused();
+            pipeline.process();
+            assertTrue(MatPool.get().getReused() > reused);
+        }
+    }
+
+    private static CvPipeline createBranchedPipeline() {
+        CvPipeline pipeline = new CvPipeline();
+        pipeline.add("image", new TestNoiseStage());
+        ImageRecall recallA = new ImageRecall();
+        recallA.setImageStageName("image");
+        pipeline.add("recallA", recallA);
+        BlurGaussian blurA = new BlurGaussian();
+        blurA.setKernelSize(3);
+        pipeline.add("blurA", blurA);
+        Threshold threshold = new Threshold();
+        threshold.setThreshold(100);
+        pipeline.add("thresholdA", threshold);
+        ImageRecall recallB = new ImageRecall();
+        recallB.setImageStageName("image");
+        pipeline.add("recallB", recallB);
+        BlurGaussian blurB = new BlurGaussian();
+        blurB.setKernelSize(7);
+        pipeline.add("blurB", blurB);
+        Add add = new Add();
+        add.setFirstStageName("thresholdA");
+        add.setSecondStageName("blurB");
+        pipeline.add("add", add);
+        pipeline.add("results", new TestModelStage());
+        return pipeline;
+    }
+
+    @Test
+    public void testParallelBranches() throws Exception {
+        try (CvPipeline pipeline = createBranchedPipeline()) {
+            pipeline.process();
+            Mat[] sequential = new Mat[pipeline.getStages().size()];
+            for (int i = 0; i < sequential.length; i++) {
+                sequential[i] = pipeline.getResult(pipeline.getStages().get(i)).image.clone();
+            }
+            Mat sequentialWorking = pipeline.getWorkingImage().clone();
+
+            pipeline.setExecutionMode(ExecutionMode.ParallelBranches);
+            pipeline.process();
+            for (int i = 0; i < sequential.length; i++) {
+                CvStage stage = pipeline.getStages().get(i);
+                assertEquals(0, Core.norm(sequential[i], pipeline.getResult(stage).image), stage.getName());
+            }
+            assertEquals(0, Core.norm(sequentialWorking, pipeline.getWorkingImage()));
+            assertEquals("model", pipeline.getWorkingModel());
+        }
+    }
+
+    @Test
+    public void testParallelBranchesConcurrency() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        try (CvPipeline pipeline = new CvPipeline()) {
+            pipeline.add("image", new TestImageStage());
+            ImageRecall recallA = new ImageRecall();
+            recallA.setImageStageName("image");
+            pipeline.add("recallA", recallA);
+            pipeline.add("wait", new TestLatchStage(latch, true));
+            ImageRecall recallB = new ImageRecall();
+            recallB.setImageStageName("image");
+            pipeline.add("recallB", recallB);
+            pipeline.add("countDown", new TestLatchStage(latch, false));
+            pipeline.setExecutionMode(ExecutionMode.ParallelBranches);
+            pipeline.process();
+            assertEquals(true, pipeline.getResult("wait").model);
+        }
+    }
+
+    @Test
+    public void testParallelBranchesParameterStage() throws Exception {
+        try (CvPipeline pipeline = new CvPipeline()) {
+            pipeline.add("image", new TestImageStage());
+            ImageRecall recallA = new ImageRecall();
+            recallA.setImageStageName("image");
+            pipeline.add("recallA", recallA);
+            // Delay the parameter stage, so the controlled stage would be processed first, if it could.
+            pipeline.add("sleep", new TestSleepStage());
+            ParameterNumeric parameter = new ParameterNumeric();
+            parameter.setParameterLabel("Value");
+            parameter.setStageName("controlled");
+            parameter.setPropertyName("value");
+            parameter.setMaximumValue(100);
+            pipeline.add("parameter", parameter);
+            // The controlled stage is in a separate branch, that does not otherwise depend on the parameter's.
+            ImageRecall recallB = new ImageRecall();
+            recallB.setImageStageName("image");
+            pipeline.add("recallB", recallB);
+            pipeline.add("controlled", new TestPropertyStage());
+            pipeline.setProperty("parameter", 42.0);
+
+            pipeline.process();
+            assertEquals(42.0, pipeline.getResult("controlled").model);
+
+            ((TestPropertyStage) pipeline.getStage("controlled")).setValue(0);
+            pipeline.setExecutionMode(ExecutionMode.ParallelBranches);
+            pipeline.process();
+            assertEquals(42.0, pipeline.getResult("controlled").model);
+        }
+    }
+
+    @Test
+    public void testIncrementalProcessing() throws Exception {
+        try (CvPipeline pipeline = new CvPipeline()) {
+            pipeline.add("image", new TestNoiseStage());
+            TestCountingStage first = new TestCountingStage();
+            pipeline.add("first", first);
+            BlurGaussian blur = new BlurGaussian();
+            blur.setKernelSize(3);
+            pipeline.add("blur", blur);
+            TestCountingStage second = new TestCountingStage();
+            pipeline.add("second", second);
+            pipeline.add("results", new TestModelStage());
+
+            pipeline.processIncrementally(false);
+            assertEquals(1, first.count);
+            assertEquals(1, second.count);
+            // Unchanged, nothing is processed.
+            pipeline.processIncrementally(false);
+            assertEquals(1, first.count);
+            assertEquals(1, second.count);
+            // Only the modified stage and those after it are processed.
+            blur.setKernelSize(9);
+            pipeline.processIncrementally(false);
+            assertEquals(1, first.count);
+            assertEquals(2, second.count);
+            Mat incremental = pipeline.getResult("blur").image.clone();
+            assertEquals("model", pipeline.getWorkingModel());
+            pipeline.process();
+            assertEquals(0, Core.norm(incremental, pipeline.getResult("blur").image));
+            // Full processing invalidates the incremental results.
+            pipeline.processIncrementally(false);
+            assertEquals(3, first.count);
+            assertEquals(4, second.count);
+            // Removing a stage processes the following ones.
+            pipeline.remove("blur");
+            pipeline.processIncrementally(false);
+            assertEquals(3, first.count);
+            assertEquals(5, second.count);
+            assertNull(pipeline.getResult(blur));
+            // A changed pipeline property processes all.
+            pipeline.setProperty("test", 1);
+            pipeline.processIncrementally(false);
+            assertEquals(4, first.count);
+        }
+    }
+
+    @Test
+    public void testBorrowCopy() throws Exception {
+        CvPipeline pipeline = createPipeline();
+        CvPipeline copy = pipeline.borrowCopy();
+        assertTrue(copy != pipeline);
+        assertEquals(pipeline, copy);
+        copy.setProperty("test", 1);
+        copy.process();
+        copy.close();
+        // Reused after closing, reset.
+        CvPipeline reused = pipeline.borrowCopy();
+        assertSame(copy, reused);
+        assertNull(reused.getProperty("test"));
+        assertNull(reused.getResult("image"));
+        // Concurrently borrowed copies are distinct.
+        CvPipeline other = pipeline.borrowCopy();
+        assertTrue(other != reused);
+        other.close();
+        // Modified pipelines hand out new copies.
+        ((BlurGaussian) pipeline.getStage("blur")).setKernelSize(5);
+        pipeline.setStagesModified();
+        reused.close();
+        CvPipeline modified = pipeline.borrowCopy();
+        assertTrue(modified != reused && modified != other);
+        assertEquals(5, ((BlurGaussian) modified.getStage("blur")).getKernelSize());
+        modified.close();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+import org.openpnp.vision.pipeline.CvStage.Result;
+import org.openpnp.vision.pipeline.stages.DetectCircularSymmetry;
+import org.openpnp.vision.pipeline.stages.DetectCircularSymmetry.ScoreRange;
+import org.openpnp.vision.pipeline.stages.DetectCircularSymmetry.SymmetryScore;
+
+/**
+ * Checks findCircularSymmetry() against results recorded with the original single-threaded implementation.
+ * The search range is large enough for the candidate scan to be split across threads, and multiple targets
+ * are refined concurrently. The results must be exactly the same, not just close.
+ */
+public class DetectCircularSymmetryTest {
+    static {
+        nu.pattern.OpenCV.loadShared();
+    }
+
+    /**
+     * Creates three fiducial-like targets, two of them with a hole, on a noisy background.
+     */
+    private static Mat createTargetsImage(int type) {
+        Random random = new Random(42);
+        Mat image = new Mat(480, 640, CvType.CV_8UC3, new Scalar(60, 60, 60));
+        Imgproc.circle(image, new Point(210, 190), 22, new Scalar(200, 210, 220), -1);
+        Imgproc.circle(image, new Point(210, 190), 10, new Scalar(30, 30, 30), -1);
+        Imgproc.circle(image, new Point(402, 247), 21, new Scalar(190, 200, 210), -1);
+        Imgproc.circle(image, new Point(321, 333), 20, new Scalar(210, 205, 200), -1);
+        Imgproc.circle(image, new Point(321, 333), 8, new Scalar(40, 40, 40), -1);
+        byte[] pixels = new byte[(int) image.total()*image.channels()];
+        image.get(0, 0, pixels);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) Math.min(255, Byte.toUnsignedInt(pixels[i]) + random.nextInt(32));
+        }
+        image.put(0, 0, pixels);
+        if (type == CvType.CV_8UC1) {
+            Imgproc.cvtColor(image, image, Imgproc.COLOR_BGR2GRAY);
+        }
+        return image;
+    }
+
+    private static void testTargets(int type, int maxTargetCount, int subSampling, int superSampling,
+            SymmetryScore symmetryScore, double[][] expected, double expectedScore) throws Exception {
+        Mat image = createTargetsImage(type);
+        ScoreRange scoreRange = new ScoreRange();
+        List<Result.Circle> circles = DetectCircularSymmetry.findCircularSymmetry(image, 320, 240,
+                30, 50, 400, 400, 400, maxTargetCount, 1.2, 0.25, subSampling, superSampling,
+                symmetryScore, false, false, scoreRange);
+        assertEquals(expected.length, circles.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i][0], circles.get(i).x, 0.0);
+            assertEquals(expected[i][1], circles.get(i).y, 0.0);
+            assertEquals(expected[i][2], circles.get(i).diameter, 0.0);
+        }
+        assertEquals(expectedScore, scoreRange.finalScore, 0.0);
+        image.release();
+    }
+
+    @Test
+    public void testColorMultipleTargets() throws Exception {
+        testTargets(CvType.CV_8UC3, 3, 1, 1, SymmetryScore.OverallVarianceVsRingVarianceSum,
+                new double[][] { { 321.5, 333.5, 42.0 }, { 402.5, 247.5, 42.0 }, { 210.5, 190.5, 44.0 } },
+                10.985986631265288);
+    }
+
+    @Test
+    public void testColorMultipleTargetsSubSampling() throws Exception {
+        testTargets(CvType.CV_8UC3, 3, 4, 2, SymmetryScore.RingMedianVarianceVsRingVarianceSum,
+                new double[][] { { 321.5, 333.5, 42.0 }, { 402.5, 247.0, 42.0 }, { 210.5, 190.5, 44.0 } },
+                10.005480083772964);
+    }
+
+    @Test
+    public void testGrayMultipleTargetsSubSampling() throws Exception {
+        testTargets(CvType.CV_8UC1, 3, 4, 4, SymmetryScore.RingAvgeragesVarianceVsRingVarianceSum,
+                new double[][] { { 321.5, 333.5, 40.0 }, { 402.75, 247.5, 42.0 }, { 210.25, 190.5, 44.0 } },
+                11.059465736624135);
+    }
+
+    @Test
+    public void testGraySingleTarget() throws Exception {
+        testTargets(CvType.CV_8UC1, 1, 1, 1, SymmetryScore.OverallVarianceVsRingVarianceSum,
+                new double[][] { { 321.5, 333.5, 40.0 } },
+                12.059465580033471);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.RotatedRect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.openpnp.vision.pipeline.stages.DetectRectlinearSymmetry;
+import org.openpnp.vision.pipeline.stages.DetectRectlinearSymmetry.ScoreRange;
+import org.openpnp.vision.pipeline.stages.DetectRectlinearSymmetry.SymmetryFunction;
+
+/**
+ * Checks findReclinearSymmetry() against results recorded with the original single-threaded implementation.
+ * The results must be exactly the same, not just close.
+ */
+public class DetectRectlinearSymmetryTest {
+    static {
+        nu.pattern.OpenCV.loadShared();
+    }
+
+    /**
+     * Creates a synthetic QFP-like part: a dark body with bright pins on all four sides, rotated, on a noisy
+     * background.
+     */
+    private static Mat createPartImage(int type) {
+        Random random = new Random(42);
+        Mat image = new Mat(480, 480, CvType.CV_8UC3, new Scalar(40, 40, 40));
+        double angle = 12.5;
+        fillRotatedRect(image, new RotatedRect(new org.opencv.core.Point(247, 236), new Size(150, 110), angle),
+                new Scalar(70, 75, 80));
+        double s = Math.sin(Math.toRadians(angle));
+        double c = Math.cos(Math.toRadians(angle));
+        for (int i = -5; i <= 5; i++) {
+            for (int side = -1; side <= 1; side += 2) {
+                // Pins along the long sides.
+                double x = i*12;
+                double y = side*65;
+                fillRotatedRect(image, new RotatedRect(new org.opencv.core.Point(247 + x*c - y*s, 236 + x*s + y*c),
+                        new Size(6, 20), angle), new Scalar(200, 210, 220));
+            }
+        }
+        for (int i = -3; i <= 3; i++) {
+            for (int side = -1; side <= 1; side += 2) {
+                // Pins along the short sides.
+                double x = side*85;
+                double y = i*12;
+                fillRotatedRect(image, new RotatedRect(new org.opencv.core.Point(247 + x*c - y*s, 236 + x*s + y*c),
+                        new Size(20, 6), angle), new Scalar(200, 210, 220));
+            }
+        }
+        byte[] pixels = new byte[(int) image.total()*image.channels()];
+        image.get(0, 0, pixels);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) Math.min(255, Byte.toUnsignedInt(pixels[i]) + random.nextInt(24));
+        }
+        image.put(0, 0, pixels);
+        if (type == CvType.CV_8UC1) {
+            Imgproc.cvtColor(image, image, Imgproc.COLOR_BGR2GRAY);
+        }
+        return image;
+    }
+
+    private static void fillRotatedRect(Mat image, RotatedRect rect, Scalar color) {
+        org.opencv.core.Point[] points = new org.opencv.core.Point[4];
+        rect.points(points);
+        Imgproc.fillConvexPoly(image, new MatOfPoint(points), color);
+    }
+
+    private static void assertExactly(RotatedRect expected, double expectedScore, RotatedRect rect,
+            ScoreRange scoreRange) {
+        assertNotNull(rect);
+        assertEquals(expected.center.x, rect.center.x, 0.0);
+        assertEquals(expected.center.y, rect.center.y, 0.0);
+        assertEquals(expected.size.width, rect.size.width, 0.0);
+        assertEquals(expected.size.height, rect.size.height, 0.0);
+        assertEquals(expected.angle, rect.angle, 0.0);
+        assertEquals(expectedScore, scoreRange.finalScore, 0.0);
+    }
+
+    private static RotatedRect rect(double x, double y, double width, double height, double angle) {
+        return new RotatedRect(new org.opencv.core.Point(x, y), new Size(width, height), angle);
+    }
+
+    @Test
+    public void testColorFullSymmetry() throws Exception {
+        Mat image = createPartImage(CvType.CV_8UC3);
+        ScoreRange scoreRange = new ScoreRange();
+        RotatedRect rect = DetectRectlinearSymmetry.findReclinearSymmetry(image, 240, 240, 0,
+                240, 200, 40, 45, 1.0,
+                SymmetryFunction.FullSymmetry, SymmetryFunction.FullSymmetry, 40,
+                8, 1, 5, 2.5, 128, false, false, scoreRange);
+        assertExactly(EXPECTED_COLOR_FULL, EXPECTED_COLOR_FULL_SCORE, rect, scoreRange);
+    }
+
+    @Test
+    public void testColorMaskedSuperSampling() throws Exception {
+        Mat image = createPartImage(CvType.CV_8UC3);
+        ScoreRange scoreRange = new ScoreRange();
+        RotatedRect rect = DetectRectlinearSymmetry.findReclinearSymmetry(image, 240, 240, 10,
+                240, 200, 40, 20, 1.0,
+                SymmetryFunction.FullSymmetry, SymmetryFunction.OutlineSymmetryMasked, 40,
+                8, 2, 5, 2.5, 128, false, true, scoreRange);
+        assertExactly(EXPECTED_COLOR_MASKED, EXPECTED_COLOR_MASKED_SCORE, rect, scoreRange);
+    }
+
+    @Test
+    public void testGrayEdgeSymmetry() throws Exception {
+        Mat image = createPartImage(CvType.CV_8UC1);
+        ScoreRange scoreRange = new ScoreRange();
+        RotatedRect rect = DetectRectlinearSymmetry.findReclinearSymmetry(image, 250, 230, 0,
+                240, 200, 40, 45, 1.0,
+                SymmetryFunction.EdgeSymmetry, SymmetryFunction.OutlineEdgeSymmetry, 40,
+                4, -2, 5, 1.0, 128, true, false, scoreRange);
+        assertExactly(EXPECTED_GRAY_EDGE, EXPECTED_GRAY_EDGE_SCORE, rect, scoreRange);
+    }
+
+    // Recorded with the original single-threaded implementation.
+    private static final RotatedRect EXPECTED_COLOR_FULL = rect(246.40311423365924, 236.3791139432147, 192.0, 152.0, 12.578195071985823);
+    private static final double EXPECTED_COLOR_FULL_SCORE = 1433.417088883778;
+    private static final RotatedRect EXPECTED_COLOR_MASKED = rect(246.59280275584644, 235.6776358936433, 193.0, 152.0, 12.567071498366062);
+    private static final double EXPECTED_COLOR_MASKED_SCORE = 29748.045791120705;
+    private static final RotatedRect EXPECTED_GRAY_EDGE = rect(247.2416774653051, 235.80628858873933, 192.0, 152.0, 12.573652257417997);
+    private static final double EXPECTED_GRAY_EDGE_SCORE = 680.6452846101453;
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.openpnp.machine.reference.camera.FrameBuffer;
+
+public class FrameBufferTest {
+    static {
+        nu.pattern.OpenCV.loadShared();
+    }
+
+    @Test
+    public void testCapturedAfter() {
+        FrameBuffer frameBuffer = new FrameBuffer(3);
+        BufferedImage[] images = new BufferedImage[5];
+        for (int i = 0; i < images.length; i++) {
+            images[i] = new BufferedImage(8, 8, BufferedImage.TYPE_3BYTE_BGR);
+            frameBuffer.add(i, images[i]);
+        }
+        // Only the last three are kept.
+        assertEquals(3, frameBuffer.size());
+        // The newest, if captured at or after the time.
+        assertSame(images[4], frameBuffer.getImageCapturedAfter(0));
+        assertSame(images[4], frameBuffer.getImageCapturedAfter(2.5));
+        assertSame(images[4], frameBuffer.getImageCapturedAfter(4));
+        assertNull(frameBuffer.getImageCapturedAfter(4.1));
+        // Out of order frames are dropped.
+        frameBuffer.add(3.5, new BufferedImage(8, 8, BufferedImage.TYPE_3BYTE_BGR));
+        assertSame(images[4], frameBuffer.getImageCapturedAfter(3.1));
+        frameBuffer.clear();
+        assertNull(frameBuffer.getImageCapturedAfter(0));
+    }
+
+    @Test
+    public void testMatFrames() {
+        FrameBuffer frameBuffer = new FrameBuffer(2);
+        Mat mat = new Mat(8, 8, CvType.CV_8UC3, new Scalar(1, 2, 3));
+        frameBuffer.add(1.0, mat);
+        // The buffer holds a copy.
+        mat.setTo(new Scalar(0, 0, 0));
+        Mat buffered = frameBuffer.getMatCapturedAfter(0.5);
+        assertEquals(3, buffered.get(0, 0)[2], 0.0);
+        // The caller owns the returned Mat.
+        buffered.release();
+        assertTrue(frameBuffer.getMatCapturedAfter(0.5) != null);
+        BufferedImage image = frameBuffer.getImageCapturedAfter(0.5);
+        assertEquals(8, image.getWidth());
+    }
+}
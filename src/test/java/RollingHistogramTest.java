@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.util.RollingHistogram;
+
+public class RollingHistogramTest {
+    @Test
+    public void testRollingWindow() {
+        RollingHistogram histogram = new RollingHistogram(4);
+        assertTrue(Double.isNaN(histogram.getPercentile(50)));
+        for (int i = 1; i <= 6; i++) {
+            histogram.add(i);
+        }
+        // Only the last four are kept.
+        assertEquals(4, histogram.getCount());
+        assertEquals(6, histogram.getTotalCount());
+        assertEquals(4.5, histogram.getMean(), 1e-9);
+        assertEquals(6, histogram.getMax(), 0.0);
+        assertEquals(3, histogram.getPercentile(0), 0.0);
+        assertEquals(4, histogram.getPercentile(50), 0.0);
+        assertEquals(6, histogram.getPercentile(95), 0.0);
+        assertArrayEquals(new int[] { 0, 2, 2 }, histogram.getHistogram(2, 4));
+        histogram.clear();
+        assertEquals(0, histogram.getCount());
+        assertTrue(Double.isNaN(histogram.getMean()));
+    }
+}
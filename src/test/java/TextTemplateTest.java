@@ -0,0 +1,66 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.util.TextTemplate;
+import org.openpnp.util.TextUtils;
+
+public class TextTemplateTest {
+    /**
+     * Test that the compiled TextTemplate substitutes exactly like a chain of
+     * TextUtils.substituteVar() calls.
+     */
+    @Test
+    public void testSubstituteEquivalence() throws Exception {
+        String[] templates = new String[] {
+                "G0 {X:X%.4f} {Y:Y%.4f} {Z:Z%.4f} {Rotation:A%.4f} {FeedRate:F%.2f} ; Send standard Gcode move",
+                "{Acceleration:M204 S%.2f} G1 {XL}{XF:%.4f} {YL}{Y:%.4f} {Jerk:M201.3 S%.0f}",
+                "M800 {True:ON}{False:OFF} {Index} {Name} {Unknown:%d} text only",
+                "{XIncreasing:G1 X-0.1}{XDecreasing:G1 X0.1}",
+                "no variables at all",
+                "",
+        };
+        Map<String, Object> variables = new LinkedHashMap<>();
+        variables.put("X", 12.34567);
+        variables.put("XF", 12.34567);
+        variables.put("XL", "X");
+        variables.put("Y", -3.0);
+        variables.put("YL", null);
+        variables.put("Z", null);
+        variables.put("Rotation", 90.0);
+        variables.put("FeedRate", 60000.0);
+        variables.put("Acceleration", null);
+        variables.put("Jerk", 100000.0);
+        variables.put("True", true);
+        variables.put("False", null);
+        variables.put("Index", 7);
+        variables.put("Name", "N1");
+        variables.put("XIncreasing", true);
+        variables.put("XDecreasing", null);
+
+        for (String template : templates) {
+            String expected = template;
+            for (Map.Entry<String, Object> entry : variables.entrySet()) {
+                expected = TextUtils.substituteVar(expected, entry.getKey(), entry.getValue());
+            }
+            TextTemplate textTemplate = new TextTemplate(template);
+            // Substitute twice to make sure the reused buffers are reset.
+            assertEquals(expected, textTemplate.substitute(variables));
+            assertEquals(expected, textTemplate.substitute(variables));
+        }
+    }
+
+    @Test
+    public void testHasVariable() throws Exception {
+        TextTemplate template = new TextTemplate("G0 {X:X%.4f} {YF:Y%.4f} {FeedRate:F%.2f}");
+        assertTrue(template.hasVariable("X"));
+        assertTrue(template.hasVariable("YF"));
+        assertTrue(template.hasVariable("FeedRate"));
+        assertFalse(template.hasVariable("Y"));
+        assertFalse(template.hasVariable("Z"));
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.openpnp.util.NanosecondTime;
+
+public class VirtualTimeTest {
+    @Test
+    public void testVirtualSleep() throws Exception {
+        try {
+            NanosecondTime.setVirtualTime(true);
+            long wallTime = System.nanoTime();
+            double t0 = NanosecondTime.getRuntimeSeconds();
+            NanosecondTime.sleep(60000);
+            double t1 = NanosecondTime.getRuntimeSeconds();
+            assertTrue(t1 - t0 >= 60.0);
+            NanosecondTime.sleepUntil(t1 + 3600.0);
+            double t2 = NanosecondTime.getRuntimeSeconds();
+            assertTrue(t2 >= t1 + 3600.0);
+            // Sleeping into the past does nothing.
+            NanosecondTime.sleepUntil(t0);
+            assertTrue(NanosecondTime.getRuntimeSeconds() - t2 < 10.0);
+            // None of it actually waited.
+            assertTrue(System.nanoTime() - wallTime < 10e9);
+        }
+        finally {
+            NanosecondTime.setVirtualTime(false);
+        }
+        // The runtime remains monotonic after switching back.
+        double t = NanosecondTime.getRuntimeSeconds();
+        NanosecondTime.sleep(1);
+        assertTrue(NanosecondTime.getRuntimeSeconds() > t);
+    }
+}
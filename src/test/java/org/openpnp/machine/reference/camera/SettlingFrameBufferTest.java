@@ -0,0 +1,163 @@
+package org.openpnp.machine.reference.camera;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.ReferenceActuator;
+import org.openpnp.machine.reference.ReferenceMachine;
+import org.openpnp.machine.reference.camera.AbstractSettlingCamera.SettleMethod;
+import org.openpnp.machine.reference.driver.NullDriver;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Motion;
+import org.openpnp.spi.Axis;
+import org.openpnp.spi.Camera.SettleOption;
+import org.openpnp.spi.MotionPlanner.CompletionType;
+import org.openpnp.spi.Nozzle;
+import org.openpnp.spi.base.AbstractControllerAxis;
+import org.openpnp.util.NanosecondTime;
+
+import com.google.common.io.Files;
+
+/**
+ * Checks where fixed time settling with a frame buffer counts the settle time from, and that buffered
+ * frames from before a motion or actuation are not taken.
+ */
+public class SettlingFrameBufferTest {
+    private static final long settleTimeMs = 500;
+
+    private ReferenceMachine machine;
+    private AbstractSettlingCamera camera;
+
+    @BeforeEach
+    public void before() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+        // The NullDriver moves in virtual time.
+        NanosecondTime.setVirtualTime(true);
+
+        machine = (ReferenceMachine) Configuration.get().getMachine();
+        camera = (AbstractSettlingCamera) machine.getDefaultHead().getDefaultCamera();
+        camera.setSettleMethod(SettleMethod.FixedTime);
+        camera.setSettleTimeMs(settleTimeMs);
+        camera.setFrameBufferSize(3);
+        machine.setEnabled(true);
+    }
+
+    @AfterEach
+    public void after() throws Exception {
+        machine.setEnabled(false);
+        NanosecondTime.setVirtualTime(false);
+    }
+
+    private void move(double x) throws Exception {
+        Nozzle nozzle = machine.getDefaultHead().getDefaultNozzle();
+        machine.execute(() -> {
+            nozzle.moveTo(nozzle.getLocation().derive(x, null, null, null));
+            nozzle.waitForCompletion(CompletionType.WaitForStillstand);
+            return null;
+        });
+    }
+
+    private BufferedImage settleAndCapture() throws Exception {
+        return machine.execute(() -> camera.settleAndCapture(SettleOption.Settle));
+    }
+
+    private BufferedImage addFrame(double time) {
+        BufferedImage image = new BufferedImage(8, 8, BufferedImage.TYPE_3BYTE_BGR);
+        camera.getFrameBuffer().add(time, image);
+        return image;
+    }
+
+    @Test
+    public void testSettleAnchor() throws Exception {
+        move(10);
+        Motion motion = machine.getMotionPlanner().getLastMotion();
+        assertNotNull(motion);
+        // The completion was confirmed, not before the planned end.
+        assertFalse(Double.isNaN(motion.getConfirmedTime1()));
+        assertTrue(motion.getConfirmedTime1() >= motion.getPlannedTime1());
+        double anchorTime = Math.max(motion.getConfirmedTime1(), machine.getLastActuationTime());
+        assertEquals(anchorTime, camera.getSettleAnchorTime(), 0.0);
+
+        double settledTime = anchorTime + settleTimeMs/1000.0;
+        addFrame(settledTime - 0.1);
+        addFrame(settledTime + 0.01);
+        BufferedImage newest = addFrame(settledTime + 0.02);
+        // The newest settled frame is taken.
+        assertSame(newest, settleAndCapture());
+    }
+
+    @Test
+    public void testUnconfirmedCompletion() throws Exception {
+        // A driver without motion completion feedback.
+        machine.setEnabled(false);
+        NullDriver driver = new NullDriver() {
+            @Override
+            public boolean isMotionCompletionConfirmed() {
+                return false;
+            }
+        };
+        machine.addDriver(driver);
+        for (Axis axis : machine.getAxes()) {
+            if (axis instanceof AbstractControllerAxis) {
+                ((AbstractControllerAxis) axis).setDriver(driver);
+            }
+        }
+        machine.setEnabled(true);
+
+        move(10);
+        Motion motion = machine.getMotionPlanner().getLastMotion();
+        assertTrue(Double.isNaN(motion.getConfirmedTime1()));
+        // The planned end is not trusted, the full settle time is waited.
+        assertNull(camera.getSettleAnchorTime());
+        BufferedImage frame = addFrame(motion.getPlannedTime1() + settleTimeMs/1000.0);
+        NanosecondTime.sleep(settleTimeMs*2);
+        assertNotSame(frame, settleAndCapture());
+    }
+
+    @Test
+    public void testInvalidatedByMotion() throws Exception {
+        move(10);
+        double settledTime = camera.getSettleAnchorTime() + settleTimeMs/1000.0;
+        BufferedImage frame = addFrame(settledTime);
+        NanosecondTime.sleep(settleTimeMs*2);
+        assertSame(frame, settleAndCapture());
+        // A frame from before the next motion is stale.
+        move(20);
+        assertTrue(camera.getSettleAnchorTime() > settledTime);
+        assertNotSame(frame, settleAndCapture());
+    }
+
+    @Test
+    public void testInvalidatedByActuation() throws Exception {
+        move(10);
+        double settledTime = camera.getSettleAnchorTime() + settleTimeMs/1000.0;
+        BufferedImage frame = addFrame(settledTime);
+        NanosecondTime.sleep(settleTimeMs*2);
+        assertSame(frame, settleAndCapture());
+        // Any actuator, not just the camera light, can change the scene.
+        ReferenceActuator actuator = new ReferenceActuator();
+        actuator.setName("Feeder");
+        machine.addActuator(actuator);
+        machine.execute(() -> {
+            actuator.actuate(true);
+            return null;
+        });
+        assertEquals(machine.getLastActuationTime(), camera.getSettleAnchorTime(), 0.0);
+        assertTrue(camera.getSettleAnchorTime() > settledTime);
+        assertNotSame(frame, settleAndCapture());
+    }
+}
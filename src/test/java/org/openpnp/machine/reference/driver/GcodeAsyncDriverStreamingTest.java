@@ -0,0 +1,225 @@
+package org.openpnp.machine.reference.driver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openpnp.model.Configuration;
+
+import com.google.common.io.Files;
+
+/**
+ * Streams a command sequence through a simulated controller link, that models the controller's receive
+ * buffer and only confirms a command once it has taken it out of the buffer.
+ */
+public class GcodeAsyncDriverStreamingTest {
+    /**
+     * In-memory link to a simulated controller. Commands are executed one by one, slowly enough for the
+     * driver to fill the receive buffer.
+     */
+    static class SimulatedControllerCommunications extends ReferenceDriverCommunications {
+        private final LinkedBlockingQueue<String> receiveBuffer = new LinkedBlockingQueue<>();
+        private final LinkedBlockingQueue<Integer> output = new LinkedBlockingQueue<>();
+        private final StringBuilder partialLine = new StringBuilder();
+        private final List<String> executed = new ArrayList<>();
+        private int bufferedCharacters;
+        private int maxBufferedCharacters;
+        private int maxBufferedLines;
+        private volatile boolean connected;
+        private Thread controller;
+
+        @Override
+        public synchronized void connect() throws Exception {
+            connected = true;
+            controller = new Thread(() -> {
+                while (connected) {
+                    try {
+                        String line = receiveBuffer.poll(10, TimeUnit.MILLISECONDS);
+                        if (line == null) {
+                            continue;
+                        }
+                        // Execute.
+                        Thread.sleep(1);
+                        synchronized (this) {
+                            bufferedCharacters -= line.length() + 1;
+                            executed.add(line);
+                        }
+                        for (char ch : "ok\n".toCharArray()) {
+                            output.offer((int) ch);
+                        }
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            controller.setDaemon(true);
+            controller.start();
+        }
+
+        @Override
+        public synchronized void disconnect() throws Exception {
+            connected = false;
+            if (controller != null) {
+                controller.join(1000);
+                controller = null;
+            }
+        }
+
+        @Override
+        public String getConnectionName() {
+            return "simulated controller";
+        }
+
+        @Override
+        protected synchronized void writeBytes(byte[] data) throws IOException {
+            for (byte b : data) {
+                bufferedCharacters++;
+                if (b == '\n') {
+                    receiveBuffer.offer(partialLine.toString());
+                    partialLine.setLength(0);
+                    maxBufferedLines = Math.max(maxBufferedLines, receiveBuffer.size());
+                }
+                else {
+                    partialLine.append((char) b);
+                }
+                maxBufferedCharacters = Math.max(maxBufferedCharacters, bufferedCharacters);
+            }
+        }
+
+        @Override
+        public int read() throws TimeoutException, IOException {
+            if (!connected) {
+                throw new IOException("Not connected.");
+            }
+            try {
+                Integer ch = output.poll(10, TimeUnit.MILLISECONDS);
+                if (ch == null) {
+                    throw new TimeoutException("No response.");
+                }
+                return ch;
+            }
+            catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+
+        synchronized List<String> getExecuted() {
+            return new ArrayList<>(executed);
+        }
+
+        synchronized int getBufferedCharacters() {
+            return bufferedCharacters;
+        }
+
+        synchronized int getMaxBufferedCharacters() {
+            return maxBufferedCharacters;
+        }
+
+        synchronized int getMaxBufferedLines() {
+            return maxBufferedLines;
+        }
+    }
+
+    private SimulatedControllerCommunications communications;
+    private GcodeAsyncDriver driver;
+
+    @BeforeEach
+    public void before() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+
+        communications = new SimulatedControllerCommunications();
+        driver = new GcodeAsyncDriver() {
+            @Override
+            public ReferenceDriverCommunications getCommunications() {
+                return communications;
+            }
+        };
+        driver.createDefaultCommands();
+        driver.setConnectWaitTimeMilliseconds(0);
+        driver.setTimeoutMilliseconds(5000);
+        driver.setStreamingFlowControl(true);
+    }
+
+    @AfterEach
+    public void after() throws Exception {
+        driver.setEnabled(false);
+    }
+
+    private List<String> streamCommands(int count) throws Exception {
+        driver.setEnabled(true);
+        List<String> commands = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // Vary the length of the lines.
+            String command = "G1 X"+i+" Y"+(i*i % 997)+(i % 3 == 0 ? " F5000" : "");
+            commands.add(command);
+            driver.sendCommand(command);
+        }
+        driver.drainCommandQueue(driver.getTimeoutAtMachineSpeed());
+        driver.bailOnError();
+        return commands;
+    }
+
+    private void assertStreamed(List<String> commands) {
+        List<String> executed = communications.getExecuted();
+        // The connect commands come first, then the commands in order.
+        assertEquals(commands, executed.subList(executed.size() - commands.size(), executed.size()));
+        // All confirmed, none left over.
+        assertEquals(0, communications.getBufferedCharacters());
+        assertTrue(driver.receivedConfirmationsQueue.isEmpty());
+    }
+
+    @Test
+    public void testCharacterLimit() throws Exception {
+        driver.setStreamingBufferCharacters(64);
+        driver.setStreamingBufferLines(100);
+        List<String> commands = streamCommands(200);
+        assertStreamed(commands);
+        assertTrue(communications.getMaxBufferedCharacters() <= 64);
+        // Commands were actually streamed, not sent one by one.
+        assertTrue(communications.getMaxBufferedLines() > 1);
+    }
+
+    @Test
+    public void testLineLimit() throws Exception {
+        driver.setStreamingBufferCharacters(10000);
+        driver.setStreamingBufferLines(4);
+        List<String> commands = streamCommands(200);
+        assertStreamed(commands);
+        assertTrue(communications.getMaxBufferedLines() <= 4);
+        assertTrue(communications.getMaxBufferedLines() > 1);
+    }
+
+    @Test
+    public void testRepeatedDrain() throws Exception {
+        driver.setStreamingBufferCharacters(64);
+        driver.setStreamingBufferLines(8);
+        List<String> commands = streamCommands(10);
+        assertStreamed(commands);
+        // A second sequence after the drain must not be confused by earlier confirmations.
+        List<String> more = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String command = "G0 Z"+i;
+            more.add(command);
+            driver.sendCommand(command);
+        }
+        driver.drainCommandQueue(driver.getTimeoutAtMachineSpeed());
+        driver.bailOnError();
+        assertStreamed(more);
+        assertTrue(communications.getMaxBufferedCharacters() <= 64);
+        assertTrue(communications.getMaxBufferedLines() <= 8);
+    }
+}
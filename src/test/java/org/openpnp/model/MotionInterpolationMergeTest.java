@@ -0,0 +1,176 @@
+package org.openpnp.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openpnp.machine.reference.axis.ReferenceControllerAxis;
+import org.openpnp.machine.reference.driver.GcodeAsyncDriver;
+import org.openpnp.model.Motion.MoveToCommand;
+import org.openpnp.spi.Axis;
+
+import com.google.common.io.Files;
+
+public class MotionInterpolationMergeTest {
+    private static final double junctionDeviation = 0.02;
+
+    private GcodeAsyncDriver driver;
+    private ReferenceControllerAxis axisX;
+    private ReferenceControllerAxis axisY;
+    private Motion motion;
+
+    @BeforeEach
+    public void before() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+
+        driver = new GcodeAsyncDriver();
+        axisX = createAxis("x", Axis.Type.X);
+        axisY = createAxis("y", Axis.Type.Y);
+        motion = new Motion(null, new AxesLocation(), new AxesLocation(), 1.0);
+    }
+
+    private ReferenceControllerAxis createAxis(String name, Axis.Type type) {
+        ReferenceControllerAxis axis = new ReferenceControllerAxis();
+        axis.setName(name);
+        axis.setType(type);
+        axis.setLetter(name.toUpperCase());
+        axis.setDriver(driver);
+        return axis;
+    }
+
+    private AxesLocation location(double x, double y) {
+        return new AxesLocation(axisX, x).put(new AxesLocation(axisY, y));
+    }
+
+    /**
+     * Creates steps along the given way-points, with the velocity accelerating constantly from v0 to v1 along
+     * the path, i.e. the square of the velocity changes linearly with distance.
+     */
+    private List<MoveToCommand> steps(double v0, double v1, double[][] wayPoints) {
+        double length = 0;
+        for (int i = 1; i < wayPoints.length; i++) {
+            length += Math.hypot(wayPoints[i][0] - wayPoints[i-1][0], wayPoints[i][1] - wayPoints[i-1][1]);
+        }
+        List<MoveToCommand> list = new ArrayList<>();
+        double distance = 0;
+        double t = 0;
+        double va = v0;
+        for (int i = 1; i < wayPoints.length; i++) {
+            double d = Math.hypot(wayPoints[i][0] - wayPoints[i-1][0], wayPoints[i][1] - wayPoints[i-1][1]);
+            distance += d;
+            double vb = Math.sqrt(v0*v0 + (v1*v1 - v0*v0)*distance/length);
+            double dt = d/((va + vb)*0.5);
+            AxesLocation location0 = location(wayPoints[i-1][0], wayPoints[i-1][1]);
+            AxesLocation location1 = location(wayPoints[i][0], wayPoints[i][1]);
+            list.add(motion.new MoveToCommand(location0, location1, location1,
+                    null, Math.abs(vb - va)/dt, null, t, dt, va, vb));
+            t += dt;
+            va = vb;
+        }
+        return list;
+    }
+
+    private double[][] straightLine(int from, int count) {
+        double[][] wayPoints = new double[count + 1][];
+        for (int i = 0; i <= count; i++) {
+            wayPoints[i] = new double[] { from + i, 0.5*(from + i) };
+        }
+        return wayPoints;
+    }
+
+    private double totalTime(List<MoveToCommand> list) {
+        double time = 0;
+        for (MoveToCommand command : list) {
+            time += command.getTimeDuration();
+        }
+        return time;
+    }
+
+    @Test
+    public void testNoMergingByDefault() {
+        List<MoveToCommand> list = steps(0, 100, straightLine(0, 50));
+        List<MoveToCommand> original = new ArrayList<>(list);
+        // Tolerance 0, no line rate.
+        motion.mergeInterpolationSteps(driver, list, totalTime(list), junctionDeviation);
+        assertEquals(original, list);
+        // The line rate estimate is opt-in. Simulated communications are not limiting anyway.
+        driver.setInterpolationLineRateSetting(-1);
+        motion.mergeInterpolationSteps(driver, list, totalTime(list), junctionDeviation);
+        assertEquals(original, list);
+    }
+
+    @Test
+    public void testMergedStep() {
+        List<MoveToCommand> list = steps(10, 100, straightLine(0, 2));
+        MoveToCommand merged = motion.mergedInterpolationStep(driver, list.get(0), list.get(1));
+        assertSame(list.get(0).getLocation0(), merged.getLocation0());
+        assertSame(list.get(1).getLocation1(), merged.getLocation1());
+        assertEquals(list.get(0).getV0(), merged.getV0(), 1e-9);
+        assertEquals(list.get(1).getV1(), merged.getV1(), 1e-9);
+        // The merged constant acceleration step takes the same time.
+        assertEquals(totalTime(list), merged.getTimeDuration(), 1e-9);
+    }
+
+    @Test
+    public void testMergeWithinTolerance() {
+        List<MoveToCommand> list = steps(0, 100, straightLine(0, 10));
+        MoveToCommand first = list.get(0);
+        MoveToCommand last = list.get(list.size() - 1);
+        driver.setInterpolationVelocityTolerance(0.1);
+        motion.mergeInterpolationSteps(driver, list, totalTime(list), junctionDeviation);
+        // Constant acceleration along a straight line merges into a single step.
+        assertEquals(1, list.size());
+        assertSame(first.getLocation0(), list.get(0).getLocation0());
+        assertSame(last.getLocation1(), list.get(0).getLocation1());
+        assertEquals(0, list.get(0).getV0(), 1e-9);
+        assertEquals(100, list.get(0).getV1(), 1e-9);
+    }
+
+    @Test
+    public void testJunctionDeviation() {
+        // A corner is never cut, however large the tolerance.
+        List<MoveToCommand> list = steps(0, 100, new double[][] { { 0, 0 }, { 1, 0 }, { 2, 0 }, { 2, 1 }, { 2, 2 } });
+        driver.setInterpolationVelocityTolerance(1000.0);
+        motion.mergeInterpolationSteps(driver, list, totalTime(list), junctionDeviation);
+        assertEquals(2, list.size());
+        assertEquals(2, list.get(0).getLocation1().getCoordinate(axisX), 1e-9);
+        assertEquals(0, list.get(0).getLocation1().getCoordinate(axisY), 1e-9);
+        // A slight bend within the junction deviation is merged.
+        list = steps(0, 100, new double[][] { { 0, 0 }, { 1, 0.01 }, { 2, 0 } });
+        motion.mergeInterpolationSteps(driver, list, totalTime(list), junctionDeviation);
+        assertEquals(1, list.size());
+        // Beyond the junction deviation it is not.
+        list = steps(0, 100, new double[][] { { 0, 0 }, { 1, 0.05 }, { 2, 0 } });
+        motion.mergeInterpolationSteps(driver, list, totalTime(list), junctionDeviation);
+        assertEquals(2, list.size());
+    }
+
+    @Test
+    public void testLineRateBoundedByMaxVelocityError() {
+        // Accelerate, decelerate and accelerate again, so merging across the turning points has a velocity error.
+        List<MoveToCommand> list = steps(0, 100, straightLine(0, 2));
+        list.addAll(steps(100, 0, straightLine(2, 2)));
+        list.addAll(steps(0, 100, straightLine(4, 2)));
+        List<MoveToCommand> original = new ArrayList<>(list);
+        double time = totalTime(list);
+        // The link can only transmit two lines in the duration of the move.
+        driver.setInterpolationLineRateSetting(2/time);
+        driver.setInterpolationMaxVelocityError(1e-6);
+        motion.mergeInterpolationSteps(driver, list, time, junctionDeviation);
+        // Only the error-free merges are forced, i.e. each accelerating or decelerating phase into one step.
+        assertEquals(3, list.size());
+        // Allow larger errors.
+        list = new ArrayList<>(original);
+        driver.setInterpolationMaxVelocityError(1000.0);
+        motion.mergeInterpolationSteps(driver, list, time, junctionDeviation);
+        assertEquals(2, list.size());
+    }
+}